@@ -0,0 +1,157 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import org.newdawn.slick.Input;
+
+/**
+ * Regression check that the steady-state game tick allocates nothing, while
+ * the player hops, dies, fills holes and picks up extra lives. A script of
+ * key presses is made first: the player hops straight up into the traffic
+ * until it has died RECKLESS_DEATHS times, waits, then the Autopilot plays
+ * until the level is complete. The tick which completes the level unloads it,
+ * so is not part of the steady state, and the script ends before it.
+ *
+ * One world replays the script, restarting between replays, until the JIT
+ * has compiled every path it takes and every list the world reuses has
+ * grown to the size it needs. Then the bytes the thread allocates over one
+ * more replay are counted. The restart is made before counting starts.
+ * The JIT may still recompile a method and, as it does, allocate a few
+ * bytes on the thread on whichever tick it happens to be; so up to
+ * MEASURED_REPLAYS replays are counted, and the least is taken. Anything
+ * the game itself allocates is allocated on every replay.
+ *
+ * Usage: AllocationCheck [ticks]
+ * Exits with status 1 if anything was allocated, or if the script missed a
+ * hop, death, hole fill or extra life.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class AllocationCheck {
+	private static final int DEFAULT_TICKS = 10000;
+	private static final int WARMUP_REPLAYS = 20;
+	private static final int MEASURED_REPLAYS = 5;
+	private static final long SEED = 20003;
+	private static final String LEVEL_PATH = "assets/levels/0.lvl";
+	// the player hops up every HOP_PERIOD ticks until it has died this many times
+	private static final int RECKLESS_DEATHS = 2;
+	private static final int HOP_PERIOD = 8;
+	// tick from which the Autopilot plays, late enough for an extra life to spawn while it does
+	private static final int AUTOPILOT_TICK = 1800;
+	// a plan stops at the node limit well within this, so the script does not depend on the clock
+	private static final long PLAN_BUDGET_NANOS = 1000000000L;
+	private static final int[] KEYS = new int[] { Input.KEY_UP, Input.KEY_DOWN, Input.KEY_LEFT, Input.KEY_RIGHT };
+	private static final int NO_KEY = -1;
+
+	/**
+	 * Runs the check and prints the bytes allocated.
+	 *
+	 * @param args Optionally, the most ticks to check.
+	 */
+	public static void main(String[] args) {
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TICKS;
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		AssetRegistry.setHeadless(true);
+		int[] script = script(ticks);
+		World world = new World(LEVEL_PATH, SEED);
+		KeyState keys = new KeyState();
+		for (int i = 0; i < WARMUP_REPLAYS; i++) {
+			replay(world, script, keys);
+			world.reset(SEED);
+		}
+
+		EventCounter events = new EventCounter();
+		world.getEvents().addListener(events);
+		long allocated = Long.MAX_VALUE;
+		int played = 0;
+		for (int i = 0; i < MEASURED_REPLAYS && allocated != 0; i++) {
+			if (i > 0) {
+				world.reset(SEED);
+			}
+			Arrays.fill(events.counts, 0);
+			long before = threads.getThreadAllocatedBytes(threadId);
+			played = replay(world, script, keys);
+			allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before);
+		}
+
+		int hops = 0;
+		for (int tick = 0; tick < played; tick++) {
+			hops += script[tick] == NO_KEY ? 0 : 1;
+		}
+		System.out.println(played + " ticks allocated " + allocated + " bytes, with " + hops + " hops, "
+				+ events.counts[EventBus.DEATH] + " deaths, " + events.counts[EventBus.HOLE_FILLED]
+				+ " holes filled and " + events.counts[EventBus.LIFE_GAINED] + " extra lives");
+		if (allocated != 0) {
+			System.exit(1);
+		}
+		if (hops == 0 || events.counts[EventBus.DEATH] == 0 || events.counts[EventBus.HOLE_FILLED] == 0
+				|| events.counts[EventBus.LIFE_GAINED] == 0) {
+			System.out.println("The script no longer covers every event; change SEED or AUTOPILOT_TICK");
+			System.exit(1);
+		}
+	}
+
+	// records the key pressed on each tick, up to the tick which would end the level or the game
+	private static int[] script(int ticks) {
+		World world = new World(LEVEL_PATH, SEED);
+		Autopilot autopilot = new Autopilot(world, HeadlessRunner.DEFAULT_DELTA);
+		autopilot.setBudget(PLAN_BUDGET_NANOS);
+		EventCounter events = new EventCounter();
+		world.getEvents().addListener(events);
+		KeyState keys = new KeyState();
+		int[] script = new int[ticks];
+		int tick = 0;
+		for (; tick < ticks; tick++) {
+			script[tick] = NO_KEY;
+			if (events.counts[EventBus.DEATH] < RECKLESS_DEATHS) {
+				if (tick % HOP_PERIOD == 0 && !world.getPlayer().isDead()) {
+					script[tick] = Input.KEY_UP;
+				}
+			} else if (tick >= AUTOPILOT_TICK) {
+				autopilot.tick();
+				for (int key : KEYS) {
+					if (autopilot.isKeyPressed(key)) {
+						script[tick] = key;
+					}
+				}
+			}
+			keys.clear();
+			if (script[tick] != NO_KEY) {
+				keys.setPressed(script[tick], true);
+			}
+			world.update(keys, HeadlessRunner.DEFAULT_DELTA);
+			if (world.isGameOver() || events.counts[EventBus.LEVEL_COMPLETE] > 0) {
+				break;
+			}
+		}
+		int[] played = new int[tick];
+		System.arraycopy(script, 0, played, 0, tick);
+		return played;
+	}
+
+	// plays a script until it ends or the game is over, and returns the ticks played
+	private static int replay(World world, int[] script, KeyState keys) {
+		int tick = 0;
+		for (; tick < script.length && !world.isGameOver(); tick++) {
+			keys.clear();
+			if (script[tick] != NO_KEY) {
+				keys.setPressed(script[tick], true);
+			}
+			world.update(keys, HeadlessRunner.DEFAULT_DELTA);
+		}
+		return tick;
+	}
+
+	/*
+	 * Counts the events of each type, without allocating.
+	 */
+	private static class EventCounter implements GameEventListener {
+		private final int[] counts = new int[EventBus.LEVEL_COMPLETE + 1];
+
+		@Override
+		public void onEvent(int type, long tick, float x, float y, int value) {
+			counts[type]++;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Check that the ArchetypeRegistry reads the shipped data file and a valid
+ * new kind, and rejects lines it cannot use, naming the line. Each bad line
+ * is written on its own to a temporary data file and loaded.
+ *
+ * Usage: ArchetypeCheck
+ * Run from the project directory, so the assets can be found. Exits with
+ * status 1 if a bad line is accepted or a good one rejected.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class ArchetypeCheck {
+	private static final String[] GOOD_LINES = new String[] { "truck,vehicle,assets/bus.png,hazard|solid,0.3",
+			"scooter,vehicle,assets/bike.png,hazard,0.25,bounce:0:768", "raft,log,assets/log.png,rideable,0.05",
+			"diver,turtle,assets/turtles.png,rideable,0.1,dive:5000:5000" };
+	private static final String[] BAD_LINES = new String[] {
+			"bus,vehicle,assets/bus.png,hazard,fast",
+			"bus,vehicle,assets/bus.png,hazard",
+			"bus,vehicle,assets/bus.png,hazard,0",
+			"bus,vehicle,assets/bus.png,hazard,-0.15",
+			"bus,vehicle,assets/bus.png,hazard,NaN",
+			"bus,vehicle,assets/bus.png,hazard,Infinity",
+			"bus,vehicle,assets/bus.png,hazard,1e39",
+			"grass,tile,assets/grass.png,,0.1",
+			"bus,car,assets/bus.png,hazard,0.15",
+			"bus,vehicle,assets/bus.png,lava,0.15",
+			"bike,vehicle,assets/bike.png,hazard,0.2,bounce:1000:24",
+			"bike,vehicle,assets/bike.png,hazard,0.2,bounce:500:500",
+			"bike,vehicle,assets/bike.png,hazard,0.2,bounce:0:NaN",
+			"bike,vehicle,assets/bike.png,hazard,0.2,bounce:24",
+			"bike,vehicle,assets/bike.png,hazard,0.2,spin:24:1000",
+			"turtle,turtle,assets/turtles.png,rideable,0.085",
+			"turtle,turtle,assets/turtles.png,rideable,0.085,dive:0:0",
+			"turtle,turtle,assets/turtles.png,rideable,0.085,dive:7000:9000",
+			"turtle,turtle,assets/turtles.png,rideable,0.085,dive:9000:-1",
+			"log,log,assets/log.png,rideable,0.1,dive:9000:7000",
+			"bus,vehicle",
+			"bus,vehicle,assets/bus.png,hazard,0.15,bounce:0:1,extra" };
+
+	/**
+	 * Loads the shipped file, each good line and each bad line, and prints
+	 * what was rejected.
+	 *
+	 * @param args Ignored.
+	 * @throws IOException If a temporary data file cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		AssetRegistry.setHeadless(true);
+		boolean passed = load(ArchetypeRegistry.DEFAULT_PATH, null);
+		File file = File.createTempFile("archetypes-", ".csv");
+		file.deleteOnExit();
+		for (String line : GOOD_LINES) {
+			Files.write(file.toPath(), Arrays.asList(line));
+			passed &= load(file.getPath(), null);
+		}
+		for (String line : BAD_LINES) {
+			Files.write(file.toPath(), Arrays.asList(line));
+			passed &= load(file.getPath(), line);
+		}
+		file.delete();
+		System.out.println((GOOD_LINES.length + 1) + " good files read, " + BAD_LINES.length + " bad lines checked");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	// loads a data file, which should fail on its first line if a bad line is given
+	private static boolean load(String path, String badLine) {
+		try {
+			ArchetypeRegistry.load(path);
+			if (badLine != null) {
+				System.out.println("FAILED: accepted " + badLine);
+				return false;
+			}
+			return true;
+		} catch (IOException e) {
+			if (badLine == null) {
+				System.out.println("FAILED: rejected " + path + ": " + e.getMessage());
+				return false;
+			}
+			boolean named = e.getMessage().startsWith(path + ":1: ");
+			System.out.printf("%-64s %s%n", badLine, named ? e.getMessage().substring(path.length() + 4)
+					: "FAILED, not naming line 1: " + e.getMessage());
+			return named;
+		}
+	}
+}
@@ -0,0 +1,248 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.opengl.Texture;
+
+/**
+ * Check of the TextureAtlas and SpriteBatch, and a count of the texture
+ * binds of a frame, without a display. The atlas is checked as laid out in
+ * memory before upload: every image is on the page with its own pixels, and
+ * is surrounded by transparent pixels. The batch is fed stand-in images
+ * which log what they draw, so its order and binds can be checked: lowest
+ * layer first, images in the order they were added within a layer, one bind
+ * for a run of atlas images, and a run broken by any other image.
+ *
+ * A frame draws one baked background per loaded band of the level, then the
+ * world's sprites in one flush, then the lives in another, after the camera
+ * transform is reset. The bands loaded are counted as the Autopilot climbs
+ * a tall generated level.
+ *
+ * Usage: AtlasCheck
+ * Run from the project directory, so the assets can be found. Exits with
+ * status 1 if any check fails.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class AtlasCheck {
+	private static final String DIRECTORY = "assets";
+	private static final String LEVEL_PATH = "assets/levels/0.lvl";
+	private static final int TALL_ENTITIES = 2000;
+	private static final long SEED = 20003;
+	private static final int TICKS = 20000;
+	private static final int BYTES_PER_PIXEL = 4;
+	private static final int ALPHA = 3;
+	private static final int BYTE_MASK = 0xFF;
+	// lives a player starts with
+	private static final int LIVES = 3;
+
+	// what the stand-in images drew, in order
+	private static final ArrayList<String> drawn = new ArrayList<>();
+	private static boolean passed = true;
+
+	/**
+	 * Runs the checks and prints the binds counted.
+	 *
+	 * @param args Ignored.
+	 * @throws IOException If an image or level cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		checkLayout();
+		checkBatch();
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	// every image on the page with its own pixels, with nothing but transparent pixels around it
+	private static void checkLayout() throws IOException {
+		PixelCache decoder = new PixelCache(null);
+		ArrayList<DecodedImage> images = new ArrayList<>();
+		for (File file : TextureAtlas.listImages(DIRECTORY)) {
+			images.add(decoder.load(file));
+		}
+		TextureAtlas.Layout layout = TextureAtlas.layout(DIRECTORY, images);
+		int size = layout.getBuffer().getTexWidth();
+		byte[] page = layout.getBuffer().getRGBA();
+		boolean[] covered = new boolean[size * size];
+
+		int wrong = 0;
+		for (DecodedImage image : images) {
+			int[] place = layout.getPlace(image.getName());
+			// one transparent pixel all round, inside the page
+			if (place[0] < 1 || place[1] < 1 || place[0] + image.getWidth() >= size
+					|| place[1] + image.getHeight() >= size) {
+				fail(image.getName() + " has no border inside the page");
+				continue;
+			}
+			for (int y = -1; y <= image.getHeight(); y++) {
+				for (int x = -1; x <= image.getWidth(); x++) {
+					int at = (place[1] + y) * size + place[0] + x;
+					if (covered[at]) {
+						fail(image.getName() + " overlaps another image or its border");
+					}
+					covered[at] = true;
+					boolean border = x < 0 || y < 0 || x == image.getWidth() || y == image.getHeight();
+					if (!border && rgba(page, at) != image.getARGB(x, y)) {
+						wrong++;
+					}
+				}
+			}
+		}
+		int opaque = 0;
+		for (int at = 0; at < size * size; at++) {
+			if (!covered[at] && (page[at * BYTES_PER_PIXEL + ALPHA] & BYTE_MASK) != 0) {
+				opaque++;
+			}
+		}
+		if (wrong != 0 || opaque != 0) {
+			fail(wrong + " image pixels differ, and " + opaque + " pixels between images are not transparent");
+		}
+		System.out.printf("atlas: %d images on a %dx%d page, %d pixels differ%n", images.size(), size, size, wrong);
+	}
+
+	// unpacks a pixel of the page into ARGB
+	private static int rgba(byte[] page, int at) {
+		int i = at * BYTES_PER_PIXEL;
+		return (page[i + ALPHA] & BYTE_MASK) << 24 | (page[i] & BYTE_MASK) << 16 | (page[i + 1] & BYTE_MASK) << 8
+				| page[i + 2] & BYTE_MASK;
+	}
+
+	// the order and binds of the batch, for a frame of a level and for a run broken by a foreign image
+	private static void checkBatch() throws IOException {
+		Texture atlasTexture = texture();
+		RecordingImage sheet = new RecordingImage("atlas", atlasTexture);
+		SpriteBatch batch = new SpriteBatch();
+		batch.setSheet(sheet);
+
+		// a frame of the start of a level, with the player added first and the tiles not baked
+		BinaryLevel level = LevelCompiler.open(LEVEL_PATH);
+		ArrayList<String> expected = new ArrayList<>();
+		ArrayList<String> lanes = new ArrayList<>();
+		batch.add(new RecordingImage("frog", atlasTexture), 0, 0, SpriteBatch.ACTORS);
+		for (int i = 0; i < level.size(); i++) {
+			String type = level.getType(i);
+			boolean tile = ArchetypeRegistry.get(type).getKind() == Archetype.TILE;
+			batch.add(new RecordingImage(type + i, atlasTexture), level.getX(i), level.getY(i),
+					tile ? SpriteBatch.TILES : SpriteBatch.LANES);
+			(tile ? expected : lanes).add(type + i);
+		}
+		expected.addAll(lanes);
+		expected.add("frog");
+		int sprites = expected.size();
+		expected.add(0, "bind atlas");
+		expected.add("end atlas");
+		drawn.clear();
+		batch.flush();
+		if (!drawn.equals(expected) || batch.getBinds() != 1) {
+			fail("a frame of " + LEVEL_PATH + " drew out of order, or took " + batch.getBinds() + " binds");
+		}
+		int frameBinds = batch.getBinds();
+
+		// the lives are drawn after the camera transform is reset, so in a flush of their own
+		for (int i = 0; i < LIVES; i++) {
+			batch.add(new RecordingImage("life", atlasTexture), i, 0, SpriteBatch.HUD);
+		}
+		batch.flush();
+		int livesBinds = batch.getBinds();
+
+		// an image from outside the atlas breaks the run
+		batch.add(new RecordingImage("a", atlasTexture), 0, 0, SpriteBatch.LANES);
+		batch.add(new RecordingImage("b", texture()), 0, 0, SpriteBatch.LANES);
+		batch.add(new RecordingImage("c", atlasTexture), 0, 0, SpriteBatch.LANES);
+		drawn.clear();
+		batch.flush();
+		List<String> broken = Arrays.asList("bind atlas", "a", "end atlas", "b alone", "bind atlas", "c", "end atlas");
+		if (!drawn.equals(broken) || batch.getBinds() != 3) {
+			fail("a run broken by another image drew " + drawn + " in " + batch.getBinds() + " binds");
+		}
+
+		// the bands loaded, each a background drawn with its own texture
+		AssetRegistry.setHeadless(true);
+		int shippedBands = new World(LEVEL_PATH, SEED).getLoadedChunks();
+		BinaryLevel tall = new LevelGenerator(TALL_ENTITIES, LevelGenerator.DEFAULT_COLUMNS,
+				LevelGenerator.DEFAULT_DENSITY, SEED).generate();
+		World world = new World(tall, SEED);
+		Autopilot autopilot = new Autopilot(world, HeadlessRunner.DEFAULT_DELTA);
+		int tallBands = world.getLoadedChunks();
+		float start = world.getPlayer().getY();
+		float highest = start;
+		for (int tick = 0; tick < TICKS && !world.isGameOver(); tick++) {
+			autopilot.tick();
+			world.update(autopilot, HeadlessRunner.DEFAULT_DELTA);
+			tallBands = Math.max(tallBands, world.getLoadedChunks());
+			highest = Math.min(highest, world.getPlayer().getY());
+		}
+
+		System.out.printf("batch: a frame of %s draws %d sprites in %d bind, the lives in %d%n", LEVEL_PATH,
+				sprites, frameBinds, livesBinds);
+		System.out.printf("backgrounds: %d band loaded on %s; up to %d on a level %d rows tall, climbed %d rows%n",
+				shippedBands, LEVEL_PATH, tallBands, LaneIndex.rowOf(tall.getY(tall.size() - 1)) + 1,
+				(int) ((start - highest) / World.TILE_SIZE));
+		System.out.printf("binds per frame: %d on %s, up to %d on the tall level%n",
+				shippedBands + frameBinds + livesBinds, LEVEL_PATH, tallBands + frameBinds + livesBinds);
+	}
+
+	private static void fail(String message) {
+		System.out.println("FAILED: " + message);
+		passed = false;
+	}
+
+	// a texture which is only ever compared, standing in for one on the display
+	private static Texture texture() {
+		return (Texture) Proxy.newProxyInstance(Texture.class.getClassLoader(), new Class<?>[] { Texture.class },
+				(proxy, method, args) -> method.getName().equals("equals") ? proxy == args[0]
+						: method.getName().equals("hashCode") ? System.identityHashCode(proxy) : null);
+	}
+
+	/*
+	 * An image with no display behind it, which logs what it is asked to draw.
+	 */
+	private static class RecordingImage extends Image {
+		private final String name;
+		private final Texture texture;
+
+		private RecordingImage(String name, Texture texture) {
+			this.name = name;
+			this.texture = texture;
+		}
+
+		@Override
+		public int getWidth() {
+			return World.TILE_SIZE;
+		}
+
+		@Override
+		public int getHeight() {
+			return World.TILE_SIZE;
+		}
+
+		@Override
+		public Texture getTexture() {
+			return texture;
+		}
+
+		@Override
+		public void startUse() {
+			drawn.add("bind " + name);
+		}
+
+		@Override
+		public void endUse() {
+			drawn.add("end " + name);
+		}
+
+		@Override
+		public void drawEmbedded(float x, float y, float width, float height) {
+			drawn.add(name);
+		}
+
+		@Override
+		public void draw(float x, float y) {
+			drawn.add(name + " alone");
+		}
+	}
+}
@@ -0,0 +1,129 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Benchmark of the Autopilot: plays whole games headless on the shipped
+ * levels and on generated levels of a range of seeds, and reports how fast
+ * it plans and how often it wins. Plan times are measured around each
+ * decision, so they include refreshing the cached lane timelines and the
+ * distance field.
+ *
+ * A plan which takes longer than the budget has failed, and is counted in
+ * late%. Each plan's CPU time is measured as well as its wall time, so a
+ * plan made late by the thread being held up from outside, such as by the
+ * JIT compiler on a single core, can be told from one which overran.
+ *
+ * Usage: AutopilotBenchmark [episodes] [entities] [budgetMicros]
+ * Run from the project directory, so the assets can be found.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class AutopilotBenchmark {
+	private static final String[] SHIPPED_LEVELS = new String[] { "assets/levels/0.lvl", "assets/levels/1.lvl" };
+	private static final int DEFAULT_EPISODES = 10;
+	private static final int DEFAULT_ENTITIES = 400;
+	// a game still going after this many ticks, ten minutes of play, counts as lost
+	private static final int MAX_TICKS = 40000;
+	private static final int DELTA = HeadlessRunner.DEFAULT_DELTA;
+	private static final double NANO_TO_MICRO = 1e-3;
+	private static final double NANO_TO_SEC = 1e-9;
+	private static final int PERCENT = 100;
+	private static final double P99 = 99;
+
+	private static long budgetNanos = Autopilot.DEFAULT_BUDGET_NANOS;
+
+	/**
+	 * Plays every level and prints a table of results.
+	 *
+	 * @param args Optionally, the episodes per level, the entities in each
+	 *             generated level, and the plan budget in microseconds.
+	 */
+	public static void main(String[] args) {
+		int episodes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_EPISODES;
+		int entities = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ENTITIES;
+		if (args.length > 2) {
+			budgetNanos = (long) (Double.parseDouble(args[2]) / NANO_TO_MICRO);
+		}
+
+		AssetRegistry.setHeadless(true);
+		System.out.printf("%-22s %5s %5s %6s %6s %10s %9s %9s %9s %9s %9s %7s %7s %7s %7s%n", "level", "games", "won",
+				"holes", "lost", "plans/s", "mean us", "p99 us", "max us", "cpu p99", "cpu max", "cut%", "late%",
+				"goal%", "hit%");
+
+		for (String level : SHIPPED_LEVELS) {
+			Result result = new Result();
+			for (int seed = 0; seed < episodes; seed++) {
+				result.play(new World(level, seed));
+			}
+			result.print(level);
+		}
+
+		Result generated = new Result();
+		for (int seed = 0; seed < episodes; seed++) {
+			BinaryLevel level = new LevelGenerator(entities, LevelGenerator.DEFAULT_COLUMNS,
+					LevelGenerator.DEFAULT_DENSITY, seed).generate();
+			generated.play(new World(level, seed));
+		}
+		generated.print("generated " + entities);
+	}
+
+	/*
+	 * Totals over the games played on one level.
+	 */
+	private static class Result {
+		private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		private final LatencyHistogram planTimes = new LatencyHistogram();
+		private final LatencyHistogram planCpuTimes = new LatencyHistogram();
+		private long late = 0;
+		private int games = 0;
+		private int won = 0;
+		private int holes = 0;
+		private int lost = 0;
+		private long plansToGoal = 0;
+		private long overBudget = 0;
+		private long cacheHits = 0;
+		private long cacheMisses = 0;
+
+		// plays a game to the end, or until MAX_TICKS
+		private void play(World world) {
+			Autopilot autopilot = new Autopilot(world, DELTA);
+			autopilot.setBudget(budgetNanos);
+			for (int tick = 0; tick < MAX_TICKS && !world.isGameOver(); tick++) {
+				long plans = autopilot.getPlans();
+				long cpuStart = threads.getCurrentThreadCpuTime();
+				long start = System.nanoTime();
+				autopilot.tick();
+				if (autopilot.getPlans() != plans) {
+					long elapsed = System.nanoTime() - start;
+					planTimes.record(elapsed);
+					planCpuTimes.record(threads.getCurrentThreadCpuTime() - cpuStart);
+					if (elapsed > budgetNanos) {
+						late++;
+					}
+				}
+				world.update(autopilot, DELTA);
+			}
+			games++;
+			if (world.isWon()) {
+				won++;
+			}
+			holes += world.getHolesFilled();
+			lost += world.getPlayer().getLivesLost();
+			plansToGoal += autopilot.getPlansToGoal();
+			overBudget += autopilot.getOverBudget();
+			cacheHits += autopilot.getCacheHits();
+			cacheMisses += autopilot.getCacheMisses();
+		}
+
+		private void print(String level) {
+			long plans = planTimes.getCount();
+			System.out.printf("%-22s %5d %5d %6d %6d %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f %7.1f %7.1f %7.1f %7.1f%n",
+					level, games, won, holes, lost, plans / (planTimes.getMean() * plans * NANO_TO_SEC),
+					planTimes.getMean() * NANO_TO_MICRO, planTimes.getPercentile(P99) * NANO_TO_MICRO,
+					planTimes.getMax() * NANO_TO_MICRO, planCpuTimes.getPercentile(P99) * NANO_TO_MICRO,
+					planCpuTimes.getMax() * NANO_TO_MICRO, (double) PERCENT * overBudget / plans,
+					(double) PERCENT * late / plans, (double) PERCENT * plansToGoal / plans,
+					(double) PERCENT * cacheHits / (cacheHits + cacheMisses));
+		}
+	}
+}
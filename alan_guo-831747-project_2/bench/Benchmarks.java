@@ -0,0 +1,325 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import utilities.BoundingBox;
+
+/**
+ * Microbenchmarks for the hot paths of the game: the world tick, collision
+ * tests, tag checks, the player's sprite scan, level loading and reloading,
+ * the event bus and image decoding. Runs headless on the shipped levels, on
+ * the generated levels of the stress corpus, and on synthetic dense levels
+ * of each given sprite count, and reports throughput and allocation per
+ * operation.
+ *
+ * This is a hand-rolled harness, not JMH, as the project has no build to
+ * add JMH to: every benchmark runs in this one JVM, is warmed up for
+ * WARMUP_NANOS and timed once over MEASURE_NANOS, with no forks or repeated
+ * trials, so the figures are only fit for comparing runs on one machine.
+ * A JMH module, run with the GC profiler, is still to be written once the
+ * project has a Maven or Gradle build.
+ *
+ * Usage: Benchmarks [spriteCounts], e.g. Benchmarks 1000,10000,100000
+ * Run from the project directory, so the assets can be found.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class Benchmarks {
+	private static final String[] SHIPPED_LEVELS = new String[] { "assets/levels/0.lvl", "assets/levels/1.lvl" };
+	private static final int[] DEFAULT_COUNTS = new int[] { 1000, 10000 };
+	private static final long WARMUP_NANOS = 1000000000L;
+	private static final long MEASURE_NANOS = 2000000000L;
+	private static final double NANO_TO_SEC = 1e-9;
+	private static final int DELTA = HeadlessRunner.DEFAULT_DELTA;
+	private static final InputSource IDLE = key -> false;
+	private static final long SEED = 831747;
+
+	// first and last rows of lanes in a dense level, clear of the holes and the player's start
+	private static final int FIRST_LANE_ROW = 2;
+	private static final int LAST_LANE_ROW = 14;
+	private static final String[] ROAD_TYPES = new String[] { "bus", "racecar", "bulldozer", "bike" };
+	private static final String[] RIVER_TYPES = new String[] { "log", "longLog", "turtle" };
+
+	private static final String SOLID_TAG = "solid";
+	private static final String[] TAG_NAMES = new String[] { "hazard", "rideable", "pushing", SOLID_TAG, "goal" };
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	// results are accumulated here so the JIT cannot discard the work
+	private static volatile long sink;
+
+	/**
+	 * Runs every benchmark and prints a table of results.
+	 *
+	 * @param args Optionally, a comma-separated list of sprite counts.
+	 * @throws IOException If a synthetic level could not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		int[] counts = DEFAULT_COUNTS;
+		if (args.length > 0) {
+			String[] items = args[0].split(",");
+			counts = new int[items.length];
+			for (int i = 0; i < items.length; i++) {
+				counts[i] = Integer.parseInt(items[i]);
+			}
+		}
+
+		AssetRegistry.setHeadless(true);
+		System.out.printf("%-24s %-22s %14s %12s %12s %6s%n", "benchmark", "param", "ops/s", "B/op", "MB/s alloc",
+				"GCs");
+
+		for (String level : SHIPPED_LEVELS) {
+			benchmarkLevel(level, level);
+		}
+
+		for (int size : LevelGenerator.CORPUS_SIZES) {
+			benchmarkGenerated(size);
+		}
+
+		benchmarkReload(LevelGenerator.CORPUS_SIZES[LevelGenerator.CORPUS_SIZES.length - 1]);
+
+		benchmarkEvents();
+
+		benchmarkAssets();
+
+		for (int count : counts) {
+			File dense = writeDenseLevel(count);
+			benchmarkLevel(dense.getPath(), "dense " + count);
+
+			final ArrayList<Sprite> sprites = denseSprites(count);
+			final Player frog = new Player(Player.X_INIT, Player.Y_INIT);
+			run("Player.update", "sprites " + count, () -> frog.update(IDLE, DELTA, sprites));
+
+			run("Sprite.hasTag", "sprites " + count, () -> {
+				long found = 0;
+				for (int i = 0; i < sprites.size(); i++) {
+					if (sprites.get(i).hasTag(CollisionLayer.SOLID)) {
+						found++;
+					}
+				}
+				sink += found;
+			});
+
+			// the string tag scan hasTag used before collision layers, for comparison
+			final String[][] stringTags = new String[count][];
+			for (int i = 0; i < count; i++) {
+				stringTags[i] = toStringTags(sprites.get(i).getTags());
+			}
+			run("String[] tag scan", "sprites " + count, () -> {
+				long found = 0;
+				for (int i = 0; i < stringTags.length; i++) {
+					for (String test : stringTags[i]) {
+						if (SOLID_TAG.equals(test)) {
+							found++;
+							break;
+						}
+					}
+				}
+				sink += found;
+			});
+
+			final BoundingBox[] boxes = new BoundingBox[count];
+			for (int i = 0; i < count; i++) {
+				boxes[i] = new BoundingBox(sprites.get(i).getX(), sprites.get(i).getY(), World.TILE_SIZE,
+						World.TILE_SIZE);
+			}
+			final BoundingBox probe = new BoundingBox(App.SCREEN_WIDTH / 2, App.SCREEN_HEIGHT / 2, World.TILE_SIZE,
+					World.TILE_SIZE);
+			run("BoundingBox.intersects", "boxes " + count, () -> {
+				long found = 0;
+				for (int i = 0; i < boxes.length; i++) {
+					if (probe.intersects(boxes[i])) {
+						found++;
+					}
+				}
+				sink += found;
+			});
+		}
+	}
+
+	private static void benchmarkLevel(final String path, String param) throws IOException {
+		final World world = new World(path);
+		run("World.update", param, () -> world.update(IDLE, DELTA));
+
+		// compile the CSV source, then load from its compiled form, which CSV loads also reuse
+		File compiled = File.createTempFile("level-", BinaryLevel.EXTENSION);
+		compiled.deleteOnExit();
+		final String compiledPath = compiled.getPath();
+		run("LevelCompiler.compile", param, () -> {
+			try {
+				LevelCompiler.compile(path, compiledPath);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+		run("World.levelLoader blvl", param, () -> sink += new World(compiledPath).getCandidatePairs());
+	}
+
+	// generated levels are tall, so this measures streaming as much as the level's size
+	private static void benchmarkGenerated(int size) {
+		final BinaryLevel level = new LevelGenerator(size, LevelGenerator.DEFAULT_COLUMNS,
+				LevelGenerator.DEFAULT_DENSITY, SEED).generate();
+		final World world = new World(level, SEED);
+		run("World.update", "generated " + size, () -> world.update(IDLE, DELTA));
+		run("World.levelLoader mem", "generated " + size, () -> sink += new World(level, SEED).getCandidatePairs());
+	}
+
+	// swaps between a generated level and a copy with one sprite moved near the player, as a designer might
+	private static void benchmarkReload(int size) throws IOException {
+		File source = File.createTempFile("level-", ".lvl");
+		File edited = File.createTempFile("level-", ".lvl");
+		source.deleteOnExit();
+		edited.deleteOnExit();
+		new LevelGenerator(size, LevelGenerator.DEFAULT_COLUMNS, LevelGenerator.DEFAULT_DENSITY, SEED)
+				.write(source.getPath());
+		List<String> lines = Files.readAllLines(source.toPath());
+		int moved = lines.size() - LevelGenerator.DEFAULT_COLUMNS * 3;
+		String[] columns = lines.get(moved).split(",");
+		columns[1] = Integer.toString(Integer.parseInt(columns[1]) + World.TILE_SIZE);
+		lines.set(moved, String.join(",", columns));
+		Files.write(edited.toPath(), lines);
+
+		final World world = new World(source.getPath(), SEED);
+		final BinaryLevel[] versions = new BinaryLevel[] { LevelCompiler.open(source.getPath()),
+				LevelCompiler.open(edited.getPath()) };
+		final long[] reloads = new long[1];
+		run("World.reloadLevel", "generated " + size + ", 1 edit",
+				() -> sink += world.reloadLevel(versions[(int) (++reloads[0] & 1)]));
+	}
+
+	// decodes and lays out the atlas as at startup, decoding every image, then mapping them all from the cache
+	private static void benchmarkAssets() throws IOException {
+		final PixelCache none = new PixelCache(null);
+		run("AssetLoader.await", "no cache", () -> sink += layoutAssets(none));
+		File dir = Files.createTempDirectory("pixels-").toFile();
+		final PixelCache warm = new PixelCache(dir.getPath());
+		layoutAssets(warm);
+		run("AssetLoader.await", "warm cache", () -> sink += layoutAssets(warm));
+		for (File cached : dir.listFiles()) {
+			cached.delete();
+		}
+		dir.delete();
+	}
+
+	private static long layoutAssets(PixelCache cache) {
+		try {
+			return AssetLoader.start(App.ASSET_DIR, cache).await().hashCode();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return 0;
+		}
+	}
+
+	// publishing with no consumers is the cost every game pays, the rest only when something listens
+	private static void benchmarkEvents() {
+		final EventBus idle = new EventBus();
+		run("EventBus.publish", "no consumers", () -> idle.publish(EventBus.COLLISION, 0, 0, CollisionLayer.SOLID));
+
+		final EventBus bus = new EventBus();
+		final long[] counts = new long[1];
+		bus.addListener((type, tick, x, y, value) -> counts[0] += value);
+		run("EventBus.dispatch", "1 listener, 1 event", () -> {
+			bus.publish(EventBus.COLLISION, 0, 0, CollisionLayer.SOLID);
+			bus.dispatch();
+		});
+		sink += counts[0];
+	}
+
+	/*
+	 * Runs an operation repeatedly for a warm-up period, then measures it,
+	 * printing operations per second and allocation per operation.
+	 */
+	private static void run(String name, String param, Runnable op) {
+		loop(op, WARMUP_NANOS);
+
+		long threadId = Thread.currentThread().getId();
+		long gcBefore = gcCount();
+		long allocBefore = THREADS.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long ops = loop(op, MEASURE_NANOS);
+		double seconds = (System.nanoTime() - start) * NANO_TO_SEC;
+		long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocBefore;
+		long gcs = gcCount() - gcBefore;
+
+		System.out.printf("%-24s %-22s %14.1f %12.1f %12.2f %6d%n", name, param, ops / seconds,
+				(double) allocated / ops, allocated / seconds / (1024 * 1024), gcs);
+	}
+
+	// runs the operation in growing batches until the time is up, so the clock is read rarely
+	private static long loop(Runnable op, long nanos) {
+		long ops = 0;
+		int batch = 1;
+		long end = System.nanoTime() + nanos;
+		while (System.nanoTime() < end) {
+			for (int i = 0; i < batch; i++) {
+				op.run();
+			}
+			ops += batch;
+			if (batch < 1024) {
+				batch *= 2;
+			}
+		}
+		return ops;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/*
+	 * Writes a level file with a number of lane sprites spread over the rows
+	 * between the holes and the player's start, alternating road and river lanes.
+	 */
+	private static File writeDenseLevel(int count) throws IOException {
+		File file = File.createTempFile("dense-" + count + "-", ".lvl");
+		file.deleteOnExit();
+		try (PrintWriter out = new PrintWriter(file)) {
+			for (int i = 0; i < count; i++) {
+				int row = FIRST_LANE_ROW + i % (LAST_LANE_ROW - FIRST_LANE_ROW + 1);
+				int x = (i * 37) % App.SCREEN_WIDTH;
+				out.println(laneType(row, i) + "," + x + "," + row * World.TILE_SIZE + "," + (row % 2 == 0));
+			}
+		}
+		return file;
+	}
+
+	/*
+	 * Creates the same sprites as a dense level, without going through a file.
+	 */
+	private static ArrayList<Sprite> denseSprites(int count) {
+		ArrayList<Sprite> sprites = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int row = FIRST_LANE_ROW + i % (LAST_LANE_ROW - FIRST_LANE_ROW + 1);
+			float x = (i * 37) % App.SCREEN_WIDTH;
+			float y = row * World.TILE_SIZE;
+			boolean dirRight = row % 2 == 0;
+			sprites.add(ArchetypeRegistry.get(laneType(row, i)).create(x, y, dirRight));
+		}
+		return sprites;
+	}
+
+	// names of the layers in a mask, in the form tags took before they were bitmasks
+	private static String[] toStringTags(int mask) {
+		ArrayList<String> names = new ArrayList<>();
+		for (int layer = 0; layer < TAG_NAMES.length; layer++) {
+			if ((mask & (1 << layer)) != 0) {
+				names.add(new String(TAG_NAMES[layer]));
+			}
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	private static String laneType(int row, int i) {
+		String[] types = row % 2 == 0 ? ROAD_TYPES : RIVER_TYPES;
+		return types[(i / (LAST_LANE_ROW - FIRST_LANE_ROW + 1)) % types.length];
+	}
+}
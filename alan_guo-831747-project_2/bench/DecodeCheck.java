@@ -0,0 +1,80 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.newdawn.slick.opengl.PNGImageData;
+
+/**
+ * Check that the images the game decodes with ImageIO, through PixelCache,
+ * have the same pixels as Slick's own PNG loader gives, which the game used
+ * before the texture atlas. Decodes every image in the assets folder both
+ * ways and compares them pixel by pixel. Exits with status 1 if any pixel
+ * differs.
+ *
+ * Usage: DecodeCheck [directory]
+ * Run from the project directory, so the assets can be found.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class DecodeCheck {
+	private static final String DEFAULT_DIRECTORY = "assets";
+	private static final String PNG = ".png";
+	private static final int RGBA_DEPTH = 32;
+	private static final int BYTE_MASK = 0xFF;
+	private static final int OPAQUE = 0xFF;
+
+	/**
+	 * Decodes every image both ways, and prints how many pixels differ.
+	 *
+	 * @param args Optionally, the folder of images.
+	 * @throws IOException If an image cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		File directory = new File(args.length > 0 ? args[0] : DEFAULT_DIRECTORY);
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(PNG));
+		if (files == null || files.length == 0) {
+			System.err.println("No images in " + directory);
+			System.exit(1);
+		}
+		Arrays.sort(files);
+
+		PixelCache imageIO = new PixelCache(null);
+		long differing = 0;
+		for (File file : files) {
+			DecodedImage decoded = imageIO.load(file);
+			PNGImageData slick = new PNGImageData();
+			ByteBuffer pixels;
+			try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+				// as Slick's texture loader reads it: not flipped, alpha only if the file has it
+				pixels = slick.loadImage(in, false, false, null);
+			}
+
+			int count = 0;
+			if (slick.getWidth() != decoded.getWidth() || slick.getHeight() != decoded.getHeight()) {
+				count = decoded.getWidth() * decoded.getHeight();
+			} else {
+				int bytes = slick.getDepth() / Byte.SIZE;
+				for (int y = 0; y < decoded.getHeight(); y++) {
+					for (int x = 0; x < decoded.getWidth(); x++) {
+						int at = (y * slick.getTexWidth() + x) * bytes;
+						int alpha = slick.getDepth() == RGBA_DEPTH ? pixels.get(at + 3) & BYTE_MASK : OPAQUE;
+						int argb = alpha << 24 | (pixels.get(at) & BYTE_MASK) << 16
+								| (pixels.get(at + 1) & BYTE_MASK) << 8 | pixels.get(at + 2) & BYTE_MASK;
+						if (argb != decoded.getARGB(x, y)) {
+							count++;
+						}
+					}
+				}
+			}
+			System.out.printf("%-16s %4dx%-4d %2d bit: %d pixels differ%n", file.getName(), decoded.getWidth(),
+					decoded.getHeight(), slick.getDepth(), count);
+			differing += count;
+		}
+		if (differing != 0) {
+			System.exit(1);
+		}
+	}
+}
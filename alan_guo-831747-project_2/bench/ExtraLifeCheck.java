@@ -0,0 +1,153 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Check that snapshots are still taken and restored once the log carrying
+ * the extra life leaves the game. The extra life is left out until it is
+ * reset onto another log, and a snapshot must not read the log it let go
+ * of. In each case the player idles until an extra life is out, with a
+ * SnapshotRing taking a snapshot after every tick as App does, and then the
+ * log is taken out of the game:
+ * the next level is started, the game is restarted from a later level, the
+ * player is moved up a tall level so the band holding the log streams out,
+ * and the level is reloaded with the log's row edited out.
+ *
+ * Usage: ExtraLifeCheck
+ * Run from the project directory, so the assets can be found. Exits with
+ * status 1 if any check fails.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class ExtraLifeCheck {
+	private static final String[] LEVEL_PATHS = new String[] { "assets/levels/0.lvl", "assets/levels/1.lvl" };
+	private static final long SEED = 20003;
+	private static final int TALL_ENTITIES = 2000;
+	// an extra life comes out within 35 seconds of the last
+	private static final int MAX_WAIT_TICKS = 3000;
+	private static final int CAPACITY = 128;
+	private static final int TICKS_AFTER = 60;
+	private static final InputSource IDLE = key -> false;
+
+	private static boolean passed = true;
+
+	/**
+	 * Runs the checks and prints the results.
+	 *
+	 * @param args Ignored.
+	 * @throws IOException If a level cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		AssetRegistry.setHeadless(true);
+
+		World world = new World(LEVEL_PATHS, SEED);
+		SnapshotRing ring = ring(world);
+		LogType log = awaitExtraLife(world, ring);
+		world.startLevel(1);
+		check("starting the next level", world, ring, log);
+
+		log = awaitExtraLife(world, ring);
+		world.reset(SEED);
+		check("restarting from the next level", world, ring, log);
+
+		BinaryLevel tall = new LevelGenerator(TALL_ENTITIES, LevelGenerator.DEFAULT_COLUMNS,
+				LevelGenerator.DEFAULT_DENSITY, SEED).generate();
+		world = new World(tall, SEED);
+		ring = ring(world);
+		log = awaitExtraLife(world, ring);
+		// far enough up that every band near the start streams out
+		world.getPlayer().setY(tall.getY(0));
+		world.update(IDLE, HeadlessRunner.DEFAULT_DELTA);
+		check("streaming out its band", world, ring, log);
+
+		world = new World(LEVEL_PATHS[0], SEED);
+		ring = ring(world);
+		log = awaitExtraLife(world, ring);
+		world.reloadLevel(withoutRow(LevelCompiler.open(LEVEL_PATHS[0]), (int) log.getY()));
+		check("reloading without its row", world, ring, log);
+
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	private static SnapshotRing ring(World world) {
+		return new SnapshotRing(world, CAPACITY, SnapshotRing.DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	// idles, taking snapshots, until an extra life is out, and returns the log it rides
+	private static LogType awaitExtraLife(World world, SnapshotRing ring) {
+		for (int tick = 0; tick < MAX_WAIT_TICKS && world.getExtraLife() == null; tick++) {
+			world.update(IDLE, HeadlessRunner.DEFAULT_DELTA);
+			ring.capture();
+		}
+		if (world.getExtraLife() == null) {
+			fail("no extra life came out within " + MAX_WAIT_TICKS + " ticks");
+			System.exit(1);
+		}
+		return world.getExtraLife().getLog();
+	}
+
+	// the log must be gone with the extra life, and snapshots taken and restored as the game goes on
+	private static void check(String name, World world, SnapshotRing ring, LogType log) {
+		if (!log.isReleased()) {
+			fail(name + " left the extra life's log in the game, so nothing was checked");
+			return;
+		}
+		try {
+			if (world.getExtraLife() != null) {
+				fail(name + " left the extra life out on a log no longer in the game");
+			}
+			for (int tick = 0; tick < TICKS_AFTER; tick++) {
+				ring.capture();
+				world.update(IDLE, HeadlessRunner.DEFAULT_DELTA);
+			}
+			ring.capture();
+			long hash = world.stateHash();
+			if (!ring.restore(TICKS_AFTER) || !ring.restore(0)) {
+				fail(name + " left no snapshots to restore");
+			}
+			ring.capture();
+			for (int tick = 0; tick < TICKS_AFTER; tick++) {
+				world.update(IDLE, HeadlessRunner.DEFAULT_DELTA);
+				ring.capture();
+			}
+			if (world.stateHash() != hash) {
+				fail(name + " played differently after rewinding");
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			fail(name + " broke taking or restoring a snapshot");
+			return;
+		}
+		System.out.printf("%-32s log released, %d snapshots taken and restored%n", name, ring.size());
+	}
+
+	// a copy of a level with every record on a row taken out, as a designer might edit it
+	private static BinaryLevel withoutRow(BinaryLevel level, int y) throws IOException {
+		ArrayList<String> types = new ArrayList<>();
+		ArrayList<int[]> records = new ArrayList<>();
+		for (int i = 0; i < level.size(); i++) {
+			if (level.getY(i) == y) {
+				continue;
+			}
+			int type = types.indexOf(level.getType(i));
+			if (type < 0) {
+				type = types.size();
+				types.add(level.getType(i));
+			}
+			int flags = level.getDirRight(i) ? BinaryLevel.FLAG_DIR_RIGHT : 0;
+			records.add(new int[] { type, flags, level.getX(i), level.getY(i) });
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		LevelCompiler.write(new DataOutputStream(bytes), types, records);
+		return BinaryLevel.wrap(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	private static void fail(String message) {
+		System.out.println("FAILED: " + message);
+		passed = false;
+	}
+}
@@ -0,0 +1,111 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Check that a damaged compiled level is rejected with an IOException, and
+ * that the game then compiles the level file again instead of crashing. The
+ * compiled form of a shipped level is cut short at every length, and has its
+ * counts and a type index overwritten with values which do not fit. Then a
+ * damaged compiled file is put beside a copy of the level file, newer than
+ * it, and the level is opened as the game opens it.
+ *
+ * Usage: LevelFileCheck
+ * Run from the project directory, so the assets can be found. Exits with
+ * status 1 if a damaged level is read or throws anything but an IOException.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class LevelFileCheck {
+	private static final String LEVEL_PATH = "assets/levels/0.lvl";
+	// where the header's counts are, and how long the header is
+	private static final int TYPE_COUNT_AT = 6;
+	private static final int RECORD_COUNT_AT = 8;
+	private static final int HEADER_BYTES = 12;
+
+	private static boolean passed = true;
+
+	/**
+	 * Runs the checks and prints what was rejected.
+	 *
+	 * @param args Ignored.
+	 * @throws IOException If the level cannot be compiled, or a temporary file written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File compiled = File.createTempFile("level-", BinaryLevel.EXTENSION);
+		compiled.deleteOnExit();
+		LevelCompiler.compile(LEVEL_PATH, compiled.getPath());
+		byte[] good = Files.readAllBytes(compiled.toPath());
+		BinaryLevel level = BinaryLevel.wrap(ByteBuffer.wrap(good));
+		int recordsStart = good.length - level.size() * BinaryLevel.RECORD_BYTES;
+
+		int rejected = 0;
+		for (int length = 0; length < good.length; length++) {
+			rejected += reject("cut to " + length + " bytes", Arrays.copyOf(good, length));
+		}
+		rejected += reject("-1 types", withShort(good, TYPE_COUNT_AT, -1));
+		rejected += reject("too many types", withShort(good, TYPE_COUNT_AT, Short.MAX_VALUE));
+		rejected += reject("-1 records", withInt(good, RECORD_COUNT_AT, -1));
+		rejected += reject("too many records", withInt(good, RECORD_COUNT_AT, level.size() + 1));
+		rejected += reject("a name too long", withShort(good, HEADER_BYTES, -1));
+		byte[] badType = good.clone();
+		badType[recordsStart + BinaryLevel.RECORD_BYTES * (level.size() - 1)] = (byte) 0xFF;
+		rejected += reject("a type index out of range", badType);
+
+		// a damaged compiled file beside the level file is compiled again
+		File directory = Files.createTempDirectory("levels-").toFile();
+		File source = new File(directory, "0.lvl");
+		File beside = new File(BinaryLevel.compiledPath(source.getPath()));
+		Files.copy(new File(LEVEL_PATH).toPath(), source.toPath());
+		Files.write(beside.toPath(), Arrays.copyOf(good, recordsStart + 1));
+		beside.setLastModified(source.lastModified() + 1000);
+		try {
+			BinaryLevel opened = LevelCompiler.open(source.getPath());
+			if (opened.size() != level.size()) {
+				fail("the level compiled again has " + opened.size() + " records, not " + level.size());
+			}
+		} catch (IOException | RuntimeException e) {
+			fail("a damaged compiled file beside the level was not compiled again: " + e);
+		}
+		beside.delete();
+		source.delete();
+		directory.delete();
+
+		System.out.printf("%d damaged levels rejected, and a damaged compiled file compiled again%n", rejected);
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	// reads a damaged level, which must throw an IOException, and returns 1 if it did
+	private static int reject(String damage, byte[] bytes) {
+		try {
+			BinaryLevel.wrap(ByteBuffer.wrap(bytes));
+			fail("a level with " + damage + " was read");
+		} catch (IOException e) {
+			return 1;
+		} catch (RuntimeException e) {
+			fail("a level with " + damage + " threw " + e);
+		}
+		return 0;
+	}
+
+	private static byte[] withShort(byte[] bytes, int at, int value) {
+		byte[] copy = bytes.clone();
+		ByteBuffer.wrap(copy).putShort(at, (short) value);
+		return copy;
+	}
+
+	private static byte[] withInt(byte[] bytes, int at, int value) {
+		byte[] copy = bytes.clone();
+		ByteBuffer.wrap(copy).putInt(at, value);
+		return copy;
+	}
+
+	private static void fail(String message) {
+		System.out.println("FAILED: " + message);
+		passed = false;
+	}
+}
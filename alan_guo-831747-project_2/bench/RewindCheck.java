@@ -0,0 +1,134 @@
+import org.newdawn.slick.Input;
+
+/**
+ * Check that rewinding restores the game exactly, as App rewinds it. The
+ * Autopilot plays part of a level, then the player hops straight up until it
+ * loses a life. A SnapshotRing, much smaller than the game, takes a snapshot
+ * after every tick, so its slots and its arena wrap round many times. The
+ * hash of the game state is kept for every tick. The game is then stepped
+ * back one tick at a time, as holding the rewind key does, as far as the
+ * ring goes, checking the hash at every step, and getting the lost life back. From there the same
+ * keys are played again, and the game must come out as it did the first
+ * time. Last, the ring is rewound many ticks in one jump.
+ *
+ * Usage: RewindCheck
+ * Exits with status 1 if any restored state differs.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class RewindCheck {
+	private static final String LEVEL_PATH = "assets/levels/0.lvl";
+	private static final long SEED = 20003;
+	private static final int MAX_TICKS = 5000;
+	// ticks the Autopilot plays, short of completing the level, which would start the history over
+	private static final int AUTOPILOT_TICKS = 600;
+	private static final int HOP_PERIOD = 8;
+	// ticks played after the life is lost, so the ring holds ticks either side of it
+	private static final int TAIL_TICKS = 30;
+	// snapshots kept, far fewer than the ticks played
+	private static final int CAPACITY = 128;
+	// a plan stops at the node limit well within this, so the keys do not depend on the clock
+	private static final long PLAN_BUDGET_NANOS = 1000000000L;
+	private static final int[] KEYS = new int[] { Input.KEY_UP, Input.KEY_DOWN, Input.KEY_LEFT, Input.KEY_RIGHT };
+	private static final int NO_KEY = -1;
+
+	private static boolean passed = true;
+
+	/**
+	 * Runs the check and prints what was restored.
+	 *
+	 * @param args Ignored.
+	 */
+	public static void main(String[] args) {
+		AssetRegistry.setHeadless(true);
+		World world = new World(LEVEL_PATH, SEED);
+		SnapshotRing ring = new SnapshotRing(world, CAPACITY, SnapshotRing.DEFAULT_KEYFRAME_INTERVAL);
+		Autopilot autopilot = new Autopilot(world, HeadlessRunner.DEFAULT_DELTA);
+		autopilot.setBudget(PLAN_BUDGET_NANOS);
+		KeyState keys = new KeyState();
+		int[] script = new int[MAX_TICKS];
+		long[] hashes = new long[MAX_TICKS];
+
+		int ticks = 0;
+		int[] lives = new int[MAX_TICKS];
+		int lostAt = MAX_TICKS;
+		for (; ticks < MAX_TICKS && ticks < lostAt + TAIL_TICKS && !world.isGameOver(); ticks++) {
+			script[ticks] = NO_KEY;
+			if (ticks < AUTOPILOT_TICKS) {
+				autopilot.tick();
+				for (int key : KEYS) {
+					if (autopilot.isKeyPressed(key)) {
+						script[ticks] = key;
+					}
+				}
+			} else if (lostAt == MAX_TICKS && ticks % HOP_PERIOD == 0) {
+				script[ticks] = Input.KEY_UP;
+			}
+			step(world, keys, script[ticks]);
+			ring.capture();
+			hashes[ticks] = world.stateHash();
+			lives[ticks] = world.getPlayer().getLives();
+			if (ticks >= AUTOPILOT_TICKS && lostAt == MAX_TICKS && lives[ticks] < lives[ticks - 1]) {
+				lostAt = ticks;
+			}
+		}
+		int held = ring.size();
+		long stored = ring.getStoredBytes();
+		int latest = ticks - 1;
+		int oldest = latest - held + 1;
+		if (held < 2 || held > CAPACITY || ticks <= CAPACITY) {
+			fail(ticks + " ticks left " + held + " snapshots, so the ring did not wrap round");
+		}
+		if (lostAt >= ticks || lostAt <= oldest) {
+			fail("the snapshots held no longer span a lost life; change AUTOPILOT_TICKS");
+		}
+
+		// back one tick at a time, to the oldest snapshot held
+		for (int back = 1; back < held; back++) {
+			if (!ring.restore(1) || world.stateHash() != hashes[latest - back]
+					|| world.getPlayer().getLives() != lives[latest - back]) {
+				fail("stepping back " + back + " ticks restored the wrong state");
+				break;
+			}
+		}
+		if (ring.restore(1)) {
+			fail("stepped back past the oldest snapshot");
+		}
+
+		// the same keys again, from the oldest tick held
+		for (int tick = oldest + 1; tick < ticks; tick++) {
+			step(world, keys, script[tick]);
+			ring.capture();
+			if (world.stateHash() != hashes[tick]) {
+				fail("replaying from tick " + oldest + " went another way at tick " + tick);
+				break;
+			}
+		}
+
+		// one jump back, then forward again
+		int jump = ring.size() - 1;
+		if (!ring.restore(jump) || world.stateHash() != hashes[latest - jump]) {
+			fail("jumping back " + jump + " ticks restored the wrong state");
+		}
+
+		System.out.printf("%d ticks, a life lost at tick %d: %d snapshots in %d bytes of %d each, "
+				+ "stepped back %d ticks from %d lives to %d, jumped back %d%n", ticks, lostAt, held,
+				stored, ring.getStateSize(), held - 1, lives[latest], lives[oldest], jump);
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	private static void step(World world, KeyState keys, int key) {
+		keys.clear();
+		if (key != NO_KEY) {
+			keys.setPressed(key, true);
+		}
+		world.update(keys, HeadlessRunner.DEFAULT_DELTA);
+	}
+
+	private static void fail(String message) {
+		System.out.println("FAILED: " + message);
+		passed = false;
+	}
+}
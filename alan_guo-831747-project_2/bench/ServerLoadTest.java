@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Load test of the GameServer over loopback: runs a server on a thread of
+ * its own, and a crowd of GameClients on this thread, each hopping at random
+ * and decoding every snapshot it is sent. Reports the tick rate the server
+ * kept up, how long its ticks took, and the size of the snapshots.
+ *
+ * Usage: ServerLoadTest [clients] [seconds] [levelPath]
+ * Run from the project directory, so the assets can be found.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class ServerLoadTest {
+	private static final int DEFAULT_CLIENTS = 64;
+	private static final int DEFAULT_SECONDS = 10;
+	private static final int DELTA = HeadlessRunner.DEFAULT_DELTA;
+	private static final long SEED = 20003;
+	private static final long JOIN_TIMEOUT_MILLIS = 5000;
+	// each client presses a key in about one tick of this many
+	private static final int HOP_CHANCE = 20;
+	private static final int KEYS = 4;
+	private static final long MILLI_TO_NANO = 1000000;
+	private static final double NANO_TO_MICRO = 1e-3;
+	private static final double NANO_TO_SEC = 1e-9;
+	private static final int PERCENT = 100;
+	private static final double P99 = 99;
+
+	/**
+	 * Runs the test and prints the results.
+	 *
+	 * @param args Optionally, the number of clients, the seconds to run for
+	 *             and the level to play.
+	 * @throws IOException          If a socket could not be opened.
+	 * @throws InterruptedException If interrupted while waiting for the server.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int nClients = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+		String levelPath = args.length > 2 ? args[2] : null;
+
+		AssetRegistry.setHeadless(true);
+		// every client is on this host
+		GameServer server = new GameServer(0, levelPath, SEED, DELTA, nClients);
+		Thread serverThread = new Thread(server, "GameServer");
+		serverThread.start();
+
+		GameClient[] clients = new GameClient[nClients];
+		for (int i = 0; i < nClients; i++) {
+			clients[i] = GameClient.connect("localhost", server.getPort(), JOIN_TIMEOUT_MILLIS);
+		}
+		// measure from here, with every client playing
+		server.getTickTimes().reset();
+		long startTicks = server.getTicks();
+		long startBytes = server.getBytesSent();
+		long startSnapshots = server.getSnapshotsSent();
+		long startFull = server.getFullSnapshots();
+
+		Random random = new Random(SEED);
+		long start = System.nanoTime();
+		long end = start + seconds * 1000 * MILLI_TO_NANO;
+		long nextTick = start;
+		while (System.nanoTime() < end) {
+			for (GameClient client : clients) {
+				int keys = random.nextInt(HOP_CHANCE) == 0 ? 1 << random.nextInt(KEYS) : 0;
+				client.sendInput(keys);
+			}
+			nextTick += DELTA * MILLI_TO_NANO;
+			do {
+				for (GameClient client : clients) {
+					client.poll();
+				}
+				Thread.sleep(1);
+			} while (System.nanoTime() < nextTick);
+		}
+		double elapsed = (System.nanoTime() - start) * NANO_TO_SEC;
+
+		server.stop();
+		serverThread.join();
+		long snapshots = 0;
+		long failures = 0;
+		long behind = 0;
+		for (GameClient client : clients) {
+			snapshots += client.getSnapshots();
+			failures += client.getFailures();
+			behind = Math.max(behind, server.getTicks() - client.getLatestTick());
+			client.close();
+		}
+
+		long ticks = server.getTicks() - startTicks;
+		long sent = server.getSnapshotsSent() - startSnapshots;
+		long full = server.getFullSnapshots() - startFull;
+		LatencyHistogram tickTimes = server.getTickTimes();
+		System.out.printf("clients                %d (%d players)%n", nClients, server.getClientCount());
+		System.out.printf("ticks/s                %.1f (target %.1f)%n", ticks / elapsed, 1000.0 / DELTA);
+		System.out.printf("tick time us           mean %.1f  p99 %.1f  max %.1f%n",
+				tickTimes.getMean() * NANO_TO_MICRO, tickTimes.getPercentile(P99) * NANO_TO_MICRO,
+				tickTimes.getMax() * NANO_TO_MICRO);
+		System.out.printf("snapshots sent         %d (%.1f%% whole)%n", sent, full * (double) PERCENT / Math.max(1, sent));
+		System.out.printf("bytes per snapshot     %.1f%n",
+				(server.getBytesSent() - startBytes) / (double) Math.max(1, sent));
+		System.out.printf("server out KB/s        %.1f%n", (server.getBytesSent() - startBytes) / elapsed / 1024);
+		System.out.printf("snapshots decoded      %d (%d failed)%n", snapshots, failures);
+		System.out.printf("slowest client behind  %d ticks%n", behind);
+	}
+}
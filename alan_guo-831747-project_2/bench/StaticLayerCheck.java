@@ -0,0 +1,192 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Check that baking the stationary tiles of a level into StaticLayers draws
+ * the same pixels as drawing each tile by itself. There is no display here,
+ * so both are drawn in software, blending as Slick has OpenGL blend: by the
+ * source alpha, applied to the alpha channel as well, which is what an
+ * offscreen image keeps. The baked layers are built band by band from the
+ * records each LevelChunk loads, clipped to the band, as World builds them.
+ *
+ * Baking draws every tile below every moving sprite, wherever the level
+ * lists them, where before a tile listed after a sprite was drawn over it.
+ * The pixels which that changes as the level starts are reported, but are
+ * not counted as a failure.
+ *
+ * Usage: StaticLayerCheck
+ * Run from the project directory, so the assets can be found. Exits with
+ * status 1 if any baked pixel differs.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class StaticLayerCheck {
+	private static final String[] SHIPPED_LEVELS = new String[] { "assets/levels/0.lvl", "assets/levels/1.lvl" };
+	private static final int GENERATED_ENTITIES = 400;
+	private static final long SEED = 20003;
+	private static final int WIDTH = App.SCREEN_WIDTH;
+	private static final int CHANNEL_MAX = 255;
+	private static final int OPAQUE_BLACK = 0xFF000000;
+	private static final int RGB = 0xFFFFFF;
+
+	// decodes with the game's own decoder, without a cache
+	private static final PixelCache decoder = new PixelCache(null);
+	private static final HashMap<String, DecodedImage> images = new HashMap<>();
+
+	/**
+	 * Checks the shipped levels and a generated one, and prints the results.
+	 *
+	 * @param args Ignored.
+	 * @throws IOException If a level or an image cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		boolean identical = true;
+		for (String path : SHIPPED_LEVELS) {
+			identical &= check(path, LevelCompiler.open(path));
+		}
+		BinaryLevel generated = new LevelGenerator(GENERATED_ENTITIES, LevelGenerator.DEFAULT_COLUMNS,
+				LevelGenerator.DEFAULT_DENSITY, SEED).generate();
+		identical &= check("generated " + GENERATED_ENTITIES, generated);
+		if (!identical) {
+			System.exit(1);
+		}
+	}
+
+	// draws a level both ways, and prints how many pixels differ
+	private static boolean check(String name, BinaryLevel level) throws IOException {
+		int chunks = LevelChunk.indexOf(levelHeight(level)) + 1;
+		int origin = LevelChunk.top(0);
+		int height = chunks * LevelChunk.HEIGHT;
+
+		// each tile by itself, in the order of the level
+		int[] separate = canvas(height);
+		int tiles = 0;
+		for (int i = 0; i < level.size(); i++) {
+			if (isStatic(level.getType(i))) {
+				draw(separate, height, origin, level, i);
+				tiles++;
+			}
+		}
+
+		// each band's tiles into a layer of its own, then the layers
+		int[] baked = canvas(height);
+		for (int c = 0; c < chunks; c++) {
+			int top = LevelChunk.top(c);
+			int[] layer = new int[WIDTH * LevelChunk.HEIGHT];
+			int from = c == 0 ? 0 : level.firstAtOrBelow(top);
+			for (int i = from; i < level.size() && level.getY(i) < top + LevelChunk.HEIGHT; i++) {
+				if (isStatic(level.getType(i))) {
+					draw(layer, LevelChunk.HEIGHT, top, level, i);
+				}
+			}
+			blend(baked, height, layer, WIDTH, LevelChunk.HEIGHT, 0, top - origin);
+		}
+		int differing = countDiffering(separate, baked);
+
+		// the moving sprites as the level starts: over every tile, or in the order of the level, logs last
+		int[] before = canvas(height);
+		for (int logs = 0; logs < 2; logs++) {
+			for (int i = 0; i < level.size(); i++) {
+				if (isLog(level.getType(i)) == (logs == 1)) {
+					draw(before, height, origin, level, i);
+				}
+			}
+		}
+		int[] after = baked.clone();
+		for (int logs = 0; logs < 2; logs++) {
+			for (int i = 0; i < level.size(); i++) {
+				if (!isStatic(level.getType(i)) && isLog(level.getType(i)) == (logs == 1)) {
+					draw(after, height, origin, level, i);
+				}
+			}
+		}
+		int reordered = countDiffering(before, after);
+
+		System.out.printf("%-22s %6d tiles in %3d layers: %d pixels differ; tiles below sprites changes %d%n",
+				name, tiles, chunks, differing, reordered);
+		return differing == 0;
+	}
+
+	// the level is as tall as its lowest row, and at least a screen tall, as in World
+	private static int levelHeight(BinaryLevel level) {
+		int height = App.SCREEN_HEIGHT;
+		if (level.size() > 0) {
+			int rows = LaneIndex.rowOf(level.getY(level.size() - 1)) + 1;
+			height = Math.max(height, rows * World.TILE_SIZE);
+		}
+		return height;
+	}
+
+	private static boolean isStatic(String type) {
+		return ArchetypeRegistry.get(type).getKind() == Archetype.TILE;
+	}
+
+	private static boolean isLog(String type) {
+		return ArchetypeRegistry.get(type).getKind() == Archetype.LOG;
+	}
+
+	// a screen cleared to black, as the game's is
+	private static int[] canvas(int height) {
+		int[] pixels = new int[WIDTH * height];
+		Arrays.fill(pixels, OPAQUE_BLACK);
+		return pixels;
+	}
+
+	// draws the image of a record centred on it, onto pixels whose top row is at y = top
+	private static void draw(int[] target, int height, int top, BinaryLevel level, int i) throws IOException {
+		DecodedImage image = image(ArchetypeRegistry.get(level.getType(i)).getImageSrc());
+		int[] pixels = new int[image.getWidth() * image.getHeight()];
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				pixels[y * image.getWidth() + x] = image.getARGB(x, y);
+			}
+		}
+		int left = (int) Math.floor(level.getX(i) - image.getWidth() / 2f);
+		int y = (int) Math.floor(level.getY(i) - image.getHeight() / 2f) - top;
+		blend(target, height, pixels, image.getWidth(), image.getHeight(), left, y);
+	}
+
+	// blends an image over the target at (left, y), clipped to the target
+	private static void blend(int[] target, int height, int[] source, int width, int rows, int left, int y) {
+		for (int row = Math.max(0, -y); row < rows && y + row < height; row++) {
+			for (int col = Math.max(0, -left); col < width && left + col < WIDTH; col++) {
+				int t = (y + row) * WIDTH + left + col;
+				target[t] = blend(source[row * width + col], target[t]);
+			}
+		}
+	}
+
+	// GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA on every channel, in 8 bits
+	private static int blend(int source, int target) {
+		int alpha = source >>> 24;
+		int result = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+			int s = (source >>> shift) & CHANNEL_MAX;
+			int t = (target >>> shift) & CHANNEL_MAX;
+			result |= ((s * alpha + t * (CHANNEL_MAX - alpha) + CHANNEL_MAX / 2) / CHANNEL_MAX) << shift;
+		}
+		return result;
+	}
+
+	// counts the pixels whose colour differs, as the screen shows no alpha
+	private static int countDiffering(int[] a, int[] b) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			if ((a[i] & RGB) != (b[i] & RGB)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static DecodedImage image(String imageSrc) throws IOException {
+		DecodedImage image = images.get(imageSrc);
+		if (image == null) {
+			image = decoder.load(new File(imageSrc));
+			images.put(imageSrc, image);
+		}
+		return image;
+	}
+}
@@ -5,12 +5,13 @@
  * Modified by Alan Guo, University of Melbourne, ID: 831747
  */
 
+import java.io.IOException;
 import org.newdawn.slick.AppGameContainer;
 import org.newdawn.slick.BasicGame;
 import org.newdawn.slick.GameContainer;
 import org.newdawn.slick.Graphics;
-import org.newdawn.slick.SlickException;
 import org.newdawn.slick.Input;
+import org.newdawn.slick.SlickException;
 
 /**
  * Main class for the game.
@@ -21,29 +22,172 @@ public class App extends BasicGame {
     public static final int SCREEN_WIDTH = 1024;
     /** screen height, in pixels */
     public static final int SCREEN_HEIGHT = 768;
+    /** default game logic updates per second, overridden by -DtickRate */
+    public static final int TICK_RATE = 60;
+    /** default cap on catch-up updates per frame, overridden by -DmaxTicksPerFrame */
+    public static final int MAX_TICKS_PER_FRAME = 5;
+    /** key toggling the frame timing overlay */
+    public static final int KEY_PROFILER = Input.KEY_F3;
+    /** key writing the frame timings to PROFILE_PATH */
+    public static final int KEY_PROFILE_DUMP = Input.KEY_F4;
+    /** where frame timings are written, on a key press or on exit */
+    public static final String PROFILE_PATH = "frame-timings.csv";
+    /** key rewinding the game one tick per tick while held */
+    public static final int KEY_REWIND = Input.KEY_BACK;
+    /** how far back the game can be rewound, in seconds */
+    public static final int REWIND_SECONDS = 10;
+    /** key toggling assist mode, in which the autopilot plays */
+    public static final int KEY_ASSIST = Input.KEY_F2;
+    /** folder of the images packed into the texture atlas at startup */
+    public static final String ASSET_DIR = "assets";
+    /** nanoseconds to milliseconds, for the startup time */
+    private static final double NANO_TO_MILLI = 1e-6;
+    /** how long to wait for a server given by -Dconnect=host:port to answer */
+    public static final long CONNECT_TIMEOUT_MILLIS = 5000;
 
     private World world;
+    private InputSource input;
+    private FixedTimestep timestep;
+    // records the input of the game when run with -Drecord=path, otherwise null
+    private InputRecorder recorder;
+    // the recent history of the world, for rewinding; null while recording
+    private SnapshotRing history;
+    private boolean showProfiler = false;
+    // plays the game in assist mode
+    private Autopilot autopilot;
+    private boolean assist = false;
+    // plays on a GameServer when run with -Dconnect=host:port, otherwise null
+    private GameClient client;
+    // reloads the level files as they are saved when run with -DwatchLevels=true, otherwise null
+    private LevelReloader reloader;
+    // decodes the images while the window opens, or null to decode them in init()
+    private final AssetLoader loader;
+    // when main() started, for the time taken to the first frame
+    private final long startNanos;
+    private boolean drawn = false;
 
     public App() {
+        this(null, System.nanoTime());
+    }
+
+    /** Create the game, with its images already being decoded.
+     * @param loader The loader decoding the images, or null to decode them in init().
+     * @param startNanos When the program started, from System.nanoTime().
+     */
+    public App(AssetLoader loader, long startNanos) {
         super("Shadow Leap");
+        this.loader = loader;
+        this.startNanos = startNanos;
     }
 
     @Override
     public void init(GameContainer gc)
             throws SlickException {
-        world = new World();
+        // pack the images into one texture before any sprite asks for one
+        try {
+            AssetRegistry.setAtlas(loader != null ? loader.finish() : TextureAtlas.pack(ASSET_DIR));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        String connect = System.getProperty("connect");
+        if (connect != null) {
+            try {
+                int colon = connect.lastIndexOf(':');
+                client = GameClient.connect(connect.substring(0, colon),
+                        Integer.parseInt(connect.substring(colon + 1)), CONNECT_TIMEOUT_MILLIS);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        // a client draws the server's world, which it never updates itself
+        world = client != null ? client.getWorld() : new World();
+        input = new SlickInputSource(gc.getInput());
+        String recordPath = System.getProperty("record");
+        if (recordPath != null && client == null) {
+            try {
+                recorder = new InputRecorder(input, world, recordPath,
+                        InputRecorder.DEFAULT_CHECKPOINT_INTERVAL);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        timestep = new FixedTimestep(Integer.getInteger("tickRate", TICK_RATE),
+                Integer.getInteger("maxTicksPerFrame", MAX_TICKS_PER_FRAME));
+        // a recording must hold every tick played, so it cannot be rewound
+        if (recorder == null && client == null) {
+            history = new SnapshotRing(world, REWIND_SECONDS * Integer.getInteger("tickRate", TICK_RATE),
+                    SnapshotRing.DEFAULT_KEYFRAME_INTERVAL);
+        }
+        autopilot = new Autopilot(world, timestep.getTickMillis());
+        // a recording must replay on the level it was recorded on
+        if (Boolean.getBoolean("watchLevels") && recorder == null && client == null) {
+            try {
+                reloader = new LevelReloader(world);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
-    /** Update the game state for a frame.
+    /** Update the game state for a frame, in fixed-length ticks.
      * @param gc The Slick game container object.
      * @param delta Time passed since last frame (milliseconds).
      */
     @Override
     public void update(GameContainer gc, int delta)
             throws SlickException {
-        // Get data about the current input (keyboard state).
-        Input input = gc.getInput();
-        world.update(input, delta);
+        // The profiler keys are read directly, the rest through the input source.
+        FrameProfiler profiler = world.getProfiler();
+        if (gc.getInput().isKeyPressed(KEY_PROFILER)) {
+            showProfiler = !showProfiler;
+            profiler.setEnabled(showProfiler);
+        }
+        if (gc.getInput().isKeyPressed(KEY_PROFILE_DUMP)) {
+            dumpProfile();
+        }
+        // a recording replays the keyboard, so the autopilot cannot take over while recording
+        if (gc.getInput().isKeyPressed(KEY_ASSIST) && recorder == null && client == null) {
+            assist = !assist;
+        }
+
+        if (reloader != null) {
+            reloader.apply(world);
+        }
+
+        int ticks = timestep.advance(delta);
+        boolean rewind = history != null && gc.getInput().isKeyDown(KEY_REWIND);
+        for (int i = 0; i < ticks; i++) {
+            if (client != null) {
+                play();
+                continue;
+            }
+            if (rewind) {
+                history.restore(1);
+                continue;
+            }
+            // while recording, the recorder samples the input once per tick and hands the sample on
+            if (recorder != null) {
+                record(true);
+            }
+            if (assist) {
+                autopilot.tick();
+                world.update(autopilot, timestep.getTickMillis());
+            } else {
+                world.update(recorder != null ? recorder : input, timestep.getTickMillis());
+            }
+            if (recorder != null) {
+                record(false);
+            }
+            if (history != null) {
+                history.capture();
+            }
+        }
+        // the server starts the game again when it is over
+        if (world.isGameOver() && client == null) {
+            dumpProfile();
+            stopRecording();
+            gc.exit();
+        }
     }
 
     /** Render the entire screen, so it reflects the current game state.
@@ -52,7 +196,84 @@ public class App extends BasicGame {
      */
     public void render(GameContainer gc, Graphics g)
             throws SlickException {
-        world.render(g);
+        world.render(g, timestep.getAlpha());
+        if (showProfiler) {
+            world.getProfiler().render(g);
+        }
+        if (!drawn) {
+            drawn = true;
+            logStartup();
+        }
+    }
+
+    @Override
+    public boolean closeRequested() {
+        dumpProfile();
+        stopRecording();
+        if (client != null) {
+            client.close();
+        }
+        if (reloader != null) {
+            reloader.close();
+        }
+        return true;
+    }
+
+    // sends the server this tick's keys, and takes up the latest snapshot it sent
+    private void play() {
+        try {
+            client.sendInput(NetProtocol.toMask(input));
+            client.poll();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // reports how long the game took to draw its first frame, and how long the images took
+    private void logStartup() {
+        System.out.printf("First frame %.1f ms after start", (System.nanoTime() - startNanos) * NANO_TO_MILLI);
+        if (loader != null) {
+            System.out.printf(" (images ready after %.1f ms: %d decoded, %d from cache)",
+                    loader.getDecodeMillis(), loader.getCache().getMisses(), loader.getCache().getHits());
+        }
+        System.out.println();
+    }
+
+    // records the start or end of a tick, giving up on the recording if it fails
+    private void record(boolean begin) {
+        try {
+            if (begin) {
+                recorder.beginTick(timestep.getTickMillis());
+            } else {
+                recorder.endTick();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            stopRecording();
+        }
+    }
+
+    // closes the input log, if one is being recorded
+    private void stopRecording() {
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            recorder = null;
+        }
+    }
+
+    // writes the frame timings, if any were taken, even after the overlay is turned off
+    private void dumpProfile() {
+        if (world.getProfiler().getHistogram(FrameProfiler.TICK).getCount() > 0) {
+            try {
+                world.getProfiler().dumpCsv(PROFILE_PATH);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /** Start-up method. Creates the game and runs it.
@@ -60,7 +281,16 @@ public class App extends BasicGame {
      */
     public static void main(String[] args)
             throws SlickException {
-        AppGameContainer app = new AppGameContainer(new App());
+        long startNanos = System.nanoTime();
+        // decode the images while the window opens; -DpixelCache= with no folder decodes them every time
+        String cacheDir = System.getProperty("pixelCache", PixelCache.DEFAULT_DIRECTORY);
+        AssetLoader loader = null;
+        try {
+            loader = AssetLoader.start(ASSET_DIR, new PixelCache(cacheDir.isEmpty() ? null : cacheDir));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        AppGameContainer app = new AppGameContainer(new App(loader, startNanos));
         app.setShowFPS(false);
         app.setDisplayMode(SCREEN_WIDTH, SCREEN_HEIGHT, false);
         app.start();
@@ -0,0 +1,238 @@
+import utilities.BoundingBox;
+
+/**
+ * Immutable description of a kind of sprite, shared by every sprite of that
+ * kind: its image file, size, collision layers, speed and how it moves. The
+ * image itself is held by the AssetRegistry, which may evict and reload it.
+ * Sprites hold only their own position, and moving sprites their direction
+ * and timer, so a level of many sprites costs little more than their
+ * positions.
+ * The EntityStore groups moving sprites by archetype so each kind is moved
+ * by its own tight loop.
+ *
+ * Archetypes are described in a data file read by the ArchetypeRegistry, so
+ * a new kind of vehicle needs no new class.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public final class Archetype {
+	/** flag for sprites which reverse direction at set boundaries */
+	public static final int BOUNCE = 1;
+	/** flag for sprites which run a looping dive timer */
+	public static final int DIVE = 2;
+
+	/** kind of stationary tiles, baked into the background */
+	public static final int TILE = 0;
+	/** kind of sprites which travel along a lane */
+	public static final int VEHICLE = 1;
+	/** kind of rideable sprites which the extra life can ride */
+	public static final int LOG = 2;
+	/** kind of rideable sprites which dive, and cannot be ridden while under */
+	public static final int TURTLE = 3;
+	/** kind of sprites made by the game itself, which cannot be placed in a level */
+	public static final int ACTOR = 4;
+
+	private final String name;
+	private final int kind;
+	private final String imageSrc;
+	private final float width;
+	private final float height;
+	private final float boxWidth;
+	private final float boxHeight;
+	private final int tags;
+	private final float speed;
+	private final int flags;
+	private final float boundaryLeft;
+	private final float boundaryRight;
+	private final float timeLoop;
+	private final float timeFloating;
+
+	/**
+	 * Create an archetype. Only the ArchetypeRegistry makes archetypes, from
+	 * its data file.
+	 *
+	 * @param name          The name of the archetype, as used in level files.
+	 * @param kind          The kind of sprite, such as VEHICLE.
+	 * @param imageSrc      The location of the image file.
+	 * @param tags          The CollisionLayer mask of the sprites.
+	 * @param speed         The speed in pixels per millisecond, for moving kinds.
+	 * @param flags         The BOUNCE and DIVE flags.
+	 * @param boundaryLeft  The x-coordinate past which bouncing sprites turn right.
+	 * @param boundaryRight The x-coordinate past which bouncing sprites turn left.
+	 * @param timeLoop      The length of the dive loop, in milliseconds.
+	 * @param timeFloating  The time into the dive loop until which the sprite floats.
+	 */
+	Archetype(String name, int kind, String imageSrc, int tags, float speed, int flags, float boundaryLeft,
+			float boundaryRight, float timeLoop, float timeFloating) {
+		this.name = name;
+		this.kind = kind;
+		this.imageSrc = imageSrc;
+		this.tags = tags;
+		this.speed = speed;
+		this.flags = flags;
+		this.boundaryLeft = boundaryLeft;
+		this.boundaryRight = boundaryRight;
+		this.timeLoop = timeLoop;
+		this.timeFloating = timeFloating;
+
+		// dimensions from the image file, so they are known even in headless mode
+		width = AssetRegistry.getWidth(imageSrc);
+		height = AssetRegistry.getHeight(imageSrc);
+		BoundingBox box = new BoundingBox(0, 0, width, height);
+		boxWidth = box.getWidth();
+		boxHeight = box.getHeight();
+	}
+
+	/**
+	 * Creates a sprite of the archetype, of the class its kind calls for.
+	 *
+	 * @param x        The x-coordinate of the sprite.
+	 * @param y        The y-coordinate of the sprite.
+	 * @param dirRight True if the sprite moves right (ignored by tiles).
+	 * @return A new sprite.
+	 * @throws IllegalArgumentException If the archetype cannot be placed in a level.
+	 */
+	public Sprite create(float x, float y, boolean dirRight) {
+		switch (kind) {
+		case TILE:
+			return new Tile(this, x, y);
+		case VEHICLE:
+			return new Vehicle(this, x, y, dirRight);
+		case LOG:
+			return new Log(this, x, y, dirRight);
+		case TURTLE:
+			return new Turtle(this, x, y, dirRight);
+		default:
+			throw new IllegalArgumentException("Not a level sprite type: " + name);
+		}
+	}
+
+	/**
+	 * Accesses the name of the archetype.
+	 *
+	 * @return the name of the archetype
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Accesses the kind of sprite of the archetype.
+	 *
+	 * @return the kind, such as VEHICLE
+	 */
+	public int getKind() {
+		return kind;
+	}
+
+	/**
+	 * Accesses the location of the image file of the archetype.
+	 *
+	 * @return the location of the image file
+	 */
+	public String getImageSrc() {
+		return imageSrc;
+	}
+
+	/**
+	 * Accesses the width of the image.
+	 *
+	 * @return the width, in pixels
+	 */
+	public float getWidth() {
+		return width;
+	}
+
+	/**
+	 * Accesses the height of the image.
+	 *
+	 * @return the height, in pixels
+	 */
+	public float getHeight() {
+		return height;
+	}
+
+	/**
+	 * Accesses the width of the bounding box of the sprites, a little smaller
+	 * than the image.
+	 *
+	 * @return the width, in pixels
+	 */
+	public float getBoxWidth() {
+		return boxWidth;
+	}
+
+	/**
+	 * Accesses the height of the bounding box of the sprites, a little
+	 * smaller than the image.
+	 *
+	 * @return the height, in pixels
+	 */
+	public float getBoxHeight() {
+		return boxHeight;
+	}
+
+	/**
+	 * Accesses the CollisionLayer mask of the sprites.
+	 *
+	 * @return the layers the sprites belong to
+	 */
+	public int getTags() {
+		return tags;
+	}
+
+	/**
+	 * Accesses the speed of the sprites.
+	 *
+	 * @return the speed in pixels per millisecond
+	 */
+	public float getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * Check if sprites of the archetype have a given flag.
+	 *
+	 * @param flag The flag to check for.
+	 * @return True if the flag is set.
+	 */
+	public boolean hasFlag(int flag) {
+		return (flags & flag) != 0;
+	}
+
+	/**
+	 * Accesses the x-coordinate past which bouncing sprites turn right.
+	 *
+	 * @return the left boundary
+	 */
+	public float getBoundaryLeft() {
+		return boundaryLeft;
+	}
+
+	/**
+	 * Accesses the x-coordinate past which bouncing sprites turn left.
+	 *
+	 * @return the right boundary
+	 */
+	public float getBoundaryRight() {
+		return boundaryRight;
+	}
+
+	/**
+	 * Accesses the length of the dive loop.
+	 *
+	 * @return the length of the loop, in milliseconds
+	 */
+	public float getTimeLoop() {
+		return timeLoop;
+	}
+
+	/**
+	 * Accesses how long diving sprites float at the start of each dive loop.
+	 *
+	 * @return the time into the loop until which the sprite floats, in milliseconds
+	 */
+	public float getTimeFloating() {
+		return timeFloating;
+	}
+}
@@ -0,0 +1,221 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Shared registry of the archetypes of every kind of sprite, read from a data
+ * file the first time one is asked for. The file is DEFAULT_PATH unless
+ * -Darchetypes names another, and its format is described at its top: one
+ * line per archetype giving its name, kind, image, collision layers, speed
+ * and behaviour. Each archetype is made once and shared by every sprite of
+ * its kind.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public final class ArchetypeRegistry {
+	/** location of the data file read unless -Darchetypes names another */
+	public static final String DEFAULT_PATH = "assets/archetypes.csv";
+
+	// index format of the data file
+	private static final String COMMENT = "#";
+	private static final int NAME_INDEX = 0;
+	private static final int KIND_INDEX = 1;
+	private static final int IMAGE_INDEX = 2;
+	private static final int LAYERS_INDEX = 3;
+	private static final int SPEED_INDEX = 4;
+	private static final int BEHAVIOUR_INDEX = 5;
+	private static final int MIN_COLUMNS = 3;
+	private static final int MAX_COLUMNS = 6;
+	private static final String LAYER_SEPARATOR = "\\|";
+	private static final String BEHAVIOUR_SEPARATOR = ":";
+	private static final String BOUNCE = "bounce";
+	private static final String DIVE = "dive";
+	private static final int BEHAVIOUR_COLUMNS = 3;
+	// the names of the kinds, indexed by the kind
+	private static final String[] KIND_NAMES = new String[] { "tile", "vehicle", "log", "turtle", "actor" };
+
+	// archetypes by name, in the order of the data file, or null until read
+	private static LinkedHashMap<String, Archetype> archetypes = null;
+
+	private ArchetypeRegistry() {
+	}
+
+	/**
+	 * Reads the archetypes from a data file, replacing any read before.
+	 * Sprites already made keep the archetypes they were made with.
+	 *
+	 * @param path The location of the data file.
+	 * @throws IOException If the file cannot be read or is invalid.
+	 */
+	public static synchronized void load(String path) throws IOException {
+		LinkedHashMap<String, Archetype> loaded = new LinkedHashMap<>();
+		try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+			String text;
+			int line = 0;
+			while ((text = br.readLine()) != null) {
+				line++;
+				if (text.trim().isEmpty() || text.startsWith(COMMENT)) {
+					continue;
+				}
+				// keep trailing empty columns, such as an empty set of layers
+				String[] columns = text.split(",", -1);
+				if (columns.length < MIN_COLUMNS || columns.length > MAX_COLUMNS) {
+					throw invalid(path, line, "expected name,kind,image,layers[,speed[,behaviour]] but found \""
+							+ text + "\"");
+				}
+				Archetype archetype = parse(path, line, columns);
+				if (loaded.put(archetype.getName(), archetype) != null) {
+					throw invalid(path, line, "archetype \"" + archetype.getName() + "\" is defined twice");
+				}
+			}
+		}
+		archetypes = loaded;
+	}
+
+	/**
+	 * Looks up an archetype by name, reading the data file if it has not been
+	 * read yet.
+	 *
+	 * @param name The name of the archetype, as used in level files.
+	 * @return The archetype.
+	 * @throws IllegalArgumentException If no archetype has the name.
+	 * @throws IllegalStateException    If the data file could not be read.
+	 */
+	public static synchronized Archetype get(String name) {
+		Archetype archetype = archetypes().get(name);
+		if (archetype == null) {
+			throw new IllegalArgumentException("Unknown sprite type: " + name);
+		}
+		return archetype;
+	}
+
+	/**
+	 * Check if a name is that of an archetype which can be placed in a level.
+	 *
+	 * @param name The name to check.
+	 * @return True if the archetype exists and is not an ACTOR.
+	 * @throws IllegalStateException If the data file could not be read.
+	 */
+	public static synchronized boolean isLevelType(String name) {
+		Archetype archetype = archetypes().get(name);
+		return archetype != null && archetype.getKind() != Archetype.ACTOR;
+	}
+
+	/**
+	 * Lists the archetypes which can be placed in a level, reading the data
+	 * file if it has not been read yet.
+	 *
+	 * @return the archetypes other than ACTORs, in the order of the data file
+	 * @throws IllegalStateException If the data file could not be read.
+	 */
+	public static synchronized ArrayList<Archetype> getLevelTypes() {
+		ArrayList<Archetype> levelTypes = new ArrayList<>();
+		for (Archetype archetype : archetypes().values()) {
+			if (archetype.getKind() != Archetype.ACTOR) {
+				levelTypes.add(archetype);
+			}
+		}
+		return levelTypes;
+	}
+
+	// reads the data file on first use
+	private static LinkedHashMap<String, Archetype> archetypes() {
+		if (archetypes == null) {
+			try {
+				load(System.getProperty("archetypes", DEFAULT_PATH));
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not read archetypes: " + e.getMessage(), e);
+			}
+		}
+		return archetypes;
+	}
+
+	private static Archetype parse(String path, int line, String[] columns) throws IOException {
+		String name = columns[NAME_INDEX];
+		int kind = -1;
+		for (int i = 0; i < KIND_NAMES.length; i++) {
+			if (KIND_NAMES[i].equals(columns[KIND_INDEX])) {
+				kind = i;
+			}
+		}
+		if (kind < 0) {
+			throw invalid(path, line, "unknown kind \"" + columns[KIND_INDEX] + "\"");
+		}
+
+		int tags = 0;
+		if (columns.length > LAYERS_INDEX && !columns[LAYERS_INDEX].isEmpty()) {
+			for (String layer : columns[LAYERS_INDEX].split(LAYER_SEPARATOR)) {
+				int bit = CollisionLayer.fromName(layer);
+				if (bit == 0) {
+					throw invalid(path, line, "unknown collision layer \"" + layer + "\"");
+				}
+				tags |= bit;
+			}
+		}
+
+		float speed = 0;
+		if (columns.length > SPEED_INDEX && !columns[SPEED_INDEX].isEmpty()) {
+			speed = parseNumber(path, line, columns[SPEED_INDEX]);
+		}
+		if (kind == Archetype.TILE || kind == Archetype.ACTOR) {
+			if (speed != 0) {
+				throw invalid(path, line, "only vehicles, logs and turtles move");
+			}
+		} else if (speed <= 0) {
+			throw invalid(path, line, "vehicles, logs and turtles must have a speed above 0");
+		}
+
+		int flags = 0;
+		float[] parameters = new float[BEHAVIOUR_COLUMNS - 1];
+		if (columns.length > BEHAVIOUR_INDEX && !columns[BEHAVIOUR_INDEX].isEmpty()) {
+			String[] behaviour = columns[BEHAVIOUR_INDEX].split(BEHAVIOUR_SEPARATOR);
+			if (behaviour.length != BEHAVIOUR_COLUMNS) {
+				throw invalid(path, line, "expected bounce:left:right or dive:loop:floating but found \""
+						+ columns[BEHAVIOUR_INDEX] + "\"");
+			}
+			for (int i = 1; i < BEHAVIOUR_COLUMNS; i++) {
+				parameters[i - 1] = parseNumber(path, line, behaviour[i]);
+			}
+			if (behaviour[0].equals(BOUNCE)) {
+				flags = Archetype.BOUNCE;
+			} else if (behaviour[0].equals(DIVE)) {
+				flags = Archetype.DIVE;
+			} else {
+				throw invalid(path, line, "unknown behaviour \"" + behaviour[0] + "\"");
+			}
+		}
+		if ((kind == Archetype.TURTLE) != (flags == Archetype.DIVE)) {
+			throw invalid(path, line, "turtles, and only turtles, must dive");
+		}
+		if (flags == Archetype.BOUNCE && parameters[0] >= parameters[1]) {
+			throw invalid(path, line, "the left boundary of a bounce must be less than the right");
+		}
+		if (flags == Archetype.DIVE && (parameters[0] <= 0 || parameters[1] < 0 || parameters[1] > parameters[0])) {
+			throw invalid(path, line, "a dive loop must be longer than 0, and float for no longer than the loop");
+		}
+
+		return new Archetype(name, kind, columns[IMAGE_INDEX], tags, speed, flags,
+				flags == Archetype.BOUNCE ? parameters[0] : 0, flags == Archetype.BOUNCE ? parameters[1] : 0,
+				flags == Archetype.DIVE ? parameters[0] : 0, flags == Archetype.DIVE ? parameters[1] : 0);
+	}
+
+	// reads a number, rejecting NaN and infinity, which no speed, boundary or time may be
+	private static float parseNumber(String path, int line, String text) throws IOException {
+		float number;
+		try {
+			number = Float.parseFloat(text);
+		} catch (NumberFormatException e) {
+			throw invalid(path, line, "expected a number, not \"" + text + "\"");
+		}
+		if (!Float.isFinite(number)) {
+			throw invalid(path, line, "expected a finite number, not \"" + text + "\"");
+		}
+		return number;
+	}
+
+	private static IOException invalid(String path, int line, String message) {
+		return new IOException(path + ":" + line + ": " + message);
+	}
+}
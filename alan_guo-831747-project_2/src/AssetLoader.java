@@ -0,0 +1,121 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prepares the texture atlas in the background while the window opens. The
+ * images of a folder are decoded on a pool of worker threads, through a
+ * PixelCache, then laid out on the atlas's page in memory. The thread which
+ * owns the display only waits for the result and uploads it, in one go.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class AssetLoader {
+	private static final double NANO_TO_MILLI = 1e-6;
+
+	private final String directory;
+	private final PixelCache cache;
+	private final ExecutorService workers;
+	private final ArrayList<Future<DecodedImage>> decodes = new ArrayList<>();
+	private final Future<TextureAtlas.Layout> layout;
+	private final long startNanos = System.nanoTime();
+	private volatile long decodeNanos = 0;
+
+	private AssetLoader(String directory, PixelCache cache) throws IOException {
+		this.directory = directory;
+		this.cache = cache;
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+		workers = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "AssetLoader");
+			// a failed start should not be kept alive by the pool
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (final File file : TextureAtlas.listImages(directory)) {
+			decodes.add(workers.submit(() -> cache.load(file)));
+		}
+		// the layout waits for the decodes, and is queued behind them so it never holds up a worker they need
+		layout = workers.submit(this::layOut);
+		workers.shutdown();
+	}
+
+	/**
+	 * Starts decoding and laying out the images of a folder.
+	 *
+	 * @param directory The folder holding the images.
+	 * @param cache     The store of images decoded before.
+	 * @return the loader, already at work
+	 * @throws IOException If the folder cannot be listed.
+	 */
+	public static AssetLoader start(String directory, PixelCache cache) throws IOException {
+		return new AssetLoader(directory, cache);
+	}
+
+	/**
+	 * Waits for the images to be laid out, then uploads the atlas. Must run on
+	 * the thread which owns the display.
+	 *
+	 * @return the atlas of every image of the folder
+	 * @throws IOException If an image could not be read, or the images do not fit in one page.
+	 */
+	public TextureAtlas finish() throws IOException {
+		return TextureAtlas.upload(await());
+	}
+
+	/**
+	 * Waits for the images to be laid out, without needing a display.
+	 *
+	 * @return the page, ready for TextureAtlas.upload()
+	 * @throws IOException If an image could not be read, or the images do not fit in one page.
+	 */
+	public TextureAtlas.Layout await() throws IOException {
+		return get(layout);
+	}
+
+	/**
+	 * Accesses the store the images were decoded through.
+	 *
+	 * @return the cache, whose hits and misses tell how many images were decoded
+	 */
+	public PixelCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Accesses how long the images took to decode and lay out, from the start.
+	 *
+	 * @return the time, in milliseconds, or 0 if it is not yet done
+	 */
+	public double getDecodeMillis() {
+		return decodeNanos * NANO_TO_MILLI;
+	}
+
+	private TextureAtlas.Layout layOut() throws IOException {
+		ArrayList<DecodedImage> images = new ArrayList<>();
+		for (Future<DecodedImage> decode : decodes) {
+			images.add(get(decode));
+		}
+		TextureAtlas.Layout result = TextureAtlas.layout(directory, images);
+		decodeNanos = System.nanoTime() - startNanos;
+		return result;
+	}
+
+	// waits for a task, passing on what went wrong in it
+	private static <T> T get(Future<T> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading images");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,275 @@
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+
+/**
+ * Shared registry of the images used by sprites. Each image file is decoded
+ * once and handed out to every sprite that asks for it, with a reference count
+ * per file. Images no longer referenced stay resident so the next level can
+ * reuse them, until the resident size exceeds the memory budget, at which
+ * point the least recently used ones are destroyed.
+ *
+ * Images packed into the TextureAtlas, when one is set, are handed out as
+ * regions of its one texture. They cost nothing to keep and are never
+ * destroyed, so all sprites can be drawn by a SpriteBatch in one bind.
+ *
+ * Image dimensions are read from the file header, so in headless mode no
+ * image is ever loaded and the game logic runs without an OpenGL display.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public final class AssetRegistry {
+	/** Default budget for resident texture memory, in bytes. */
+	public static final long DEFAULT_BUDGET_BYTES = 16 * 1024 * 1024;
+	private static final int BYTES_PER_PIXEL = 4;
+	// a PNG file starts with an 8 byte signature, then the IHDR chunk holding the size
+	private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+	private static final int IHDR_TYPE = 0x49484452;
+
+	// entries in least-recently-used order, keyed by image file location
+	private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private static long budgetBytes = DEFAULT_BUDGET_BYTES;
+	private static long residentBytes = 0;
+	private static long hits = 0;
+	private static long misses = 0;
+	private static boolean headless = false;
+	// the images packed into one texture, or null to load each image on its own
+	private static TextureAtlas atlas = null;
+	// width and height of each image file, read from its header
+	private static final HashMap<String, int[]> sizes = new HashMap<>();
+
+	private static class Entry {
+		private final Image image;
+		private final long bytes;
+		// true if the image is a region of the atlas, whose texture must outlive it
+		private final boolean packed;
+		private int refCount = 0;
+
+		private Entry(Image image, long bytes, boolean packed) {
+			this.image = image;
+			this.bytes = bytes;
+			this.packed = packed;
+		}
+	}
+
+	private AssetRegistry() {
+	}
+
+	/**
+	 * Gets the image of a file, loading it only if it is not already resident.
+	 * Every call must be matched by a call to release().
+	 *
+	 * @param imageSrc The location of image file to load.
+	 * @return The shared image of the file, or null in headless mode.
+	 * @throws SlickException If the image could not be loaded.
+	 */
+	public static synchronized Image acquire(String imageSrc) throws SlickException {
+		Entry entry = entries.get(imageSrc);
+		if (entry == null) {
+			Image region = headless || atlas == null ? null : atlas.getRegion(imageSrc);
+			Image image = headless || region != null ? region : new Image(imageSrc);
+			entry = new Entry(image, image == null || region != null ? 0 : textureBytes(image), region != null);
+			entries.put(imageSrc, entry);
+			residentBytes += entry.bytes;
+			misses++;
+		} else {
+			hits++;
+		}
+		entry.refCount++;
+		return entry.image;
+	}
+
+	/**
+	 * Looks up the image of a file already acquired, without taking another
+	 * reference. The image stays valid for as long as the caller holds the
+	 * reference it acquired, so it is looked up again rather than kept.
+	 *
+	 * @param imageSrc The location of the image file.
+	 * @return The shared image of the file, or null in headless mode or if it is not resident.
+	 */
+	public static synchronized Image get(String imageSrc) {
+		Entry entry = entries.get(imageSrc);
+		return entry == null ? null : entry.image;
+	}
+
+	/**
+	 * Gives up one reference to the image of a file. The image stays resident
+	 * until trim() finds it unreferenced and over budget.
+	 *
+	 * @param imageSrc The location of the image file.
+	 */
+	public static synchronized void release(String imageSrc) {
+		Entry entry = entries.get(imageSrc);
+		if (entry != null && entry.refCount > 0) {
+			entry.refCount--;
+		}
+	}
+
+	/**
+	 * Destroys unreferenced images, least recently used first, until the
+	 * resident size is within the memory budget.
+	 */
+	public static synchronized void trim() {
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (residentBytes > budgetBytes && it.hasNext()) {
+			Entry entry = it.next().getValue();
+			if (entry.refCount == 0) {
+				try {
+					if (entry.image != null && !entry.packed) {
+						entry.image.destroy();
+					}
+				} catch (SlickException e) {
+					e.printStackTrace();
+				}
+				residentBytes -= entry.bytes;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Sets the memory budget for resident images, and trims down to it.
+	 *
+	 * @param bytes The budget, in bytes.
+	 */
+	public static synchronized void setBudget(long bytes) {
+		budgetBytes = bytes;
+		trim();
+	}
+
+	/**
+	 * Sets the atlas images are taken from, for images not already resident.
+	 * The atlas's texture counts towards the resident size for as long as it
+	 * is set.
+	 *
+	 * @param atlas The atlas, or null to load each image on its own.
+	 */
+	public static synchronized void setAtlas(TextureAtlas atlas) {
+		if (AssetRegistry.atlas != null) {
+			residentBytes -= textureBytes(AssetRegistry.atlas.getPage());
+		}
+		AssetRegistry.atlas = atlas;
+		if (atlas != null) {
+			residentBytes += textureBytes(atlas.getPage());
+		}
+	}
+
+	/**
+	 * Accesses the atlas images are taken from.
+	 *
+	 * @return the atlas, or null if images are loaded on their own
+	 */
+	public static synchronized TextureAtlas getAtlas() {
+		return atlas;
+	}
+
+	/**
+	 * Sets whether images are loaded. In headless mode acquire() hands out no
+	 * images, so sprites can be created and updated without a display.
+	 *
+	 * @param headless True to stop loading images.
+	 */
+	public static synchronized void setHeadless(boolean headless) {
+		AssetRegistry.headless = headless;
+	}
+
+	/**
+	 * Check if the registry is in headless mode.
+	 *
+	 * @return True if images are not loaded.
+	 */
+	public static synchronized boolean isHeadless() {
+		return headless;
+	}
+
+	/**
+	 * Accesses the width of an image file, without loading the image.
+	 *
+	 * @param imageSrc The location of the image file.
+	 * @return the width of the image, in pixels
+	 */
+	public static int getWidth(String imageSrc) {
+		return getSize(imageSrc)[0];
+	}
+
+	/**
+	 * Accesses the height of an image file, without loading the image.
+	 *
+	 * @param imageSrc The location of the image file.
+	 * @return the height of the image, in pixels
+	 */
+	public static int getHeight(String imageSrc) {
+		return getSize(imageSrc)[1];
+	}
+
+	/**
+	 * Accesses the number of requests served by an already resident image.
+	 *
+	 * @return the number of cache hits
+	 */
+	public static synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Accesses the number of requests which had to load an image.
+	 *
+	 * @return the number of cache misses
+	 */
+	public static synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Accesses the texture memory used by resident images.
+	 *
+	 * @return the resident size, in bytes
+	 */
+	public static synchronized long getResidentBytes() {
+		return residentBytes;
+	}
+
+	/**
+	 * Accesses the number of live references to the image of a file.
+	 *
+	 * @param imageSrc The location of the image file.
+	 * @return the reference count, or 0 if not resident
+	 */
+	public static synchronized int getRefCount(String imageSrc) {
+		Entry entry = entries.get(imageSrc);
+		return entry == null ? 0 : entry.refCount;
+	}
+
+	private static synchronized int[] getSize(String imageSrc) {
+		int[] size = sizes.get(imageSrc);
+		if (size == null) {
+			size = new int[2];
+			try (DataInputStream in = new DataInputStream(new FileInputStream(imageSrc))) {
+				// skip the length of the IHDR chunk, which precedes its type
+				if (in.readLong() != PNG_SIGNATURE || in.readInt() < 0 || in.readInt() != IHDR_TYPE) {
+					throw new IOException("Not a PNG file: " + imageSrc);
+				}
+				size[0] = in.readInt();
+				size[1] = in.readInt();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			sizes.put(imageSrc, size);
+		}
+		return size;
+	}
+
+	// textures are padded to power-of-two sizes, so count the texture, not the image
+	private static long textureBytes(Image image) {
+		if (image.getTexture() == null) {
+			return (long) image.getWidth() * image.getHeight() * BYTES_PER_PIXEL;
+		}
+		return (long) image.getTexture().getTextureWidth() * image.getTexture().getTextureHeight() * BYTES_PER_PIXEL;
+	}
+}
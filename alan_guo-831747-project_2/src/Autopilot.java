@@ -0,0 +1,828 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.newdawn.slick.Input;
+import utilities.BoundingBox;
+
+/**
+ * Plays the game by planning a path to an unfilled hole, for soak testing
+ * and as an assist mode. Plans are searched by A* over states of the
+ * player's position, row and time, stepped by DECISION_TICKS ticks at a
+ * time. Each step is simulated tick by tick, following the same rules as
+ * World and Player: riding, hazards swept over the tick, solid sprites,
+ * being pushed, and being carried off the screen.
+ *
+ * Lane sprites move in closed form, so where they will be is known exactly.
+ * Their positions, directions and whether turtles are afloat are cached per
+ * row for each tick they are needed, and kept across plans until the rows
+ * change. A plan stops when it reaches a hole or runs out of its time
+ * budget, in which case the player heads for the state nearest a hole. The
+ * clock is read before every expansion, and the distance field guiding the
+ * search is rebuilt a piece at a time within the first half of each plan's
+ * budget, the rows being counted instead until it is done. The search stops
+ * once the slowest expansion so far would no longer fit in what is left of
+ * the budget, so a plan overruns it only when an expansion is slower than
+ * any before it, or the thread is held up from outside.
+ *
+ * Call tick() before each World update, then pass the autopilot to the
+ * update as its input.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class Autopilot implements InputSource {
+	/** ticks between decisions, at each of which the player may hop once */
+	public static final int DECISION_TICKS = 4;
+	/** default time allowed for a plan, in nanoseconds */
+	public static final long DEFAULT_BUDGET_NANOS = 1000000;
+	// ticks of occupancy cached per row, a power of two, which also bounds how far ahead a plan looks
+	private static final int HORIZON_TICKS = 1024;
+	private static final int MAX_DEPTH = HORIZON_TICKS / DECISION_TICKS - 1;
+	private static final int MAX_NODES = 8192;
+	// decisions a state must be survived for to be headed for without reaching a hole
+	private static final int SAFE_DEPTH = 12;
+	// open-addressed table of states already reached, four times the nodes
+	private static final int SEEN_BITS = 15;
+	private static final int SEEN_SIZE = 1 << SEEN_BITS;
+	// positions closer than this are taken to be the same state
+	private static final float X_QUANTUM = 4;
+	// distance kept from hazards, and overlap kept when riding, covering the rounding of bounds
+	private static final float MARGIN = 1.5f;
+	// how far past the edge of the screen the player may be carried, as in Player
+	private static final float EDGE_FUZZ = 0.05f * World.TILE_SIZE;
+	private static final float HALF_TILE = World.TILE_SIZE / 2;
+	private static final int ROWS_PER_TIMELINE_RING = LaneIndex.BUCKETS;
+	// the distance field covers this many rows either side of the player, and is redrawn half way out
+	private static final int FIELD_REACH = 32;
+	private static final int FIELD_ROWS = 2 * FIELD_REACH + 1;
+	private static final int FIELD_COLUMNS = (int) (App.SCREEN_WIDTH / X_QUANTUM);
+	private static final int HOP_COLUMNS = (int) (World.TILE_SIZE / X_QUANTUM);
+	private static final int UNREACHED = Short.MAX_VALUE;
+	// cells of the distance field searched between reads of the clock
+	private static final int FIELD_CLOCK_CELLS = FIELD_COLUMNS;
+	// share of a plan's budget the distance field may be rebuilt in, as a divisor
+	private static final int FIELD_BUDGET_SHARE = 2;
+	// share of a plan's budget kept back for reading out the plan once the search stops, as a divisor
+	private static final int RESERVE_SHARE = 20;
+
+	// the actions open at each decision
+	private static final int WAIT = 0;
+	private static final int[] ACTION_KEYS = new int[] { -1, Input.KEY_UP, Input.KEY_LEFT, Input.KEY_RIGHT,
+			Input.KEY_DOWN };
+	private static final int[] ACTION_DX = new int[] { 0, 0, -World.TILE_SIZE, World.TILE_SIZE, 0 };
+	private static final int[] ACTION_DY = new int[] { 0, -1, 0, 0, 1 };
+
+	// outcomes of simulating the player
+	private static final int ALIVE = 0;
+	private static final int DEAD = 1;
+	private static final int GOAL = 2;
+
+	// kinds of contact a sprite makes, as bits
+	private static final int KILLS = 1;
+	private static final int CARRIES = 2;
+	private static final int BLOCKS = 4;
+	private static final int PUSHES = 8;
+
+	private final World world;
+	private final int delta;
+	private long budgetNanos = DEFAULT_BUDGET_NANOS;
+
+	// the key pressed this tick, and the ticks until the next decision
+	private int pressed = -1;
+	private int ticksToDecision = 0;
+
+	// the player's bounds, scaled as every BoundingBox is, and the holes' row
+	private final float frogHalfWidth;
+	private final float frogHalfHeight;
+	private int holeRow;
+	private int lastRow;
+
+	// occupancy of rows, by row modulo the ring size
+	private final LaneTimeline[] timelines = new LaneTimeline[ROWS_PER_TIMELINE_RING];
+	private int layoutVersion;
+	private long cacheHits = 0;
+	private long cacheMisses = 0;
+
+	// decisions needed to reach a hole from each position, ignoring lane sprites, by row then column
+	private int[] field = new int[FIELD_ROWS * FIELD_COLUMNS];
+	private int fieldTop = -1;
+	private int fieldVersion = -1;
+	// the field being rebuilt, over as many plans as it takes, and how far it has got
+	private int[] nextField = new int[FIELD_ROWS * FIELD_COLUMNS];
+	private final int[] fieldQueue = new int[FIELD_ROWS * FIELD_COLUMNS];
+	private final boolean[] fieldOpen = new boolean[FIELD_ROWS * FIELD_COLUMNS];
+	private boolean fieldBuilding = false;
+	private int nextTop;
+	private int nextVersion;
+	private int openRows;
+	private int queueHead;
+	private int queueTail;
+
+	// the search's states, in a pool reused by every plan
+	private final float[] nodeX = new float[MAX_NODES];
+	private final int[] nodeRow = new int[MAX_NODES];
+	private final int[] nodeDepth = new int[MAX_NODES];
+	private final int[] nodeH = new int[MAX_NODES];
+	private final int[] nodeParent = new int[MAX_NODES];
+	private final int[] nodeAction = new int[MAX_NODES];
+	private int nodeCount;
+	private final int[] heap = new int[MAX_NODES];
+	private int heapSize;
+	private final long[] seenKeys = new long[SEEN_SIZE];
+	private final int[] seenStamps = new int[SEEN_SIZE];
+	private int stamp = 0;
+
+	// the state being simulated
+	private float simX;
+	private int simRow;
+
+	// the latest plan, as the actions of each decision
+	private final int[] planActions = new int[MAX_DEPTH + 1];
+	private int planLength = 0;
+
+	// statistics over every plan made
+	private long plans = 0;
+	private long plansToGoal = 0;
+	private long overBudget = 0;
+	private long late = 0;
+	private final LatencyHistogram planTimes = new LatencyHistogram();
+	private long expansions = 0;
+
+	/**
+	 * Create an autopilot for a world updated with ticks of a fixed length.
+	 *
+	 * @param world The world to play.
+	 * @param delta The length of each tick, in milliseconds.
+	 */
+	public Autopilot(World world, int delta) {
+		this.world = world;
+		this.delta = delta;
+		BoundingBox frogBounds = new BoundingBox(0, 0, world.getPlayer().getWidth(), world.getPlayer().getHeight());
+		frogHalfWidth = frogBounds.getWidth() / 2;
+		frogHalfHeight = frogBounds.getHeight() / 2;
+		for (int i = 0; i < timelines.length; i++) {
+			timelines[i] = new LaneTimeline();
+		}
+		layoutVersion = world.getLayoutVersion();
+	}
+
+	/**
+	 * Sets the time allowed for each plan. The best path found so far is used
+	 * when it runs out.
+	 *
+	 * @param nanos The budget, in nanoseconds.
+	 */
+	public void setBudget(long nanos) {
+		budgetNanos = nanos;
+	}
+
+	/**
+	 * Decides the key to press this tick, planning again at each decision.
+	 * Must be called once before each update of the world.
+	 */
+	public void tick() {
+		pressed = -1;
+		if (ticksToDecision > 0) {
+			ticksToDecision--;
+			return;
+		}
+		ticksToDecision = DECISION_TICKS - 1;
+		plan();
+		if (planLength > 0) {
+			pressed = ACTION_KEYS[planActions[0]];
+		}
+	}
+
+	@Override
+	public boolean isKeyPressed(int key) {
+		return key == pressed;
+	}
+
+	/**
+	 * Plans a path from the player's current state towards an unfilled hole.
+	 *
+	 * @return True if the plan reaches a hole, false if it only gets closer.
+	 */
+	public boolean plan() {
+		long start = System.nanoTime();
+		long deadline = start + budgetNanos - budgetNanos / RESERVE_SHARE;
+		if (world.getLayoutVersion() != layoutVersion) {
+			layoutVersion = world.getLayoutVersion();
+			for (LaneTimeline timeline : timelines) {
+				timeline.row = -1;
+			}
+		}
+		BoundingBox hole = world.getHole(0);
+		holeRow = LaneIndex.rowOf((hole.getTop() + hole.getBottom()) / 2);
+		lastRow = world.getLevelHeight() / World.TILE_SIZE - 1;
+		long laneTime = world.getLaneTime();
+		Player frog = world.getPlayer();
+		int frogRow = LaneIndex.rowOf(frog.getY());
+		int top = Math.max(holeRow, frogRow - FIELD_REACH);
+		if (fieldVersion != layoutVersion || Math.abs(top - fieldTop) > FIELD_REACH / 2) {
+			buildField(top, start + budgetNanos / FIELD_BUDGET_SHARE);
+		}
+
+		nodeCount = 0;
+		heapSize = 0;
+		stamp++;
+		int root = addNode(frog.getX(), frogRow, 0, -1, WAIT);
+		seen(root);
+		push(root);
+
+		int best = root;
+		int goal = -1;
+		long expanded = 0;
+		// the longest an expansion has taken, so the search stops before one would overrun
+		long lastCheck = System.nanoTime();
+		long longestExpansion = 0;
+		search: while (heapSize > 0) {
+			long now = System.nanoTime();
+			longestExpansion = Math.max(longestExpansion, now - lastCheck);
+			lastCheck = now;
+			if (now + longestExpansion > deadline) {
+				overBudget++;
+				break;
+			}
+			int node = pop();
+			expanded++;
+			if (better(node, best)) {
+				best = node;
+			}
+			if (nodeDepth[node] >= MAX_DEPTH) {
+				continue;
+			}
+			long time = laneTime + (long) nodeDepth[node] * DECISION_TICKS * delta;
+			for (int action = 0; action < ACTION_KEYS.length; action++) {
+				int outcome = simulateStep(nodeX[node], nodeRow[node], time, action);
+				if (outcome == DEAD) {
+					continue;
+				}
+				if (nodeCount == MAX_NODES) {
+					break search;
+				}
+				int child = addNode(simX, simRow, nodeDepth[node] + 1, node, action);
+				if (outcome == GOAL) {
+					goal = child;
+					break search;
+				}
+				if (seen(child)) {
+					nodeCount--;
+					continue;
+				}
+				push(child);
+			}
+		}
+
+		// the plan is the path to the goal, or towards the best state found
+		int target = goal >= 0 ? goal : best;
+		planLength = nodeDepth[target];
+		for (int node = target; nodeParent[node] >= 0; node = nodeParent[node]) {
+			planActions[nodeDepth[node] - 1] = nodeAction[node];
+		}
+
+		long elapsed = System.nanoTime() - start;
+		if (elapsed > budgetNanos) {
+			late++;
+		}
+		plans++;
+		planTimes.record(elapsed);
+		expansions += expanded;
+		if (goal >= 0) {
+			plansToGoal++;
+		}
+		return goal >= 0;
+	}
+
+	/*
+	 * Simulates one decision from a state: the action on the first tick, then
+	 * waiting. Leaves the resulting state in simX and simRow.
+	 */
+	private int simulateStep(float x, int row, long time, int action) {
+		simX = x;
+		simRow = row;
+		for (int tick = 0; tick < DECISION_TICKS; tick++) {
+			int outcome = simulateTick(time + (long) tick * delta, tick == 0 ? action : WAIT);
+			if (outcome != ALIVE) {
+				return outcome;
+			}
+		}
+		return ALIVE;
+	}
+
+	/*
+	 * Simulates one tick of the player, as World.update() does when the lanes'
+	 * clock reads the given time: contacts, then the hop, then the carry.
+	 */
+	private int simulateTick(long time, int action) {
+		LaneTimeline lane = timeline(simRow);
+		float ride = lane.velocityOf(CARRIES, time, simX);
+		boolean riding = !Float.isNaN(ride);
+		if (!riding && lane.kills(time, simX)) {
+			return DEAD;
+		}
+		float push = riding ? ride : 0;
+		float pushing = lane.velocityOf(PUSHES, time, simX);
+		if (!Float.isNaN(pushing)) {
+			push = pushing;
+		}
+
+		float dx = ACTION_DX[action];
+		int dy = ACTION_DY[action];
+		if (simX + dx - HALF_TILE < 0 || simX + dx + HALF_TILE > App.SCREEN_WIDTH) {
+			dx = 0;
+			push = 0;
+		}
+		if (simRow + dy < 0 || simRow + dy > lastRow) {
+			dy = 0;
+		}
+		if ((dx != 0 || dy != 0) && !Float.isNaN(timeline(simRow + dy).velocityOf(BLOCKS, time, simX + dx))) {
+			dx = 0;
+			dy = 0;
+		}
+		simX += dx + push * delta;
+		simRow += dy;
+
+		if (simX - HALF_TILE < EDGE_FUZZ || simX + HALF_TILE > App.SCREEN_WIDTH + EDGE_FUZZ) {
+			return DEAD;
+		}
+		return reachesHole(simX, simRow) ? GOAL : ALIVE;
+	}
+
+	/*
+	 * Orders the states a plan can head for when no hole is in reach: those
+	 * survived for SAFE_DEPTH decisions first, then the nearest a hole, then
+	 * the longest survived.
+	 */
+	private boolean better(int a, int b) {
+		boolean safeA = nodeDepth[a] >= SAFE_DEPTH;
+		boolean safeB = nodeDepth[b] >= SAFE_DEPTH;
+		if (safeA != safeB) {
+			return safeA;
+		}
+		if (!safeA && nodeDepth[a] != nodeDepth[b]) {
+			return nodeDepth[a] > nodeDepth[b];
+		}
+		return nodeH[a] < nodeH[b] || (nodeH[a] == nodeH[b] && nodeDepth[a] > nodeDepth[b]);
+	}
+
+	private boolean reachesHole(float x, int row) {
+		if (row != holeRow) {
+			return false;
+		}
+		float y = row * World.TILE_SIZE;
+		x = (int) x;
+		for (int i = 0; i < world.getHoleCount(); i++) {
+			BoundingBox hole = world.getHole(i);
+			if (!world.isHoleFilled(i) && x - frogHalfWidth <= hole.getRight() && x + frogHalfWidth >= hole.getLeft()
+					&& y - frogHalfHeight <= hole.getBottom() && y + frogHalfHeight >= hole.getTop()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Estimates the decisions needed to reach a hole from a position, from the
+	 * distance field where it covers the row, or by counting rows elsewhere.
+	 */
+	private int distance(float x, int row) {
+		// a field of an old layout may route through where trees now stand
+		if (fieldVersion != layoutVersion || row < fieldTop || row >= fieldTop + FIELD_ROWS) {
+			return Math.abs(row - holeRow);
+		}
+		int column = Math.max(0, Math.min(FIELD_COLUMNS - 1, (int) (x / X_QUANTUM)));
+		return field[(row - fieldTop) * FIELD_COLUMNS + column];
+	}
+
+	/*
+	 * Finds the decisions needed to reach a hole from each position of the
+	 * rows from the given one down, by a breadth-first search back from the
+	 * holes. Only trees and other sprites which never move are in the way, and
+	 * a hop may land anywhere up to a tile away, since the player also drifts
+	 * with what it rides. If the holes are above the field, its top row is
+	 * taken to be as far from them as it has rows to go.
+	 *
+	 * The search stops at the deadline and carries on from there the next
+	 * time, so the field in use is only replaced once the new one is done.
+	 */
+	private void buildField(int top, long deadline) {
+		// a rebuild under way is finished where it started, even if the player has moved on since
+		if (!fieldBuilding || nextVersion != layoutVersion) {
+			fieldBuilding = true;
+			nextTop = top;
+			nextVersion = layoutVersion;
+			openRows = 0;
+			queueHead = 0;
+			queueTail = 0;
+			Arrays.fill(nextField, UNREACHED);
+		}
+		for (; openRows < FIELD_ROWS; openRows++) {
+			if (System.nanoTime() > deadline) {
+				return;
+			}
+			int row = openRows;
+			for (int column = 0; column < FIELD_COLUMNS; column++) {
+				fieldOpen[row * FIELD_COLUMNS + column] = nextTop + row <= lastRow
+						&& isOpen(column * X_QUANTUM, nextTop + row);
+			}
+			if (row == 0) {
+				int start = nextTop == holeRow ? 0 : nextTop - holeRow;
+				for (int column = 0; column < FIELD_COLUMNS; column++) {
+					if (fieldOpen[column] && (nextTop != holeRow || reachesHole(column * X_QUANTUM, nextTop))) {
+						nextField[column] = start;
+						fieldQueue[queueTail++] = column;
+					}
+				}
+			}
+		}
+		while (queueHead < queueTail) {
+			if (queueHead % FIELD_CLOCK_CELLS == 0 && System.nanoTime() > deadline) {
+				return;
+			}
+			int cell = fieldQueue[queueHead++];
+			int row = cell / FIELD_COLUMNS;
+			int column = cell % FIELD_COLUMNS;
+			int next = nextField[cell] + 1;
+			for (int dy = -1; dy <= 1; dy++) {
+				int fromRow = row + dy;
+				if (fromRow < 0 || fromRow >= FIELD_ROWS) {
+					continue;
+				}
+				int from = dy == 0 ? Math.max(0, column - HOP_COLUMNS) : column;
+				int to = dy == 0 ? Math.min(FIELD_COLUMNS - 1, column + HOP_COLUMNS) : column;
+				for (int c = from; c <= to; c++) {
+					int neighbour = fromRow * FIELD_COLUMNS + c;
+					if (nextField[neighbour] == UNREACHED && fieldOpen[neighbour]) {
+						nextField[neighbour] = next;
+						fieldQueue[queueTail++] = neighbour;
+					}
+				}
+			}
+		}
+		// done, so swap it in
+		int[] done = nextField;
+		nextField = field;
+		field = done;
+		fieldTop = nextTop;
+		fieldVersion = nextVersion;
+		fieldBuilding = false;
+	}
+
+	// whether the player could stand at a position, were nothing but the stationary sprites there
+	private boolean isOpen(float x, int row) {
+		return x - HALF_TILE >= EDGE_FUZZ && x + HALF_TILE <= App.SCREEN_WIDTH + EDGE_FUZZ
+				&& !timeline(row).isBlocked(x);
+	}
+
+	private LaneTimeline timeline(int row) {
+		LaneTimeline timeline = timelines[row & (ROWS_PER_TIMELINE_RING - 1)];
+		if (timeline.row != row) {
+			timeline.build(row);
+		}
+		return timeline;
+	}
+
+	private int addNode(float x, int row, int depth, int parent, int action) {
+		int node = nodeCount++;
+		nodeX[node] = x;
+		nodeRow[node] = row;
+		nodeDepth[node] = depth;
+		nodeH[node] = distance(x, row);
+		nodeParent[node] = parent;
+		nodeAction[node] = action;
+		return node;
+	}
+
+	// marks a node's state as reached, returning true if it already was
+	private boolean seen(int node) {
+		long key = ((long) nodeDepth[node] << 40) | ((long) nodeRow[node] << 20)
+				| (Math.round(nodeX[node] / X_QUANTUM) & 0xFFFFF);
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - SEEN_BITS));
+		while (seenStamps[slot] == stamp) {
+			if (seenKeys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & (SEEN_SIZE - 1);
+		}
+		seenStamps[slot] = stamp;
+		seenKeys[slot] = key;
+		return false;
+	}
+
+	// nodes are ordered by estimated total cost, then by nearness to a hole
+	private boolean before(int a, int b) {
+		int fa = nodeDepth[a] + nodeH[a];
+		int fb = nodeDepth[b] + nodeH[b];
+		return fa < fb || (fa == fb && nodeH[a] < nodeH[b]);
+	}
+
+	private void push(int node) {
+		int i = heapSize++;
+		while (i > 0 && before(node, heap[(i - 1) / 2])) {
+			heap[i] = heap[(i - 1) / 2];
+			i = (i - 1) / 2;
+		}
+		heap[i] = node;
+	}
+
+	private int pop() {
+		int top = heap[0];
+		int last = heap[--heapSize];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], last)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = last;
+		return top;
+	}
+
+	/**
+	 * Accesses the actions of the latest plan.
+	 *
+	 * @return the number of decisions in the latest plan
+	 */
+	public int getPlanLength() {
+		return planLength;
+	}
+
+	/**
+	 * Accesses the number of plans made.
+	 *
+	 * @return the number of plans
+	 */
+	public long getPlans() {
+		return plans;
+	}
+
+	/**
+	 * Accesses the number of plans which found a path all the way to a hole.
+	 *
+	 * @return the number of complete plans
+	 */
+	public long getPlansToGoal() {
+		return plansToGoal;
+	}
+
+	/**
+	 * Accesses the number of plans cut short by the time budget.
+	 *
+	 * @return the number of plans over budget
+	 */
+	public long getOverBudget() {
+		return overBudget;
+	}
+
+	/**
+	 * Accesses the number of plans which took longer than the time budget,
+	 * as the expansion running at the deadline overran it, or the thread was
+	 * held up.
+	 *
+	 * @return the number of late plans
+	 */
+	public long getLate() {
+		return late;
+	}
+
+	/**
+	 * Accesses the times plans took.
+	 *
+	 * @return the histogram of plan times, in nanoseconds
+	 */
+	public LatencyHistogram getPlanTimes() {
+		return planTimes;
+	}
+
+	/**
+	 * Accesses the number of states expanded over all plans.
+	 *
+	 * @return the number of expansions
+	 */
+	public long getExpansions() {
+		return expansions;
+	}
+
+	/**
+	 * Accesses the number of row occupancy lookups served from the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Accesses the number of row occupancy lookups which had to be worked out.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	/*
+	 * The sprites of a row, and where its lane sprites are at each tick they
+	 * have been asked about, in a ring of slots keyed by the lanes' clock.
+	 */
+	private final class LaneTimeline {
+		private int row = -1;
+
+		// stationary sprites, as their left and right edges and kinds of contact
+		private int nStatic = 0;
+		private float[] staticLeft = new float[0];
+		private float[] staticRight = new float[0];
+		private int[] staticKinds = new int[0];
+
+		// lane sprites, and their positions, velocities and kinds at each cached tick
+		private int nMovers = 0;
+		private MovingSprite[] movers = new MovingSprite[0];
+		private float[] moverHalfWidths = new float[0];
+		private float[] speeds = new float[0];
+		private final long[] slotTimes = new long[HORIZON_TICKS];
+		private float[] xs = new float[0];
+		private float[] velocities = new float[0];
+		private int[] kinds = new int[0];
+
+		private void build(int row) {
+			this.row = row;
+			nStatic = 0;
+			nMovers = 0;
+			ArrayList<Sprite> sprites = world.getSpritesInRow(row);
+			for (int i = 0; i < sprites.size(); i++) {
+				addSprite(sprites.get(i));
+			}
+			ArrayList<LogType> logs = world.getLogsInRow(row);
+			for (int i = 0; i < logs.size(); i++) {
+				addSprite(logs.get(i));
+			}
+			if (xs.length < nMovers * HORIZON_TICKS) {
+				xs = new float[nMovers * HORIZON_TICKS];
+				velocities = new float[nMovers * HORIZON_TICKS];
+				kinds = new int[nMovers * HORIZON_TICKS];
+			}
+			for (int i = 0; i < HORIZON_TICKS; i++) {
+				slotTimes[i] = Long.MIN_VALUE;
+			}
+		}
+
+		private void addSprite(Sprite sprite) {
+			// rows sharing a bucket are told apart by position
+			if (LaneIndex.rowOf(sprite.getY()) != row) {
+				return;
+			}
+			float halfWidth = new BoundingBox(0, 0, sprite.getWidth(), sprite.getHeight()).getWidth() / 2;
+			if (sprite instanceof MovingSprite) {
+				if (nMovers == movers.length) {
+					int capacity = Math.max(4, 2 * nMovers);
+					movers = Arrays.copyOf(movers, capacity);
+					moverHalfWidths = Arrays.copyOf(moverHalfWidths, capacity);
+					speeds = Arrays.copyOf(speeds, capacity);
+				}
+				MovingSprite mover = (MovingSprite) sprite;
+				movers[nMovers] = mover;
+				moverHalfWidths[nMovers] = halfWidth;
+				speeds[nMovers] = mover.getSpeed();
+				nMovers++;
+				return;
+			}
+			int kind = kindOf(sprite.getTags());
+			if (kind == 0) {
+				return;
+			}
+			if (nStatic == staticKinds.length) {
+				int capacity = Math.max(8, 2 * nStatic);
+				staticLeft = Arrays.copyOf(staticLeft, capacity);
+				staticRight = Arrays.copyOf(staticRight, capacity);
+				staticKinds = Arrays.copyOf(staticKinds, capacity);
+			}
+			staticLeft[nStatic] = sprite.getX() - halfWidth;
+			staticRight[nStatic] = sprite.getX() + halfWidth;
+			staticKinds[nStatic] = kind;
+			nStatic++;
+		}
+
+		// finds the slot holding the lane sprites at a time, working it out if need be
+		private int slot(long time) {
+			int slot = (int) (Math.floorDiv(time, delta) & (HORIZON_TICKS - 1));
+			if (slotTimes[slot] == time) {
+				cacheHits++;
+				return slot;
+			}
+			cacheMisses++;
+			slotTimes[slot] = time;
+			int base = slot * nMovers;
+			for (int i = 0; i < nMovers; i++) {
+				MovingSprite mover = movers[i];
+				xs[base + i] = mover.getXAt(time);
+				velocities[base + i] = mover.getVelocityXAt(time);
+				int tags = mover.getTags();
+				if (mover instanceof RideableSprite) {
+					// a diving turtle is no more than water
+					tags = ((RideableSprite) mover).isFloatingAt(time) ? CollisionLayer.RIDEABLE : 0;
+				}
+				kinds[base + i] = kindOf(tags);
+			}
+			return slot;
+		}
+
+		/*
+		 * Finds the velocity of a sprite of a kind touching the player at a
+		 * time, or NaN if none is. Carrying needs a clear overlap, and hazards
+		 * are kept a margin away.
+		 */
+		private float velocityOf(int kind, long time, float x) {
+			float reach = frogHalfWidth + (kind == CARRIES ? -MARGIN : kind == KILLS ? MARGIN : 0);
+			// the player's bounds sit at whole pixels too
+			x = (int) x;
+			for (int i = 0; i < nStatic; i++) {
+				if ((staticKinds[i] & kind) != 0 && x + reach >= staticLeft[i] && x - reach <= staticRight[i]) {
+					return 0;
+				}
+			}
+			if (nMovers == 0) {
+				return Float.NaN;
+			}
+			int base = slot(time) * nMovers;
+			for (int i = 0; i < nMovers; i++) {
+				if ((kinds[base + i] & kind) == 0) {
+					continue;
+				}
+				// lane sprites' bounds sit at whole pixels, as Sprite places them
+				float left = (int) xs[base + i] - moverHalfWidths[i];
+				float right = left + 2 * moverHalfWidths[i];
+				if (left <= x + reach && right >= x - reach) {
+					return velocities[base + i];
+				}
+			}
+			return Float.NaN;
+		}
+
+		// whether a sprite which never moves is in the way of the player
+		private boolean isBlocked(float x) {
+			x = (int) x;
+			for (int i = 0; i < nStatic; i++) {
+				if ((staticKinds[i] & BLOCKS) != 0 && x + frogHalfWidth >= staticLeft[i]
+						&& x - frogHalfWidth <= staticRight[i]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * Check if a hazard touches the player at a time, sweeping lane sprites
+		 * over the tick before, as World does.
+		 */
+		private boolean kills(long time, float x) {
+			if (!Float.isNaN(velocityOf(KILLS, time, x))) {
+				return true;
+			}
+			if (nMovers == 0) {
+				return false;
+			}
+			int before = slot(time - delta) * nMovers;
+			int after = slot(time) * nMovers;
+			float reach = frogHalfWidth + MARGIN;
+			for (int i = 0; i < nMovers; i++) {
+				if ((kinds[after + i] & KILLS) == 0) {
+					continue;
+				}
+				float from = xs[before + i];
+				float to = xs[after + i];
+				// a sprite which wrapped around jumped, rather than passing everything between
+				if (Math.abs(to - from) > speeds[i] * delta + 1) {
+					from = to;
+				}
+				float halfWidth = reach + moverHalfWidths[i];
+				if (x + halfWidth >= Math.min(from, to) && x - halfWidth <= Math.max(from, to)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static int kindOf(int tags) {
+		int response = CollisionLayer.responseTo(tags);
+		int kind = 0;
+		if ((response & CollisionLayer.KILL) != 0) {
+			kind |= KILLS;
+		}
+		if ((response & CollisionLayer.RIDE) != 0) {
+			kind |= CARRIES;
+		}
+		if ((response & CollisionLayer.BLOCK) != 0) {
+			kind |= BLOCKS;
+		}
+		if ((response & CollisionLayer.PUSH) != 0) {
+			kind |= PUSHES;
+		}
+		return kind;
+	}
+}
@@ -0,0 +1,125 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import org.newdawn.slick.Input;
+
+/**
+ * Plays many headless episodes with a bot at the controls, spread over all
+ * cores. Each worker owns one World and resets it between episodes, so worlds
+ * share nothing but the image registry. Reports episodes per second and the
+ * outcome of the episodes.
+ *
+ * Usage: BatchRunner [episodes] [levelPath] [maxTicks] [threads]
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class BatchRunner {
+	private static final int DEFAULT_EPISODES = 1000;
+	private static final String DEFAULT_LEVEL = "assets/levels/0.lvl";
+	// an episode is cut short after this many ticks, about 5 simulated minutes
+	private static final int DEFAULT_MAX_TICKS = 20000;
+	private static final int DELTA = HeadlessRunner.DEFAULT_DELTA;
+	private static final long SEED = 831747;
+	private static final double NANO_TO_SEC = 1e-9;
+
+	// the bot hops on 1 in HOP_CHANCE ticks, and prefers hopping towards the holes
+	private static final int HOP_CHANCE = 8;
+	private static final int[] HOP_KEYS = new int[] { Input.KEY_UP, Input.KEY_UP, Input.KEY_UP, Input.KEY_UP,
+			Input.KEY_UP, Input.KEY_LEFT, Input.KEY_LEFT, Input.KEY_RIGHT, Input.KEY_RIGHT, Input.KEY_DOWN };
+
+	/**
+	 * The outcome of the episodes played by one worker.
+	 */
+	private static class Outcome {
+		private int episodes = 0;
+		private int wins = 0;
+		private long holesFilled = 0;
+		private long livesLost = 0;
+		private long ticks = 0;
+
+		private void add(Outcome other) {
+			episodes += other.episodes;
+			wins += other.wins;
+			holesFilled += other.holesFilled;
+			livesLost += other.livesLost;
+			ticks += other.ticks;
+		}
+	}
+
+	/**
+	 * Runs the episodes and prints their outcome.
+	 *
+	 * @param args Optionally, the number of episodes, the level file, the tick
+	 *             limit per episode and the number of worker threads.
+	 */
+	public static void main(String[] args) {
+		final int episodes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_EPISODES;
+		final String level = args.length > 1 ? args[1] : DEFAULT_LEVEL;
+		final int maxTicks = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_TICKS;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		AssetRegistry.setHeadless(true);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		// workers claim episodes one at a time, so a slow episode does not hold up the others
+		final AtomicInteger next = new AtomicInteger();
+
+		long start = System.nanoTime();
+		ArrayList<ForkJoinTask<Outcome>> workers = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			workers.add(pool.submit(() -> play(level, next, episodes, maxTicks)));
+		}
+		Outcome total = new Outcome();
+		for (ForkJoinTask<Outcome> worker : workers) {
+			total.add(worker.join());
+		}
+		double seconds = (System.nanoTime() - start) * NANO_TO_SEC;
+		pool.shutdown();
+
+		System.out.printf("%d episodes on %d threads in %.3f s: %.1f episodes/s, %.0f ticks/s%n", total.episodes,
+				threads, seconds, total.episodes / seconds, total.ticks / seconds);
+		System.out.printf("wins %d, holes filled %.2f, lives lost %.2f, ticks survived %.0f (per episode)%n",
+				total.wins, (double) total.holesFilled / total.episodes, (double) total.livesLost / total.episodes,
+				(double) total.ticks / total.episodes);
+	}
+
+	/*
+	 * Plays episodes on one world until none are left to claim. Each episode is
+	 * seeded by its number, so results do not depend on which worker played it.
+	 */
+	private static Outcome play(String level, AtomicInteger next, int episodes, int maxTicks) {
+		Outcome outcome = new Outcome();
+		KeyState keys = new KeyState();
+		Random bot = new Random();
+		World world = null;
+
+		int episode;
+		while ((episode = next.getAndIncrement()) < episodes) {
+			long seed = SEED + episode;
+			if (world == null) {
+				world = new World(new String[] { level }, seed);
+			} else {
+				world.reset(seed);
+			}
+			bot.setSeed(~seed);
+
+			for (int tick = 0; tick < maxTicks && !world.isGameOver(); tick++) {
+				keys.clear();
+				if (bot.nextInt(HOP_CHANCE) == 0) {
+					keys.setPressed(HOP_KEYS[bot.nextInt(HOP_KEYS.length)], true);
+				}
+				world.update(keys, DELTA);
+			}
+
+			outcome.episodes++;
+			if (world.isWon()) {
+				outcome.wins++;
+			}
+			outcome.holesFilled += world.getHolesFilled();
+			outcome.livesLost += world.getPlayer().getLivesLost();
+			outcome.ticks += world.getTicks();
+		}
+		return outcome;
+	}
+}
@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A level compiled by LevelCompiler, read straight from a memory-mapped file,
+ * or from memory for generated levels. Records are decoded on access, so
+ * loading a level allocates nothing per sprite.
+ *
+ * The file holds, in big-endian order: a header (int MAGIC, short VERSION,
+ * short number of types, int number of records), a dictionary of type names
+ * (short length then UTF-8 bytes each), then one packed record per sprite
+ * (byte type index, byte flags, int x, int y). Records are sorted by their
+ * y-coordinate, keeping file order within a row, so the sprites of any band
+ * of rows can be found by binary search. A file whose counts or type
+ * indices do not fit it is rejected when opened, with an IOException.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class BinaryLevel {
+	/** marks the start of a compiled level file */
+	public static final int MAGIC = 0x464C564C;
+	/** version of the format written by LevelCompiler */
+	public static final short VERSION = 2;
+	/** file extension of compiled levels */
+	public static final String EXTENSION = ".blvl";
+	/** size of one packed record, in bytes */
+	public static final int RECORD_BYTES = 10;
+	/** record flag set when the sprite moves right */
+	public static final int FLAG_DIR_RIGHT = 1;
+
+	// magic, version, number of types and number of records
+	private static final int HEADER_BYTES = 12;
+	// offsets of the fields within a record
+	private static final int TYPE_OFFSET = 0;
+	private static final int FLAGS_OFFSET = 1;
+	private static final int X_OFFSET = 2;
+	private static final int Y_OFFSET = 6;
+
+	private final ByteBuffer buffer;
+	private final String[] types;
+	private final int size;
+	private final int recordsStart;
+
+	// every count and index is checked against the buffer, so a damaged file is an IOException
+	private BinaryLevel(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+			throw new IOException("Not a compiled level of version " + VERSION);
+		}
+		int typeCount = buffer.getShort();
+		size = buffer.getInt();
+		if (typeCount < 0 || size < 0) {
+			throw new IOException("Compiled level has " + typeCount + " types and " + size + " records");
+		}
+		types = new String[typeCount];
+		for (int i = 0; i < types.length; i++) {
+			if (buffer.remaining() < Short.BYTES) {
+				throw new IOException("Compiled level is truncated in its type names");
+			}
+			int length = buffer.getShort() & 0xFFFF;
+			if (buffer.remaining() < length) {
+				throw new IOException("Compiled level is truncated in its type names");
+			}
+			byte[] name = new byte[length];
+			buffer.get(name);
+			types[i] = new String(name, StandardCharsets.UTF_8);
+		}
+		recordsStart = buffer.position();
+		if (buffer.limit() - recordsStart < (long) size * RECORD_BYTES) {
+			throw new IOException("Compiled level is truncated");
+		}
+		for (int i = 0; i < size; i++) {
+			int type = buffer.get(offset(i) + TYPE_OFFSET) & 0xFF;
+			if (type >= types.length) {
+				throw new IOException("Record " + i + " of a compiled level has type " + type + " of " + types.length);
+			}
+		}
+	}
+
+	/**
+	 * Maps a compiled level file into memory.
+	 *
+	 * @param path The location of the compiled level.
+	 * @return The mapped level.
+	 * @throws IOException If the file cannot be read or is not a compiled level.
+	 */
+	public static BinaryLevel open(String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new BinaryLevel(buffer);
+		}
+	}
+
+	/**
+	 * Reads a compiled level already in memory, such as one made by
+	 * LevelGenerator, without going through a file.
+	 *
+	 * @param buffer The compiled level, from its start to its end.
+	 * @return The level, reading from the buffer.
+	 * @throws IOException If the buffer does not hold a compiled level.
+	 */
+	public static BinaryLevel wrap(ByteBuffer buffer) throws IOException {
+		return new BinaryLevel(buffer.duplicate());
+	}
+
+	/**
+	 * Finds where the compiled form of a level file is kept.
+	 *
+	 * @param sourcePath The location of the CSV level file.
+	 * @return The location of its compiled form.
+	 */
+	public static String compiledPath(String sourcePath) {
+		int dot = sourcePath.lastIndexOf('.');
+		return (dot < 0 ? sourcePath : sourcePath.substring(0, dot)) + EXTENSION;
+	}
+
+	/**
+	 * Accesses the number of sprites in the level.
+	 *
+	 * @return the number of records
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Accesses the type of a record, one of the tile tags of a level file.
+	 *
+	 * @param i The index of the record.
+	 * @return the type name, shared by all records of that type
+	 */
+	public String getType(int i) {
+		return types[buffer.get(offset(i) + TYPE_OFFSET) & 0xFF];
+	}
+
+	/**
+	 * Accesses the x-coordinate of a record.
+	 *
+	 * @param i The index of the record.
+	 * @return the x-coordinate, in pixels
+	 */
+	public int getX(int i) {
+		return buffer.getInt(offset(i) + X_OFFSET);
+	}
+
+	/**
+	 * Accesses the y-coordinate of a record.
+	 *
+	 * @param i The index of the record.
+	 * @return the y-coordinate, in pixels
+	 */
+	public int getY(int i) {
+		return buffer.getInt(offset(i) + Y_OFFSET);
+	}
+
+	/**
+	 * Accesses the direction of a record.
+	 *
+	 * @param i The index of the record.
+	 * @return True if the sprite moves right
+	 */
+	public boolean getDirRight(int i) {
+		return (buffer.get(offset(i) + FLAGS_OFFSET) & FLAG_DIR_RIGHT) != 0;
+	}
+
+	/**
+	 * Finds the first record at or below a y-coordinate.
+	 *
+	 * @param y The y-coordinate, in pixels.
+	 * @return the index of the first record whose y-coordinate is at least y,
+	 *         or size() if there is none
+	 */
+	public int firstAtOrBelow(int y) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getY(mid) < y) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int offset(int i) {
+		return recordsStart + i * RECORD_BYTES;
+	}
+}
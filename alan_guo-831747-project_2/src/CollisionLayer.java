@@ -0,0 +1,78 @@
+/**
+ * The collision layers a sprite can belong to, stored as bits of an int mask,
+ * and the player's response to contact with each layer. To add a category,
+ * add its layer bit and its entry in LAYER_RESPONSES here.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public final class CollisionLayer {
+	/** layer for hazard objects, which cause death upon contact */
+	public static final int HAZARD = 1 << 0;
+	/** layer for rideable objects, which Player objects can ride on */
+	public static final int RIDEABLE = 1 << 1;
+	/** layer for pushing objects, which push Player objects */
+	public static final int PUSHING = 1 << 2;
+	/** layer for solid objects, which Player objects cannot move into */
+	public static final int SOLID = 1 << 3;
+	/** layer for goal objects, which the player aims to reach */
+	public static final int GOAL = 1 << 4;
+	private static final int N_LAYERS = 5;
+
+	/** response: the player loses a life, unless riding */
+	public static final int KILL = 1 << 0;
+	/** response: the player is carried along and kept safe */
+	public static final int RIDE = 1 << 1;
+	/** response: the player is pushed along */
+	public static final int PUSH = 1 << 2;
+	/** response: the player cannot move into the object */
+	public static final int BLOCK = 1 << 3;
+	/** response: the player has reached a goal */
+	public static final int SCORE = 1 << 4;
+
+	// the name of each layer in data files, indexed by the layer's bit position
+	private static final String[] LAYER_NAMES = new String[] { "hazard", "rideable", "pushing", "solid", "goal" };
+
+	// the response to each layer, indexed by the layer's bit position
+	private static final int[] LAYER_RESPONSES = new int[] { KILL, RIDE, PUSH, BLOCK, SCORE };
+
+	// the combined response to every possible mask, so a contact costs one lookup
+	private static final int[] RESPONSES = new int[1 << N_LAYERS];
+
+	static {
+		for (int mask = 0; mask < RESPONSES.length; mask++) {
+			for (int layer = 0; layer < N_LAYERS; layer++) {
+				if ((mask & (1 << layer)) != 0) {
+					RESPONSES[mask] |= LAYER_RESPONSES[layer];
+				}
+			}
+		}
+	}
+
+	private CollisionLayer() {
+	}
+
+	/**
+	 * Looks up the player's response to contact with a sprite.
+	 *
+	 * @param layers The layer mask of the sprite.
+	 * @return The response mask, made of KILL, RIDE, PUSH, BLOCK and SCORE bits.
+	 */
+	public static int responseTo(int layers) {
+		return RESPONSES[layers & (RESPONSES.length - 1)];
+	}
+
+	/**
+	 * Looks up a layer by its name in data files, such as "hazard".
+	 *
+	 * @param name The name of the layer.
+	 * @return The layer bit, or 0 if no layer has the name.
+	 */
+	public static int fromName(String name) {
+		for (int layer = 0; layer < N_LAYERS; layer++) {
+			if (LAYER_NAMES[layer].equals(name)) {
+				return 1 << layer;
+			}
+		}
+		return 0;
+	}
+}
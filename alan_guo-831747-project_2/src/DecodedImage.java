@@ -0,0 +1,68 @@
+import java.nio.IntBuffer;
+
+/**
+ * The pixels of an image file, decoded and ready to be copied into a
+ * texture. The pixels may be held on the heap, or mapped from the
+ * PixelCache, in which case reading them costs no decoding at all.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public final class DecodedImage {
+	private final String name;
+	private final int width;
+	private final int height;
+	private final IntBuffer pixels;
+
+	/**
+	 * Create an image from its pixels.
+	 *
+	 * @param name   The name of the image file.
+	 * @param width  The width of the image, in pixels.
+	 * @param height The height of the image, in pixels.
+	 * @param pixels The pixels, row by row from the top left, each packed as ARGB.
+	 */
+	public DecodedImage(String name, int width, int height, IntBuffer pixels) {
+		this.name = name;
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+
+	/**
+	 * Accesses the name of the image file.
+	 *
+	 * @return the file name, without its folder
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Accesses the width of the image.
+	 *
+	 * @return the width, in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Accesses the height of the image.
+	 *
+	 * @return the height, in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Reads one pixel of the image.
+	 *
+	 * @param x The column of the pixel.
+	 * @param y The row of the pixel.
+	 * @return the pixel, packed as ARGB
+	 */
+	public int getARGB(int x, int y) {
+		return pixels.get(y * width + x);
+	}
+}
@@ -0,0 +1,441 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Structure-of-arrays storage for moving sprites. The state of every sprite
+ * is kept in primitive arrays grouped by Archetype. MovingSprite objects are
+ * thin views onto a slot of a group.
+ *
+ * Every archetype's motion is a closed-form function of time: sprites wrap
+ * around the screen, bounce between boundaries or dive on a loop at constant
+ * speed. So a slot only stores where and when it started, and the store
+ * advances a clock instead of moving each sprite. A sprite's position is
+ * worked out when it is asked for, once per tick at most, so an update costs
+ * the same however many sprites there are, and seeking to any time is as
+ * cheap as the next tick.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class EntityStore {
+	/** size of the state written by writeState(), in bytes */
+	public static final int STATE_BYTES = 8;
+
+	private final HashMap<Archetype, Group> groups = new HashMap<>();
+	// groups in the order their archetypes were first attached
+	private final ArrayList<Group> order = new ArrayList<>();
+	// time since the level was loaded, in milliseconds
+	private long time = 0;
+
+	/**
+	 * Moves the state of a sprite into the store. From then on it is moved by
+	 * the store's clock rather than by its own update method. The sprite is
+	 * placed where it would be had it been moving since the clock was 0, so a
+	 * sprite streamed in late is where it would be had it loaded with the level.
+	 *
+	 * @param sprite The sprite to attach.
+	 */
+	public void attach(MovingSprite sprite) {
+		Group group = groups.get(sprite.getArchetype());
+		if (group == null) {
+			group = new Group(sprite.getArchetype(), 16);
+			group.seek(time);
+			groups.put(sprite.getArchetype(), group);
+			order.add(group);
+		}
+		sprite.moveTo(group, true);
+		sprite.startAt(0);
+	}
+
+	/**
+	 * Moves the state of a sprite out of the store, back into its own group.
+	 *
+	 * @param sprite The sprite to detach.
+	 */
+	public void detach(MovingSprite sprite) {
+		Group own = new Group(sprite.getArchetype(), 1);
+		own.seek(time);
+		sprite.moveTo(own, false);
+	}
+
+	/**
+	 * Takes the state of a sprite out of the store for good, without moving it
+	 * to a group of its own as detach() does. For sprites leaving the game,
+	 * which must not be used again.
+	 *
+	 * @param sprite The sprite to remove.
+	 */
+	public void remove(MovingSprite sprite) {
+		sprite.leave();
+	}
+
+	/**
+	 * Sets how far rendering is between the last two updates, so moving sprites
+	 * are drawn between their previous and current positions.
+	 *
+	 * @param alpha The fraction of a tick since the last update, from 0 to 1.
+	 */
+	public void setAlpha(float alpha) {
+		for (int i = 0; i < order.size(); i++) {
+			order.get(i).alpha = alpha;
+		}
+	}
+
+	/**
+	 * Advances the clock of every sprite in the store since the last frame.
+	 *
+	 * @param delta Time passed since last frame (milliseconds).
+	 */
+	public void update(int delta) {
+		time += delta;
+		for (int i = 0; i < order.size(); i++) {
+			order.get(i).advance(delta);
+		}
+	}
+
+	/**
+	 * Moves every sprite in the store to where it is at a given time, with no
+	 * movement in between to draw.
+	 *
+	 * @param time The time since the level was loaded (milliseconds).
+	 */
+	public void seek(long time) {
+		this.time = time;
+		for (int i = 0; i < order.size(); i++) {
+			order.get(i).seek(time);
+		}
+	}
+
+	/**
+	 * Accesses the clock of the store.
+	 *
+	 * @return the time since the level was loaded, in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns every sprite in the store to the position, direction and timer
+	 * it had when first created, and the clock to 0.
+	 */
+	public void reset() {
+		for (int i = 0; i < order.size(); i++) {
+			order.get(i).reset();
+		}
+		seek(0);
+	}
+
+	/**
+	 * Writes the state of every sprite in the store. Positions follow from the
+	 * clock, so only the clock is written.
+	 *
+	 * @param out The buffer to write STATE_BYTES bytes to.
+	 */
+	public void writeState(ByteBuffer out) {
+		out.putLong(time);
+	}
+
+	/**
+	 * Restores the state written by writeState(), which must have been written
+	 * with the same sprites in the store. Sprites are drawn where they are
+	 * restored to, rather than moving there from where they were.
+	 *
+	 * @param in The buffer to read STATE_BYTES bytes from.
+	 */
+	public void readState(ByteBuffer in) {
+		seek(in.getLong());
+	}
+
+	/** Detaches every sprite in the store, and sets the clock back to 0. */
+	public void clear() {
+		for (Group group : order) {
+			while (group.count > 0) {
+				detach(group.views[group.count - 1]);
+			}
+		}
+		seek(0);
+	}
+
+	/**
+	 * Accesses the number of sprites in the store.
+	 *
+	 * @return the number of sprites
+	 */
+	public int size() {
+		int size = 0;
+		for (Group group : order) {
+			size += group.count;
+		}
+		return size;
+	}
+
+	/**
+	 * The state of all sprites of one archetype, one slot per sprite. A slot
+	 * holds the sprite's position, direction and timer at an origin time, and
+	 * caches them at the group's current time.
+	 */
+	static class Group {
+		// a sweep gives up after this many wraps and turns in one update
+		private static final int MAX_SWEEP_PIECES = 16;
+		// time stepped past a wrap or turn, so the next stretch starts after it
+		private static final double SWEEP_STEP = 1e-3;
+
+		final Archetype archetype;
+		float[] originX;
+		boolean[] originDirRight;
+		float[] originTimer;
+		long[] originTime;
+		// shared by every sprite of the archetype, so held once rather than per slot
+		final float speed;
+		final float width;
+		// position and direction the sprite was created with, restored by reset()
+		float[] spawnX;
+		boolean[] spawnDirRight;
+		MovingSprite[] views;
+		int count = 0;
+
+		// the state of each slot at the time it was last synced
+		float[] x;
+		boolean[] dirRight;
+		float[] timer;
+		long[] syncedAt;
+
+		long time = 0;
+		// time before the latest update, for render interpolation
+		long prevTime = 0;
+		float alpha = 1;
+
+		Group(Archetype archetype, int capacity) {
+			this.archetype = archetype;
+			originX = new float[capacity];
+			originDirRight = new boolean[capacity];
+			originTimer = new float[capacity];
+			originTime = new long[capacity];
+			speed = archetype.getSpeed();
+			width = archetype.getWidth();
+			spawnX = new float[capacity];
+			spawnDirRight = new boolean[capacity];
+			views = new MovingSprite[capacity];
+			x = new float[capacity];
+			dirRight = new boolean[capacity];
+			timer = new float[capacity];
+			syncedAt = new long[capacity];
+		}
+
+		/*
+		 * Adds a sprite's state at the group's current time, returning its slot.
+		 */
+		int add(MovingSprite view, float x, boolean dirRight, float timer) {
+			if (count == views.length) {
+				int capacity = count * 2;
+				originX = Arrays.copyOf(originX, capacity);
+				originDirRight = Arrays.copyOf(originDirRight, capacity);
+				originTimer = Arrays.copyOf(originTimer, capacity);
+				originTime = Arrays.copyOf(originTime, capacity);
+				spawnX = Arrays.copyOf(spawnX, capacity);
+				spawnDirRight = Arrays.copyOf(spawnDirRight, capacity);
+				views = Arrays.copyOf(views, capacity);
+				this.x = Arrays.copyOf(this.x, capacity);
+				this.dirRight = Arrays.copyOf(this.dirRight, capacity);
+				this.timer = Arrays.copyOf(this.timer, capacity);
+				syncedAt = Arrays.copyOf(syncedAt, capacity);
+			}
+			spawnX[count] = x;
+			spawnDirRight[count] = dirRight;
+			views[count] = view;
+			rebase(count, x, dirRight, timer);
+			return count++;
+		}
+
+		/*
+		 * Removes a slot by moving the last slot into it.
+		 */
+		void remove(int slot) {
+			int last = --count;
+			if (slot != last) {
+				originX[slot] = originX[last];
+				originDirRight[slot] = originDirRight[last];
+				originTimer[slot] = originTimer[last];
+				originTime[slot] = originTime[last];
+				spawnX[slot] = spawnX[last];
+				spawnDirRight[slot] = spawnDirRight[last];
+				views[slot] = views[last];
+				x[slot] = x[last];
+				dirRight[slot] = dirRight[last];
+				timer[slot] = timer[last];
+				syncedAt[slot] = syncedAt[last];
+				views[slot].setSlot(slot);
+			}
+			views[last] = null;
+		}
+
+		/*
+		 * Makes a slot start again from a position, direction and timer at the
+		 * group's current time.
+		 */
+		void rebase(int i, float x, boolean dirRight, float timer) {
+			originX[i] = x;
+			originDirRight[i] = dirRight;
+			originTimer[i] = timer;
+			originTime[i] = time;
+			this.x[i] = x;
+			this.dirRight[i] = dirRight;
+			this.timer[i] = timer;
+			syncedAt[i] = time;
+		}
+
+		/*
+		 * Makes a slot's stored state the state it had at another time.
+		 */
+		void restart(int i, long originTime) {
+			this.originTime[i] = originTime;
+			syncedAt[i] = Long.MIN_VALUE;
+		}
+
+		void reset() {
+			for (int i = 0; i < count; i++) {
+				originX[i] = spawnX[i];
+				originDirRight[i] = spawnDirRight[i];
+				originTimer[i] = 0;
+				originTime[i] = 0;
+				syncedAt[i] = Long.MIN_VALUE;
+			}
+		}
+
+		void advance(int delta) {
+			prevTime = time;
+			time += delta;
+		}
+
+		void seek(long time) {
+			this.time = time;
+			prevTime = time;
+		}
+
+		/*
+		 * Brings the cached state of a slot up to the group's current time.
+		 */
+		void sync(int i) {
+			if (syncedAt[i] == time) {
+				return;
+			}
+			syncedAt[i] = time;
+			timer[i] = timerAt(i, time);
+			x[i] = (float) positionAt(i, time);
+			dirRight[i] = dirRightAt(i, time);
+		}
+
+		/*
+		 * Finds a slot's position at a time, without touching its cached state.
+		 */
+		double positionAt(int i, double t) {
+			double dt = t - originTime[i];
+			if (archetype.hasFlag(Archetype.BOUNCE)) {
+				// the sprite runs back and forth, so its path folds over every span
+				double span = archetype.getBoundaryRight() - archetype.getBoundaryLeft();
+				double m = mod(unfolded(i, dt), 2 * span);
+				return archetype.getBoundaryLeft() + (m < span ? m : 2 * span - m);
+			}
+			return wrapped(i, dt);
+		}
+
+		/*
+		 * Finds a slot's looping timer at a time, without touching its cached state.
+		 */
+		float timerAt(int i, double t) {
+			if (archetype.hasFlag(Archetype.DIVE)) {
+				return (float) mod(originTimer[i] + t - originTime[i], archetype.getTimeLoop());
+			}
+			return originTimer[i];
+		}
+
+		/*
+		 * Finds a slot's direction at a time, without touching its cached state.
+		 */
+		boolean dirRightAt(int i, double t) {
+			if (archetype.hasFlag(Archetype.BOUNCE)) {
+				double span = archetype.getBoundaryRight() - archetype.getBoundaryLeft();
+				double m = mod(unfolded(i, t - originTime[i]), 2 * span);
+				return (m < span) == originDirRight[i];
+			}
+			return originDirRight[i];
+		}
+
+		/*
+		 * Finds the first time during the last update at which a slot came
+		 * within halfWidth of the range [left, right], as a fraction of the
+		 * update, or Sprite.NO_CONTACT if it never did. The path is followed
+		 * one straight stretch at a time, between wraps and turns.
+		 */
+		float sweep(int i, float halfWidth, float left, float right) {
+			double low = left - halfWidth;
+			double high = right + halfWidth;
+			double length = time - prevTime;
+			double t = prevTime;
+			for (int piece = 0; piece < MAX_SWEEP_PIECES; piece++) {
+				double x = positionAt(i, t);
+				if (x >= low && x <= high) {
+					return length > 0 ? (float) ((t - prevTime) / length) : 0;
+				}
+				if (length <= 0 || speed <= 0) {
+					return Sprite.NO_CONTACT;
+				}
+				boolean movingRight = dirRightAt(i, t);
+				// the time the sprite reaches the range moving in a straight line
+				double contact = t + (movingRight ? low - x : x - high) / speed;
+				double end = Math.min(time, t + distanceToTurn(i, x, movingRight) / speed);
+				if (contact >= t && contact <= end) {
+					return (float) ((contact - prevTime) / length);
+				}
+				if (end >= time) {
+					return Sprite.NO_CONTACT;
+				}
+				t = end + SWEEP_STEP;
+			}
+			return Sprite.NO_CONTACT;
+		}
+
+		// distance a slot travels in a straight line before it wraps or turns
+		private double distanceToTurn(int i, double x, boolean right) {
+			if (archetype.hasFlag(Archetype.BOUNCE)) {
+				return Math.max(0, right ? archetype.getBoundaryRight() - x : x - archetype.getBoundaryLeft());
+			}
+			double halfWidth = width / 2;
+			return Math.max(0, right ? App.SCREEN_WIDTH + halfWidth - x : x + halfWidth);
+		}
+
+		// distance from the left boundary as if the sprite never turned around
+		private double unfolded(int i, double dt) {
+			double travel = speed * dt;
+			return originX[i] - archetype.getBoundaryLeft() + (originDirRight[i] ? travel : -travel);
+		}
+
+		// position of a sprite which reappears on the other side once fully off screen
+		private double wrapped(int i, double dt) {
+			double halfWidth = width / 2;
+			double span = App.SCREEN_WIDTH + 2 * halfWidth;
+			double travel = speed * dt;
+			if (originDirRight[i]) {
+				return -halfWidth + mod(originX[i] + halfWidth + travel, span);
+			}
+			return App.SCREEN_WIDTH + halfWidth - mod(App.SCREEN_WIDTH + halfWidth - originX[i] + travel, span);
+		}
+
+		private static double mod(double a, double b) {
+			return a - b * Math.floor(a / b);
+		}
+
+		/*
+		 * Finds where to draw a slot, at the time between the last two updates.
+		 */
+		float renderX(int i) {
+			if (alpha >= 1 || prevTime == time) {
+				sync(i);
+				return x[i];
+			}
+			return (float) positionAt(i, prevTime + (time - prevTime) * (double) alpha);
+		}
+	}
+}
@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of the gameplay events of a World, so statistics, audio and
+ * the like can follow the game without being wired into its tick. The world
+ * is the only producer; each consumer reads the events through a Cursor of
+ * its own, at its own pace.
+ *
+ * Listeners added with addListener() are handed the events of each tick in
+ * one batch at the end of the tick. A consumer on another thread subscribes
+ * for a Cursor instead, and polls it. Events are kept in parallel arrays
+ * allocated up front, so publishing never allocates. If a consumer falls a
+ * whole ring behind, new events are dropped rather than holding up the game,
+ * and counted. With no consumers, publishing does nothing.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class EventBus {
+	/** the player touched a sprite; the value is the sprite's CollisionLayer mask */
+	public static final int COLLISION = 0;
+	/** the player lost a life; the value is the number of lives left */
+	public static final int DEATH = 1;
+	/** the player filled a hole; the value is the index of the hole */
+	public static final int HOLE_FILLED = 2;
+	/** the player picked up an extra life; the value is the number of lives */
+	public static final int LIFE_GAINED = 3;
+	/** every hole of a level was filled; the value is the index of the level */
+	public static final int LEVEL_COMPLETE = 4;
+	/** default number of events the ring holds, a power of two */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final int mask;
+	private final int[] types;
+	private final long[] ticks;
+	private final float[] xs;
+	private final float[] ys;
+	private final int[] values;
+
+	// the producer's own count of events published, and the count made visible to consumers
+	private long next = 0;
+	private final AtomicLong published = new AtomicLong();
+	// the least position of any consumer, as last looked up, so the consumers are rarely read
+	private long gate = 0;
+	private volatile Cursor[] cursors = new Cursor[0];
+	private long dropped = 0;
+	// the tick events are stamped with
+	private long tick = 0;
+
+	// consumers handed each tick's events at the end of the tick
+	private final ArrayList<GameEventListener> listeners = new ArrayList<>();
+	private final ArrayList<Cursor> listenerCursors = new ArrayList<>();
+
+	/**
+	 * Position of one consumer in the ring. Only the consumer's thread may
+	 * poll with it.
+	 */
+	public static final class Cursor {
+		private final AtomicLong position;
+
+		private Cursor(long position) {
+			this.position = new AtomicLong(position);
+		}
+	}
+
+	/** Create a bus holding DEFAULT_CAPACITY events. */
+	public EventBus() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a bus holding a given number of events.
+	 *
+	 * @param capacity The number of events the ring holds, a power of two.
+	 */
+	public EventBus(int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		mask = capacity - 1;
+		types = new int[capacity];
+		ticks = new long[capacity];
+		xs = new float[capacity];
+		ys = new float[capacity];
+		values = new int[capacity];
+	}
+
+	/**
+	 * Sets the tick the events published from now on happened in. Called by
+	 * the world at the start of each tick.
+	 *
+	 * @param tick The tick of the world.
+	 */
+	public void setTick(long tick) {
+		this.tick = tick;
+	}
+
+	/**
+	 * Publishes an event to every consumer. Must only be called from the
+	 * thread which updates the world.
+	 *
+	 * @param type  The type of the event, such as HOLE_FILLED.
+	 * @param x     The x-coordinate the event happened at.
+	 * @param y     The y-coordinate the event happened at.
+	 * @param value A detail of the event, as described by its type.
+	 */
+	public void publish(int type, float x, float y, int value) {
+		if (cursors.length == 0) {
+			return;
+		}
+		long sequence = next;
+		if (sequence - gate > mask) {
+			gate = slowestPosition(sequence);
+			if (sequence - gate > mask) {
+				dropped++;
+				return;
+			}
+		}
+		int i = (int) sequence & mask;
+		types[i] = type;
+		ticks[i] = tick;
+		xs[i] = x;
+		ys[i] = y;
+		values[i] = value;
+		next = sequence + 1;
+		// the event's fields are visible to any consumer which sees the new count
+		published.lazySet(next);
+	}
+
+	/**
+	 * Hands the events published since the last call to the listeners added
+	 * with addListener(). Called by the world at the end of each tick.
+	 */
+	public void dispatch() {
+		for (int i = 0; i < listeners.size(); i++) {
+			poll(listenerCursors.get(i), listeners.get(i), Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Hands a consumer the events it has not yet seen, oldest first.
+	 *
+	 * @param cursor   The consumer's position, from subscribe().
+	 * @param listener The receiver of the events.
+	 * @param max      The most events to hand over.
+	 * @return the number of events handed over
+	 */
+	public int poll(Cursor cursor, GameEventListener listener, int max) {
+		long from = cursor.position.get();
+		long to = Math.min(published.get(), from + max);
+		for (long sequence = from; sequence < to; sequence++) {
+			int i = (int) sequence & mask;
+			listener.onEvent(types[i], ticks[i], xs[i], ys[i], values[i]);
+		}
+		// the slots read may now be written again
+		cursor.position.lazySet(to);
+		return (int) (to - from);
+	}
+
+	/**
+	 * Adds a consumer of the events published from now on, to be polled on a
+	 * thread of its own.
+	 *
+	 * @return the consumer's position in the ring
+	 */
+	public synchronized Cursor subscribe() {
+		Cursor cursor = new Cursor(published.get());
+		Cursor[] grown = Arrays.copyOf(cursors, cursors.length + 1);
+		grown[cursors.length] = cursor;
+		cursors = grown;
+		return cursor;
+	}
+
+	/**
+	 * Removes a consumer, so the ring no longer waits for it.
+	 *
+	 * @param cursor The consumer's position, from subscribe().
+	 */
+	public synchronized void unsubscribe(Cursor cursor) {
+		Cursor[] remaining = new Cursor[cursors.length];
+		int n = 0;
+		for (Cursor other : cursors) {
+			if (other != cursor) {
+				remaining[n++] = other;
+			}
+		}
+		cursors = Arrays.copyOf(remaining, n);
+	}
+
+	/**
+	 * Adds a listener to be handed the events of each tick at the end of the
+	 * tick, on the thread which updates the world.
+	 *
+	 * @param listener The receiver of the events.
+	 */
+	public void addListener(GameEventListener listener) {
+		listenerCursors.add(subscribe());
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added with addListener().
+	 *
+	 * @param listener The receiver to remove.
+	 */
+	public void removeListener(GameEventListener listener) {
+		int i = listeners.indexOf(listener);
+		if (i >= 0) {
+			unsubscribe(listenerCursors.remove(i));
+			listeners.remove(i);
+		}
+	}
+
+	/**
+	 * Accesses the number of events published since the bus was created.
+	 *
+	 * @return the number of events, not counting those dropped
+	 */
+	public long getPublished() {
+		return next;
+	}
+
+	/**
+	 * Accesses the number of events dropped because a consumer was a whole
+	 * ring behind.
+	 *
+	 * @return the number of events dropped
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	// finds how far the slowest consumer has read, or the next sequence if there are none
+	private long slowestPosition(long sequence) {
+		long slowest = sequence;
+		Cursor[] current = cursors;
+		for (Cursor cursor : current) {
+			slowest = Math.min(slowest, cursor.position.get());
+		}
+		return slowest;
+	}
+}
@@ -1,5 +1,6 @@
-import org.newdawn.slick.Input;
 import java.lang.Math;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 /**
  * Class for extra life object. Player will gain a life upon contact.
@@ -7,9 +8,11 @@ import java.lang.Math;
  * by Alan Guo, University of Melbourne
  */
 public class ExtraLife extends Sprite {
-	private static final String ASSET_PATH = "assets/extralife.png";
+	private static final String ARCHETYPE = "extraLife";
 	public static final int TIME_LOOP = 14*World.SEC_TO_MILLISEC;
 	private static final int TIME_BETWEEN_MOVEMENT = 2*World.SEC_TO_MILLISEC;
+	/** size of the state written by writeState(), in bytes */
+	public static final int STATE_BYTES = 25;
 
 	private int timer = 0;
 	private boolean dirRight = true;
@@ -22,12 +25,27 @@ public class ExtraLife extends Sprite {
 	 * @param log
 	 */
 	public ExtraLife(LogType log) {
-		super(ASSET_PATH, log.getX(), log.getY());
+		super(ArchetypeRegistry.get(ARCHETYPE), log.getX(), log.getY());
 		logChoice = log;
 	}
+
+	/**
+	 * Respawns the ExtraLife object on a log, so one object can be reused for
+	 * every spawn.
+	 * 
+	 * @param log The log to ride on.
+	 */
+	public void reset(LogType log) {
+		timer = 0;
+		dirRight = true;
+		xDistFromLog = 0;
+		logChoice = log;
+		setX(log.getX());
+		setY(log.getY());
+	}
 	
 	@Override
-	public void update(Input input, int delta) {
+	public void update(InputSource input, int delta) {
 		// moves when sufficient time has passed
 		if (timer % TIME_BETWEEN_MOVEMENT > (timer += delta) % TIME_BETWEEN_MOVEMENT) {
 			int dx = (dirRight ? 1 : -1) * World.TILE_SIZE;
@@ -43,6 +61,75 @@ public class ExtraLife extends Sprite {
 		setX(logChoice.getX() + xDistFromLog);
 	}
 	
+	@Override
+	protected float getRenderX() {
+		// stay on the log as it is drawn between updates
+		return logChoice.getRenderX() + xDistFromLog;
+	}
+
+	/**
+	 * Accesses the log the extra life rides on.
+	 * 
+	 * @return the log, or null once it has left the game
+	 */
+	public LogType getLog() {
+		return logChoice;
+	}
+
+	/**
+	 * Lets go of the log the extra life rides on, once the log leaves the
+	 * game. A log taken out of the game must not be read again, so the extra
+	 * life is not used until reset() puts it on another log.
+	 */
+	public void drop() {
+		logChoice = null;
+	}
+
+	/**
+	 * Writes the state of the extra life, with the log it rides on given by
+	 * where the log is, since logs are streamed in and out.
+	 * 
+	 * @param out The buffer to write STATE_BYTES bytes to.
+	 */
+	public void writeState(ByteBuffer out) {
+		out.putFloat(logChoice.getX());
+		out.putFloat(logChoice.getY());
+		out.putInt(timer);
+		out.put((byte) (dirRight ? 1 : 0));
+		out.putFloat(xDistFromLog);
+		out.putFloat(getX());
+		out.putFloat(getY());
+	}
+
+	/**
+	 * Restores the state of the extra life written by writeState(), once the
+	 * logs are back where they were.
+	 * 
+	 * @param in   The buffer to read STATE_BYTES bytes from.
+	 * @param logs The index of the logs of the level.
+	 * @return False if no loaded log is on the row the extra life rode on.
+	 */
+	public boolean readState(ByteBuffer in, LaneIndex<LogType> logs) {
+		float logX = in.getFloat();
+		float logY = in.getFloat();
+		// the log nearest where it was on its row, which is where it was if it is loaded
+		ArrayList<LogType> row = logs.getRow(LaneIndex.rowOf(logY));
+		logChoice = null;
+		for (int i = 0; i < row.size(); i++) {
+			LogType log = row.get(i);
+			if (log.getY() == logY
+					&& (logChoice == null || Math.abs(log.getX() - logX) < Math.abs(logChoice.getX() - logX))) {
+				logChoice = log;
+			}
+		}
+		timer = in.getInt();
+		dirRight = in.get() != 0;
+		xDistFromLog = in.getFloat();
+		setX(in.getFloat());
+		setY(in.getFloat());
+		return logChoice != null;
+	}
+
 	/** Check if it is time for extra life to disappear.
 	 * @return True if it is time to disappear.
 	 */
@@ -6,7 +6,7 @@
  * by Alan Guo, University of Melbourne
  */
 public class FillHoleFrog extends Sprite {
-	private static final String ASSET_PATH = "assets/frog.png";
+	private static final String ARCHETYPE = "filledHole";
 
 	/**
 	 * Create a frog based on its location.
@@ -15,6 +15,6 @@ public class FillHoleFrog extends Sprite {
 	 * @param y The y-coordinate of the sprite.
 	 */
 	public FillHoleFrog(float x, float y) {
-		super(ASSET_PATH, x, y, new String[] { Sprite.HAZARD });
+		super(ArchetypeRegistry.get(ARCHETYPE), x, y);
 	}
 }
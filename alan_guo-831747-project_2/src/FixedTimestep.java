@@ -0,0 +1,68 @@
+/**
+ * Accumulates frame time and hands it out as fixed-length ticks, so the game
+ * logic steps by the same amount regardless of frame rate. Frames which take
+ * too long run at most a set number of catch-up ticks, and drop the rest.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class FixedTimestep {
+	private final int tickMillis;
+	private final int maxTicksPerFrame;
+	private int accumulator = 0;
+
+	/**
+	 * Create a timestep based on a tick rate and a cap on catch-up ticks. The
+	 * tick length is rounded down to whole milliseconds.
+	 *
+	 * @param tickRate         The number of ticks per second.
+	 * @param maxTicksPerFrame The most ticks run in one frame.
+	 * @throws IllegalArgumentException If either is not above 0.
+	 */
+	public FixedTimestep(int tickRate, int maxTicksPerFrame) {
+		if (tickRate <= 0) {
+			throw new IllegalArgumentException("tickRate must be above 0, not " + tickRate);
+		}
+		if (maxTicksPerFrame <= 0) {
+			throw new IllegalArgumentException("maxTicksPerFrame must be above 0, not " + maxTicksPerFrame);
+		}
+		this.tickMillis = Math.max(1, World.SEC_TO_MILLISEC / tickRate);
+		this.maxTicksPerFrame = maxTicksPerFrame;
+	}
+
+	/**
+	 * Adds the time of a frame, and finds how many ticks to run for it.
+	 *
+	 * @param delta Time passed since last frame (milliseconds).
+	 * @return The number of ticks to run.
+	 */
+	public int advance(int delta) {
+		accumulator += delta;
+		int ticks = accumulator / tickMillis;
+		if (ticks > maxTicksPerFrame) {
+			// give up on the time which cannot be caught up, rather than spiral
+			ticks = maxTicksPerFrame;
+			accumulator = ticks * tickMillis;
+		}
+		accumulator -= ticks * tickMillis;
+		return ticks;
+	}
+
+	/**
+	 * Accesses the length of a tick.
+	 *
+	 * @return the tick length, in milliseconds
+	 */
+	public int getTickMillis() {
+		return tickMillis;
+	}
+
+	/**
+	 * Accesses how far the time not yet run is towards the next tick, used to
+	 * interpolate rendering.
+	 *
+	 * @return the fraction of a tick, from 0 to 1
+	 */
+	public float getAlpha() {
+		return (float) accumulator / tickMillis;
+	}
+}
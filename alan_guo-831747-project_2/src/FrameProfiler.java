@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import org.newdawn.slick.Graphics;
+
+/**
+ * Times each phase of a tick and of rendering into latency histograms. When
+ * disabled, start() and stop() only test a flag, so the instrumentation can
+ * stay in the game loop.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class FrameProfiler {
+	/** phase: the extra life, and the players' contact checks with lane sprites, in World.update */
+	public static final int COLLISION = 0;
+	/** phase: Player.update, including its movement checks, and the hole checks */
+	public static final int PLAYER = 1;
+	/** phase: moving the lane sprites and logs */
+	public static final int LANES = 2;
+	/** phase: checking for and loading the next level */
+	public static final int LEVEL = 3;
+	/** phase: the whole of World.update */
+	public static final int TICK = 4;
+	/** phase: World.render */
+	public static final int RENDER = 5;
+	private static final String[] PHASE_NAMES = new String[] { "collision", "player", "lanes", "level", "tick",
+			"render" };
+
+	private static final double NANO_TO_MICRO = 1e-3;
+	private static final float OVERLAY_X = 10;
+	private static final float OVERLAY_Y = 10;
+	private static final float OVERLAY_LINE = 16;
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[PHASE_NAMES.length];
+	private boolean enabled;
+
+	/**
+	 * Create a profiler, enabled or not.
+	 *
+	 * @param enabled True to start timing straight away.
+	 */
+	public FrameProfiler(boolean enabled) {
+		this.enabled = enabled;
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Marks the start of a phase.
+	 *
+	 * @return The start time to pass to stop(), or 0 if disabled.
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Marks the end of a phase, and records its duration.
+	 *
+	 * @param phase The phase which ended, such as COLLISION.
+	 * @param start The start time returned by start().
+	 */
+	public void stop(int phase, long start) {
+		if (enabled && start != 0) {
+			histograms[phase].record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Check if the profiler is timing phases.
+	 *
+	 * @return True if enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets whether the profiler times phases.
+	 *
+	 * @param enabled True to time phases.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Accesses the histogram of a phase.
+	 *
+	 * @param phase The phase, such as COLLISION.
+	 * @return the histogram of its durations
+	 */
+	public LatencyHistogram getHistogram(int phase) {
+		return histograms[phase];
+	}
+
+	/** Forgets every recorded duration. */
+	public void reset() {
+		for (LatencyHistogram histogram : histograms) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Draws the percentiles of each phase over the top left of the screen.
+	 *
+	 * @param g The Slick graphics object, used for drawing.
+	 */
+	public void render(Graphics g) {
+		g.drawString("phase      p50    p99  p99.9    max (us)", OVERLAY_X, OVERLAY_Y);
+		for (int i = 0; i < histograms.length; i++) {
+			LatencyHistogram h = histograms[i];
+			g.drawString(String.format("%-9s %5.0f %6.0f %6.0f %6.0f", PHASE_NAMES[i],
+					h.getPercentile(50) * NANO_TO_MICRO, h.getPercentile(99) * NANO_TO_MICRO,
+					h.getPercentile(99.9) * NANO_TO_MICRO, h.getMax() * NANO_TO_MICRO), OVERLAY_X,
+					OVERLAY_Y + (i + 1) * OVERLAY_LINE);
+		}
+	}
+
+	/**
+	 * Writes the count, mean and percentiles of each phase to a CSV file.
+	 *
+	 * @param path Where to write the file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void dumpCsv(String path) throws IOException {
+		try (PrintWriter out = new PrintWriter(path)) {
+			out.println("phase,count,mean_us,p50_us,p99_us,p99.9_us,max_us");
+			for (int i = 0; i < histograms.length; i++) {
+				LatencyHistogram h = histograms[i];
+				out.printf("%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f%n", PHASE_NAMES[i], h.getCount(),
+						h.getMean() * NANO_TO_MICRO, h.getPercentile(50) * NANO_TO_MICRO,
+						h.getPercentile(99) * NANO_TO_MICRO, h.getPercentile(99.9) * NANO_TO_MICRO,
+						h.getMax() * NANO_TO_MICRO);
+			}
+		}
+	}
+}
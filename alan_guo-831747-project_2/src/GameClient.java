@@ -0,0 +1,330 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client of a GameServer. Sends the keys pressed each tick, and keeps a
+ * World matching the server's by applying the snapshots it sends, so the
+ * game can be drawn with World.render() as usual. The world is not updated
+ * on the client; it only ever holds the server's latest state.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class GameClient {
+	// snapshots kept to decode later ones against, a power of two, as many as the server keeps
+	private static final int HISTORY = 64;
+	// while joining, HELLO is sent again after this many ticks without a WELCOME
+	private static final int HELLO_INTERVAL = 30;
+	// the fixed fields of a WELCOME and a SNAPSHOT, after the type
+	private static final int WELCOME_BYTES = Integer.BYTES + Long.BYTES + Short.BYTES;
+	private static final int SNAPSHOT_BYTES = 2 * Long.BYTES + 2 * Short.BYTES;
+	private static final long MILLI_TO_NANO = 1000000;
+
+	private final DatagramChannel channel;
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocate(NetProtocol.MAX_DATAGRAM);
+	private final ByteBuffer sendBuffer = ByteBuffer.allocate(NetProtocol.MAX_DATAGRAM);
+	private World world;
+	private int player = -1;
+	private int ticksSinceHello = 0;
+	// the cookie the server challenged the client with, to say HELLO with
+	private long cookie = NetProtocol.NO_COOKIE;
+
+	// the keys sent for the last REDUNDANCY ticks, newest first
+	private final int[] sentKeys = new int[NetProtocol.REDUNDANCY];
+	private int sequence = 0;
+
+	// the states of recent ticks, by tick modulo HISTORY, and the newest applied to the world
+	private final byte[][] states = new byte[HISTORY][];
+	private final long[] stateTicks = new long[HISTORY];
+	private final int[] stateSizes = new int[HISTORY];
+	private long latestTick = NetProtocol.NO_BASE;
+	private long snapshots = 0;
+	private long failures = 0;
+	private long bytesReceived = 0;
+
+	/**
+	 * Opens a client of a server, which joins the game on the first call to
+	 * sendInput() or poll().
+	 *
+	 * @param host The host name of the server.
+	 * @param port The UDP port of the server.
+	 * @throws IOException If the socket could not be opened.
+	 */
+	public GameClient(String host, int port) throws IOException {
+		channel = DatagramChannel.open();
+		channel.configureBlocking(false);
+		channel.connect(new InetSocketAddress(host, port));
+		for (int i = 0; i < HISTORY; i++) {
+			stateTicks[i] = NetProtocol.NO_BASE;
+		}
+	}
+
+	/**
+	 * Opens a client of a server and waits until it has joined the game.
+	 *
+	 * @param host          The host name of the server.
+	 * @param port          The UDP port of the server.
+	 * @param timeoutMillis How long to wait.
+	 * @return the client, with its world
+	 * @throws IOException If the socket could not be opened, or the server did not answer in time.
+	 */
+	public static GameClient connect(String host, int port, long timeoutMillis) throws IOException {
+		GameClient client = new GameClient(host, port);
+		long deadline = System.nanoTime() + timeoutMillis * MILLI_TO_NANO;
+		while (client.world == null) {
+			if (System.nanoTime() > deadline) {
+				client.close();
+				throw new IOException("No answer from " + host + ":" + port);
+			}
+			client.sendInput(0);
+			client.poll();
+			try {
+				Thread.sleep(HeadlessRunner.DEFAULT_DELTA);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while joining");
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * Sends the keys pressed this tick, and acknowledges the newest snapshot.
+	 * Until the client has joined, asks to join instead.
+	 *
+	 * @param keys The mask of keys pressed, from NetProtocol.toMask().
+	 * @throws IOException If the datagram could not be sent.
+	 */
+	public void sendInput(int keys) throws IOException {
+		sendBuffer.clear();
+		if (player < 0) {
+			if (ticksSinceHello++ % HELLO_INTERVAL != 0) {
+				return;
+			}
+			putHello();
+		} else {
+			System.arraycopy(sentKeys, 0, sentKeys, 1, NetProtocol.REDUNDANCY - 1);
+			sentKeys[0] = keys;
+			sendBuffer.put(NetProtocol.INPUT);
+			sendBuffer.putInt(sequence++);
+			for (int i = 0; i < NetProtocol.REDUNDANCY; i++) {
+				sendBuffer.put((byte) sentKeys[i]);
+			}
+			sendBuffer.putLong(latestTick);
+		}
+		sendBuffer.flip();
+		channel.write(sendBuffer);
+	}
+
+	/**
+	 * Reads every datagram the server has sent, and brings the world up to
+	 * the newest snapshot among them.
+	 *
+	 * @return the number of snapshots received
+	 * @throws IOException If the socket failed.
+	 */
+	public int poll() throws IOException {
+		int received = 0;
+		while (true) {
+			receiveBuffer.clear();
+			if (channel.receive(receiveBuffer) == null) {
+				break;
+			}
+			receiveBuffer.flip();
+			bytesReceived += receiveBuffer.remaining();
+			if (!receiveBuffer.hasRemaining()) {
+				continue;
+			}
+			byte type = receiveBuffer.get();
+			if (type == NetProtocol.CHALLENGE) {
+				challenge(receiveBuffer);
+			} else if (type == NetProtocol.WELCOME) {
+				if (!welcome(receiveBuffer)) {
+					failures++;
+				}
+			} else if (type == NetProtocol.SNAPSHOT && world != null) {
+				if (snapshot(receiveBuffer)) {
+					received++;
+				} else {
+					failures++;
+				}
+			}
+		}
+		return received;
+	}
+
+	/** Leaves the game, and closes the socket. */
+	public void close() {
+		try {
+			if (player >= 0) {
+				sendBuffer.clear();
+				sendBuffer.put(NetProtocol.BYE);
+				sendBuffer.flip();
+				channel.write(sendBuffer);
+			}
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Accesses the world as of the newest snapshot.
+	 *
+	 * @return the world, or null until the client has joined
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * Accesses the index of the player this client plays.
+	 *
+	 * @return the index of the player in the world, or -1 until the client has joined
+	 */
+	public int getPlayerIndex() {
+		return player;
+	}
+
+	/**
+	 * Accesses the tick of the server's world the newest snapshot was taken on.
+	 *
+	 * @return the tick, or NetProtocol.NO_BASE if no snapshot was applied
+	 */
+	public long getLatestTick() {
+		return latestTick;
+	}
+
+	/**
+	 * Accesses the number of snapshots applied.
+	 *
+	 * @return the number of snapshots
+	 */
+	public long getSnapshots() {
+		return snapshots;
+	}
+
+	/**
+	 * Accesses the number of datagrams which could not be used: snapshots
+	 * whose base was no longer held, and any snapshot or WELCOME which was
+	 * cut short or did not fit the game.
+	 *
+	 * @return the number of datagrams dropped
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Accesses the number of bytes received from the server.
+	 *
+	 * @return the bytes received, counting only the datagrams' contents
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	// a HELLO with the cookie, padded so the server may answer it
+	private void putHello() {
+		sendBuffer.put(NetProtocol.HELLO);
+		sendBuffer.putLong(cookie);
+		while (sendBuffer.position() < NetProtocol.HELLO_BYTES) {
+			sendBuffer.put((byte) 0);
+		}
+	}
+
+	// says HELLO again at once, with the cookie the server challenged the client with
+	private void challenge(ByteBuffer in) throws IOException {
+		if (world != null || in.remaining() < Long.BYTES) {
+			return;
+		}
+		cookie = in.getLong();
+		sendBuffer.clear();
+		putHello();
+		sendBuffer.flip();
+		channel.write(sendBuffer);
+	}
+
+	// joins as the player the server gave, on the level it plays; false if the WELCOME was cut short
+	private boolean welcome(ByteBuffer in) {
+		if (world != null) {
+			return true;
+		}
+		if (in.remaining() < WELCOME_BYTES) {
+			return false;
+		}
+		int index = in.getInt();
+		long seed = in.getLong();
+		int length = in.getShort() & 0xFFFF;
+		if (index < 0 || in.remaining() < length) {
+			return false;
+		}
+		byte[] path = new byte[length];
+		in.get(path);
+		world = path.length == 0 ? new World(seed) : new World(new String(path, StandardCharsets.UTF_8), seed);
+		player = index;
+		return true;
+	}
+
+	// decodes a snapshot, keeping its state, and applies it if it is the newest; false if it could not be decoded
+	private boolean snapshot(ByteBuffer in) {
+		if (in.remaining() < SNAPSHOT_BYTES) {
+			return false;
+		}
+		long tick = in.getLong();
+		long base = in.getLong();
+		int players = in.getShort();
+		int size = in.getShort() & 0xFFFF;
+		// a state of the wrong size could not be read into the world
+		if (tick < 0 || players < 1 || players > GameServer.MAX_CLIENTS || size != World.getStateSize(players)) {
+			return false;
+		}
+		byte[] baseState = null;
+		if (base != NetProtocol.NO_BASE) {
+			int baseSlot = (int) (base & (HISTORY - 1));
+			if (stateTicks[baseSlot] != base || stateSizes[baseSlot] != size) {
+				return false;
+			}
+			baseState = states[baseSlot];
+		}
+		int slot = (int) (tick & (HISTORY - 1));
+		if (states[slot] == null || states[slot].length < size) {
+			states[slot] = new byte[size];
+		}
+		// the base may share the slot only if it is HISTORY ticks old, which the server never sends
+		stateTicks[slot] = NetProtocol.NO_BASE;
+		if (!NetProtocol.decode(baseState, in, states[slot], size)) {
+			return false;
+		}
+		stateTicks[slot] = tick;
+		stateSizes[slot] = size;
+
+		if (tick > latestTick) {
+			if (!apply(states[slot], size, players)) {
+				return false;
+			}
+			latestTick = tick;
+		}
+		snapshots++;
+		return true;
+	}
+
+	// brings the world to a state, adding the players who joined and changing level if need be; false if it has no such level
+	private boolean apply(byte[] state, int size, int players) {
+		ByteBuffer in = ByteBuffer.wrap(state, 0, size);
+		int level = in.getInt(0);
+		if (level < 0 || level >= world.getLevelCount()) {
+			return false;
+		}
+		while (world.getPlayerCount() < players) {
+			world.addPlayer();
+		}
+		if (level != world.getLevel()) {
+			world.startLevel(level);
+		}
+		world.readState(in);
+		return true;
+	}
+}
@@ -0,0 +1,19 @@
+/**
+ * Receiver of the gameplay events published on an EventBus, such as a hole
+ * being filled or the player losing a life. Events are handed over in the
+ * order they happened, in batches, after the tick which made them.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public interface GameEventListener {
+	/**
+	 * Handles one event.
+	 *
+	 * @param type  The type of the event, such as EventBus.HOLE_FILLED.
+	 * @param tick  The tick of the world the event happened on.
+	 * @param x     The x-coordinate the event happened at.
+	 * @param y     The y-coordinate the event happened at.
+	 * @param value A detail of the event, as described by its type.
+	 */
+	void onEvent(int type, long tick, float x, float y, int value);
+}
@@ -0,0 +1,579 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Authoritative server for several players racing on the same lanes. Runs
+ * the world headless at a fixed tick rate on one thread. Client inputs
+ * arrive on one UDP socket, read through a non-blocking selector between
+ * ticks. After each tick, every client is sent a snapshot of the world,
+ * delta-compressed against the last tick the client acknowledged, as
+ * described in NetProtocol.
+ *
+ * A client joins by the handshake described in NetProtocol, so only an
+ * address which answers a CHALLENGE is ever sent a WELCOME, and only a
+ * client which has sent an INPUT is sent snapshots. At most a set number of
+ * clients may join from one host.
+ *
+ * Each client plays one of the world's players. A client which leaves, or is
+ * silent for CLIENT_TIMEOUT_MILLIS, frees its player, which waits out of the
+ * game until the next client to join takes it over from the start. The game starts again whenever it is over.
+ *
+ * Usage: GameServer [port] [levelPath] [seed]
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class GameServer implements Runnable {
+	/** port the server listens on by default */
+	public static final int DEFAULT_PORT = 20003;
+	/** most clients served at once */
+	public static final int MAX_CLIENTS = 128;
+	/** most clients served at once from one host, by default */
+	public static final int DEFAULT_CLIENTS_PER_HOST = 4;
+	/** a client heard nothing from for this long has left */
+	public static final long CLIENT_TIMEOUT_MILLIS = 5000;
+	// a cookie is good for the period it was made in and the next
+	private static final long COOKIE_PERIOD_MILLIS = 30000;
+	private static final String COOKIE_ALGORITHM = "HmacSHA256";
+	private static final int COOKIE_KEY_BYTES = 32;
+	// states kept to encode snapshots against, a power of two, about a second of ticks
+	private static final int HISTORY = 64;
+	// inputs queued per client, a power of two
+	private static final int INPUT_QUEUE = 16;
+	// a client with more ticks than this queued is lagging, and its oldest are dropped
+	private static final int MAX_INPUT_DELAY = 3;
+	// the tick clock is let fall this far behind before it skips ahead rather than catch up
+	private static final int MAX_LAG_TICKS = 5;
+	private static final long MILLI_TO_NANO = 1000000;
+
+	private final World world;
+	private final String levelPath;
+	private final long seed;
+	private final int tickMillis;
+	private final int clientsPerHost;
+	private final Mac cookieMac;
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private volatile boolean running = true;
+
+	// clients by address, and the input of every player, played by a client or not
+	private final HashMap<SocketAddress, Client> clients = new HashMap<>();
+	private final ArrayList<Client> clientList = new ArrayList<>();
+	private final ArrayList<NetInput> inputs = new ArrayList<>();
+	private InputSource[] inputArray = new InputSource[0];
+
+	// the state of each of the last HISTORY ticks, by tick modulo HISTORY
+	private final byte[][] history = new byte[HISTORY][];
+	private final long[] historyTicks = new long[HISTORY];
+	private final int[] historySizes = new int[HISTORY];
+	private final ByteBuffer stateBuffer;
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocate(NetProtocol.MAX_DATAGRAM);
+	private final ByteBuffer sendBuffer = ByteBuffer.allocate(NetProtocol.MAX_DATAGRAM);
+	private final int[] keys = new int[NetProtocol.REDUNDANCY];
+	// snapshots of this tick already encoded, by base tick, as clients often share a base
+	private final long[] encodedBases = new long[HISTORY + 1];
+	private final ByteBuffer[] encoded = new ByteBuffer[HISTORY + 1];
+	private int nEncoded = 0;
+
+	// statistics, read by other threads for monitoring
+	private final LatencyHistogram tickTimes = new LatencyHistogram();
+	private volatile long ticks = 0;
+	private volatile long bytesSent = 0;
+	private volatile long snapshotsSent = 0;
+	private volatile long fullSnapshots = 0;
+
+	/**
+	 * A client which has joined, and the player it plays.
+	 */
+	private static class Client {
+		private final SocketAddress address;
+		private final NetInput input;
+		private final int player;
+		private long ackTick = NetProtocol.NO_BASE;
+		private int lastSequence = -1;
+		// true once the client has sent an INPUT, and so is sent snapshots
+		private boolean playing = false;
+		private long lastHeard;
+
+		private Client(SocketAddress address, NetInput input, int player) {
+			this.address = address;
+			this.input = input;
+			this.player = player;
+		}
+	}
+
+	/**
+	 * The key presses of one player, fed one tick at a time from the inputs a
+	 * client sent.
+	 */
+	private static class NetInput implements InputSource {
+		private final int[] queue = new int[INPUT_QUEUE];
+		private int head = 0;
+		private int size = 0;
+		private int mask = 0;
+		private boolean taken = false;
+
+		// queues the keys of one tick, dropping the oldest if the queue is full
+		private void offer(int keys) {
+			if (size == INPUT_QUEUE) {
+				drop();
+			}
+			queue[(head + size) & (INPUT_QUEUE - 1)] = keys;
+			size++;
+		}
+
+		/*
+		 * Takes the keys of the next tick, or none if the client has sent none.
+		 * A client whose inputs arrive in a burst would otherwise play that
+		 * far behind for good, so the oldest ticks beyond MAX_INPUT_DELAY are
+		 * dropped.
+		 */
+		private void next() {
+			while (size > MAX_INPUT_DELAY) {
+				drop();
+			}
+			mask = 0;
+			if (size > 0) {
+				mask = queue[head];
+				head = (head + 1) & (INPUT_QUEUE - 1);
+				size--;
+			}
+		}
+
+		private void drop() {
+			head = (head + 1) & (INPUT_QUEUE - 1);
+			size--;
+		}
+
+		private void clear() {
+			head = 0;
+			size = 0;
+			mask = 0;
+		}
+
+		@Override
+		public boolean isKeyPressed(int key) {
+			return NetProtocol.isPressed(mask, key);
+		}
+	}
+
+	/**
+	 * Create a server playing a level, listening on a port, with at most
+	 * DEFAULT_CLIENTS_PER_HOST clients from each host.
+	 *
+	 * @param port       The UDP port to listen on, or 0 for any free port.
+	 * @param levelPath  The level to play, or null for the game's own levels.
+	 * @param seed       The seed for the random events of the game.
+	 * @param tickMillis The length of each tick, in milliseconds.
+	 * @throws IOException If the port could not be opened.
+	 */
+	public GameServer(int port, String levelPath, long seed, int tickMillis) throws IOException {
+		this(port, levelPath, seed, tickMillis, DEFAULT_CLIENTS_PER_HOST);
+	}
+
+	/**
+	 * Create a server playing a level, listening on a port.
+	 *
+	 * @param port           The UDP port to listen on, or 0 for any free port.
+	 * @param levelPath      The level to play, or null for the game's own levels.
+	 * @param seed           The seed for the random events of the game.
+	 * @param tickMillis     The length of each tick, in milliseconds.
+	 * @param clientsPerHost The most clients served at once from one host.
+	 * @throws IOException If the port could not be opened.
+	 */
+	public GameServer(int port, String levelPath, long seed, int tickMillis, int clientsPerHost)
+			throws IOException {
+		this.levelPath = levelPath;
+		this.seed = seed;
+		this.tickMillis = tickMillis;
+		this.clientsPerHost = clientsPerHost;
+		AssetRegistry.setHeadless(true);
+		world = levelPath == null ? new World(seed) : new World(levelPath, seed);
+		// the first player waits out of the game for the first client
+		world.getPlayer(0).setActive(false);
+		inputs.add(new NetInput());
+		stateBuffer = ByteBuffer.allocate(NetProtocol.MAX_DATAGRAM);
+
+		// cookies are signed with a key which lives only as long as the server
+		byte[] key = new byte[COOKIE_KEY_BYTES];
+		new SecureRandom().nextBytes(key);
+		try {
+			cookieMac = Mac.getInstance(COOKIE_ALGORITHM);
+			cookieMac.init(new SecretKeySpec(key, COOKIE_ALGORITHM));
+		} catch (GeneralSecurityException e) {
+			// every Java platform has HmacSHA256
+			throw new IllegalStateException(e);
+		}
+
+		channel = DatagramChannel.open();
+		channel.configureBlocking(false);
+		channel.bind(new InetSocketAddress(port));
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Runs a server until it is killed.
+	 *
+	 * @param args Optionally, the port, the level file and the seed.
+	 * @throws IOException If the port could not be opened.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		String levelPath = args.length > 1 ? args[1] : null;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+		GameServer server = new GameServer(port, levelPath, seed, HeadlessRunner.DEFAULT_DELTA);
+		System.out.println("Serving on port " + server.getPort());
+		server.run();
+	}
+
+	/**
+	 * Ticks the world at a fixed rate, reading inputs in between, until stopped.
+	 */
+	@Override
+	public void run() {
+		long tickNanos = tickMillis * MILLI_TO_NANO;
+		long nextTick = System.nanoTime();
+		try {
+			while (running) {
+				long wait = nextTick - System.nanoTime();
+				if (wait > 0) {
+					// the selector waits in whole milliseconds, so a tick may start up to one late
+					selector.select((wait + MILLI_TO_NANO - 1) / MILLI_TO_NANO);
+					selector.selectedKeys().clear();
+					receive();
+					continue;
+				}
+				receive();
+				long start = System.nanoTime();
+				tick();
+				tickTimes.record(System.nanoTime() - start);
+				nextTick += tickNanos;
+				if (System.nanoTime() - nextTick > MAX_LAG_TICKS * tickNanos) {
+					nextTick = System.nanoTime();
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			try {
+				selector.close();
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/** Stops the server after the tick it is running. */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Accesses the port the server listens on.
+	 *
+	 * @return the local UDP port
+	 * @throws IOException If the socket is closed.
+	 */
+	public int getPort() throws IOException {
+		return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * Accesses the time each tick took, from reading the inputs to sending
+	 * the last snapshot.
+	 *
+	 * @return the histogram of tick times, in nanoseconds
+	 */
+	public LatencyHistogram getTickTimes() {
+		return tickTimes;
+	}
+
+	/**
+	 * Accesses the number of ticks run.
+	 *
+	 * @return the number of ticks
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Accesses the number of clients playing.
+	 *
+	 * @return the number of clients
+	 */
+	public int getClientCount() {
+		return clientList.size();
+	}
+
+	/**
+	 * Accesses the number of snapshot bytes sent.
+	 *
+	 * @return the bytes sent, counting only the datagrams' contents
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * Accesses the number of snapshots sent.
+	 *
+	 * @return the number of snapshots
+	 */
+	public long getSnapshotsSent() {
+		return snapshotsSent;
+	}
+
+	/**
+	 * Accesses the number of snapshots sent whole, as no base was acknowledged.
+	 *
+	 * @return the number of whole snapshots
+	 */
+	public long getFullSnapshots() {
+		return fullSnapshots;
+	}
+
+	// reads every datagram waiting on the socket
+	private void receive() throws IOException {
+		while (true) {
+			receiveBuffer.clear();
+			SocketAddress from = channel.receive(receiveBuffer);
+			if (from == null) {
+				return;
+			}
+			receiveBuffer.flip();
+			if (receiveBuffer.hasRemaining()) {
+				handle(from, receiveBuffer);
+			}
+		}
+	}
+
+	private void handle(SocketAddress from, ByteBuffer in) throws IOException {
+		byte type = in.get();
+		Client client = clients.get(from);
+		if (type == NetProtocol.HELLO) {
+			// a short HELLO could be answered with more than it carried
+			if (in.remaining() < NetProtocol.HELLO_BYTES - 1) {
+				return;
+			}
+			if (client == null) {
+				long cookie = in.getLong();
+				if (!isValidCookie(from, cookie)) {
+					challenge(from);
+					return;
+				}
+				client = join(from);
+			}
+			if (client != null) {
+				welcome(client);
+			}
+		} else if (client == null) {
+			return;
+		} else if (type == NetProtocol.INPUT && in.remaining() >= Integer.BYTES + NetProtocol.REDUNDANCY + Long.BYTES) {
+			client.lastHeard = System.nanoTime();
+			client.playing = true;
+			int sequence = in.getInt();
+			for (int i = 0; i < NetProtocol.REDUNDANCY; i++) {
+				keys[i] = in.get();
+			}
+			// queue the ticks not yet seen, oldest first
+			int missed = Math.min(sequence - client.lastSequence, NetProtocol.REDUNDANCY);
+			for (int i = missed - 1; i >= 0; i--) {
+				client.input.offer(keys[i]);
+			}
+			client.lastSequence = Math.max(client.lastSequence, sequence);
+			client.ackTick = Math.max(client.ackTick, in.getLong());
+		} else if (type == NetProtocol.BYE) {
+			leave(client);
+		}
+	}
+
+	// gives a new client a free player, adding one to the world if there is none
+	private Client join(SocketAddress address) {
+		if (clientList.size() >= MAX_CLIENTS || clientsFrom(address) >= clientsPerHost) {
+			return null;
+		}
+		int player = -1;
+		for (int i = 0; i < inputs.size() && player < 0; i++) {
+			if (!inputs.get(i).taken) {
+				player = i;
+			}
+		}
+		if (player < 0) {
+			player = world.addPlayer();
+			inputs.add(new NetInput());
+		}
+		// a freed player starts afresh, rather than as its last client left it
+		world.getPlayer(player).reset();
+		world.getPlayer(player).setActive(true);
+		NetInput input = inputs.get(player);
+		input.clear();
+		input.taken = true;
+		Client client = new Client(address, input, player);
+		client.lastHeard = System.nanoTime();
+		clients.put(address, client);
+		clientList.add(client);
+		return client;
+	}
+
+	// the number of clients playing from the host of an address
+	private int clientsFrom(SocketAddress address) {
+		int count = 0;
+		for (int i = 0; i < clientList.size(); i++) {
+			if (hostOf(clientList.get(i).address).equals(hostOf(address))) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static Object hostOf(SocketAddress address) {
+		return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getAddress() : address;
+	}
+
+	// answers a HELLO from an unknown address with the cookie it must say HELLO with
+	private void challenge(SocketAddress address) throws IOException {
+		sendBuffer.clear();
+		sendBuffer.put(NetProtocol.CHALLENGE);
+		sendBuffer.putLong(cookieFor(address, System.nanoTime() / (COOKIE_PERIOD_MILLIS * MILLI_TO_NANO)));
+		sendBuffer.flip();
+		channel.send(sendBuffer, address);
+	}
+
+	private boolean isValidCookie(SocketAddress address, long cookie) {
+		long period = System.nanoTime() / (COOKIE_PERIOD_MILLIS * MILLI_TO_NANO);
+		return cookie != NetProtocol.NO_COOKIE
+				&& (cookie == cookieFor(address, period) || cookie == cookieFor(address, period - 1));
+	}
+
+	// a signature of the address and period, which only this server can make
+	private long cookieFor(SocketAddress address, long period) {
+		cookieMac.update(address.toString().getBytes(StandardCharsets.UTF_8));
+		cookieMac.update(ByteBuffer.allocate(Long.BYTES).putLong(period).array());
+		long cookie = ByteBuffer.wrap(cookieMac.doFinal()).getLong();
+		return cookie == NetProtocol.NO_COOKIE ? 1 : cookie;
+	}
+
+	private void leave(Client client) {
+		// a departed player is left out of the game, so it cannot keep it from ending
+		world.getPlayer(client.player).setActive(false);
+		client.input.clear();
+		client.input.taken = false;
+		clients.remove(client.address);
+		clientList.remove(client);
+	}
+
+	private void welcome(Client client) throws IOException {
+		sendBuffer.clear();
+		sendBuffer.put(NetProtocol.WELCOME);
+		sendBuffer.putInt(client.player);
+		sendBuffer.putLong(seed);
+		byte[] path = levelPath == null ? new byte[0] : levelPath.getBytes(StandardCharsets.UTF_8);
+		sendBuffer.putShort((short) path.length);
+		sendBuffer.put(path);
+		sendBuffer.flip();
+		channel.send(sendBuffer, client.address);
+	}
+
+	/*
+	 * Runs one tick: hands each player the next of their inputs, updates the
+	 * world, keeps its state, and sends every client a snapshot.
+	 */
+	private void tick() throws IOException {
+		long now = System.nanoTime();
+		for (int i = clientList.size() - 1; i >= 0; i--) {
+			if (now - clientList.get(i).lastHeard > CLIENT_TIMEOUT_MILLIS * MILLI_TO_NANO) {
+				leave(clientList.get(i));
+			}
+		}
+		if (inputArray.length != inputs.size()) {
+			inputArray = inputs.toArray(new InputSource[inputs.size()]);
+		}
+		for (NetInput input : inputs) {
+			input.next();
+		}
+		world.update(inputArray, tickMillis);
+		if (world.isGameOver()) {
+			world.reset(seed);
+		}
+		ticks++;
+
+		// keep the state, to send now and to encode later snapshots against
+		int slot = (int) (ticks & (HISTORY - 1));
+		stateBuffer.clear();
+		world.writeState(stateBuffer);
+		int size = stateBuffer.position();
+		if (history[slot] == null || history[slot].length < size) {
+			history[slot] = new byte[size];
+		}
+		System.arraycopy(stateBuffer.array(), 0, history[slot], 0, size);
+		historyTicks[slot] = ticks;
+		historySizes[slot] = size;
+
+		nEncoded = 0;
+		for (int i = 0; i < clientList.size(); i++) {
+			Client client = clientList.get(i);
+			if (!client.playing) {
+				continue;
+			}
+			long base = baseFor(client.ackTick, size);
+			ByteBuffer snapshot = snapshot(base, slot, size);
+			snapshot.rewind();
+			channel.send(snapshot, client.address);
+			bytesSent += snapshot.limit();
+			snapshotsSent++;
+			if (base == NetProtocol.NO_BASE) {
+				fullSnapshots++;
+			}
+		}
+	}
+
+	// the tick to encode against: the acknowledged one, if its state is still kept and the same size
+	private long baseFor(long ackTick, int size) {
+		if (ackTick == NetProtocol.NO_BASE || ticks - ackTick >= HISTORY) {
+			return NetProtocol.NO_BASE;
+		}
+		int slot = (int) (ackTick & (HISTORY - 1));
+		return historyTicks[slot] == ackTick && historySizes[slot] == size ? ackTick : NetProtocol.NO_BASE;
+	}
+
+	// encodes this tick's snapshot against a base tick, or reuses the encoding made for another client
+	private ByteBuffer snapshot(long base, int slot, int size) {
+		for (int i = 0; i < nEncoded; i++) {
+			if (encodedBases[i] == base) {
+				return encoded[i];
+			}
+		}
+		if (encoded[nEncoded] == null) {
+			encoded[nEncoded] = ByteBuffer.allocate(NetProtocol.MAX_DATAGRAM);
+		}
+		ByteBuffer out = encoded[nEncoded];
+		encodedBases[nEncoded] = base;
+		nEncoded++;
+
+		out.clear();
+		out.put(NetProtocol.SNAPSHOT);
+		out.putLong(ticks);
+		out.putLong(base);
+		out.putShort((short) world.getPlayerCount());
+		out.putShort((short) size);
+		byte[] baseState = base == NetProtocol.NO_BASE ? null : history[(int) (base & (HISTORY - 1))];
+		NetProtocol.encode(baseState, history[slot], size, out);
+		out.flip();
+		return out;
+	}
+}
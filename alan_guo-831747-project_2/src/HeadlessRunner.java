@@ -0,0 +1,37 @@
+/**
+ * Runs the game logic with no window, as fast as the CPU allows. Used to
+ * batch-test levels on machines without a display.
+ *
+ * Usage: HeadlessRunner [ticks] [delta]
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class HeadlessRunner {
+	private static final int DEFAULT_TICKS = 100000;
+	/** default simulated time per tick, in milliseconds */
+	public static final int DEFAULT_DELTA = 16;
+	private static final double NANO_TO_SEC = 1e-9;
+
+	/**
+	 * Builds a world without loading any images, and ticks it with no key presses.
+	 *
+	 * @param args Optionally, the number of ticks and the milliseconds per tick.
+	 */
+	public static void main(String[] args) {
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TICKS;
+		int delta = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DELTA;
+
+		AssetRegistry.setHeadless(true);
+		World world = new World();
+		InputSource idle = key -> false;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ticks; i++) {
+			world.update(idle, delta);
+		}
+		double seconds = (System.nanoTime() - start) * NANO_TO_SEC;
+
+		System.out.printf("%d ticks (%d s simulated) in %.3f s: %.0f ticks/s%n", ticks,
+				(long) ticks * delta / World.SEC_TO_MILLISEC, seconds, ticks / seconds);
+	}
+}
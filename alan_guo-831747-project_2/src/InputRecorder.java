@@ -0,0 +1,164 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.newdawn.slick.Input;
+
+/**
+ * An InputSource which records the keys the player polls, together with the
+ * length of every tick, so a game can be replayed exactly by ReplayRunner.
+ * The keys are sampled once per tick from another input source, and every
+ * update of that tick sees the same sample.
+ *
+ * The log holds, in big-endian order: a header (int MAGIC, short VERSION,
+ * long seed, varint checkpoint interval, varint level count, then each level
+ * path as modified UTF-8), followed by one varint per tick holding the delta
+ * shifted left by KEY_BITS and the key mask. After every checkpoint interval
+ * of ticks, the World state hash follows as a long. The log ends at the end
+ * of the file.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class InputRecorder implements InputSource {
+	/** "FREC", the first four bytes of every input log */
+	public static final int MAGIC = 0x46524543;
+	/** version of the input log format */
+	public static final short VERSION = 1;
+	/** default number of ticks between state hash checkpoints */
+	public static final int DEFAULT_CHECKPOINT_INTERVAL = 60;
+	/** the keys the player polls, in the order of their bits in the key mask */
+	public static final int[] RECORDED_KEYS = new int[] { Input.KEY_LEFT, Input.KEY_RIGHT, Input.KEY_UP,
+			Input.KEY_DOWN };
+	/** number of bits of the key mask in each tick */
+	public static final int KEY_BITS = 4;
+	private static final int VARINT_BITS = 7;
+	private static final int VARINT_MORE = 0x80;
+
+	private final InputSource source;
+	private final World world;
+	private final DataOutputStream out;
+	private final int checkpointInterval;
+	// keys pressed during the current tick
+	private int keyMask = 0;
+	private long ticks = 0;
+
+	/**
+	 * Create a recorder of the input to a world, writing the log header.
+	 *
+	 * @param source             The input source to sample keys from.
+	 * @param world              The world fed by the recorder, whose seed and
+	 *                           levels are recorded.
+	 * @param path               Where to write the log.
+	 * @param checkpointInterval The number of ticks between state hashes.
+	 * @throws IOException If the log could not be written.
+	 */
+	public InputRecorder(InputSource source, World world, String path, int checkpointInterval)
+			throws IOException {
+		this.source = source;
+		this.world = world;
+		this.checkpointInterval = checkpointInterval;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeLong(world.getSeed());
+		writeVarint(out, checkpointInterval);
+		String[] levelPaths = world.getLevelPaths();
+		writeVarint(out, levelPaths.length);
+		for (String levelPath : levelPaths) {
+			out.writeUTF(levelPath);
+		}
+	}
+
+	/**
+	 * Samples the keys for a tick and records them. Must be called before the
+	 * world is updated for the tick.
+	 *
+	 * @param delta The length of the tick (milliseconds).
+	 * @throws IOException If the log could not be written.
+	 */
+	public void beginTick(int delta) throws IOException {
+		keyMask = 0;
+		for (int i = 0; i < RECORDED_KEYS.length; i++) {
+			if (source.isKeyPressed(RECORDED_KEYS[i])) {
+				keyMask |= 1 << i;
+			}
+		}
+		writeVarint(out, delta << KEY_BITS | keyMask);
+	}
+
+	/**
+	 * Ends a tick, recording the state hash of the world if it is a checkpoint.
+	 * Must be called after the world is updated for the tick.
+	 *
+	 * @throws IOException If the log could not be written.
+	 */
+	public void endTick() throws IOException {
+		ticks++;
+		if (ticks % checkpointInterval == 0) {
+			out.writeLong(world.stateHash());
+		}
+	}
+
+	/**
+	 * Writes out the rest of the log and closes it.
+	 *
+	 * @throws IOException If the log could not be written.
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+
+	@Override
+	public boolean isKeyPressed(int key) {
+		for (int i = 0; i < RECORDED_KEYS.length; i++) {
+			if (RECORDED_KEYS[i] == key) {
+				return (keyMask & 1 << i) != 0;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes an unsigned varint: 7 bits per byte, lowest first, with the top
+	 * bit set on every byte but the last.
+	 *
+	 * @param out   The stream to write to.
+	 * @param value The value, treated as unsigned.
+	 * @throws IOException If the value could not be written.
+	 */
+	public static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while ((value & ~(VARINT_MORE - 1)) != 0) {
+			out.writeByte(value & (VARINT_MORE - 1) | VARINT_MORE);
+			value >>>= VARINT_BITS;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Reads an unsigned varint written by writeVarint().
+	 *
+	 * @param in The stream to read from.
+	 * @return the value, or -1 if the stream ended before it
+	 * @throws IOException If the stream ended part way through the value.
+	 */
+	public static int readVarint(DataInputStream in) throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			return -1;
+		}
+		int value = 0;
+		int shift = 0;
+		while ((b & VARINT_MORE) != 0) {
+			value |= (b & (VARINT_MORE - 1)) << shift;
+			shift += VARINT_BITS;
+			b = in.read();
+			if (b < 0) {
+				throw new EOFException("Input log ends inside a varint");
+			}
+		}
+		return value | b << shift;
+	}
+}
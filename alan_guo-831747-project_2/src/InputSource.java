@@ -0,0 +1,16 @@
+/**
+ * Source of the key presses which the player responds to. Lets the game logic
+ * be driven by the keyboard, or by scripts and bots with no window at all.
+ * Key codes are those of org.newdawn.slick.Input, such as Input.KEY_LEFT.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public interface InputSource {
+	/**
+	 * Check if a key was pressed since the last check.
+	 *
+	 * @param key The key code to check.
+	 * @return True if the key was pressed.
+	 */
+	boolean isKeyPressed(int key);
+}
@@ -0,0 +1,32 @@
+/**
+ * An InputSource whose key presses are set by code rather than read from a
+ * keyboard, so bots and scripts can drive the player.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class KeyState implements InputSource {
+	private static final int N_KEYS = 256;
+	private final boolean[] pressed = new boolean[N_KEYS];
+
+	/**
+	 * Sets whether a key counts as pressed for the next update.
+	 *
+	 * @param key     The Input.KEY_* code of the key.
+	 * @param pressed True if the key is pressed.
+	 */
+	public void setPressed(int key, boolean pressed) {
+		this.pressed[key] = pressed;
+	}
+
+	/** Releases every key. */
+	public void clear() {
+		for (int i = 0; i < N_KEYS; i++) {
+			pressed[i] = false;
+		}
+	}
+
+	@Override
+	public boolean isKeyPressed(int key) {
+		return key >= 0 && key < N_KEYS && pressed[key];
+	}
+}
@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+
+/**
+ * Broadphase index of sprites bucketed by the row of tiles they lie on. Every
+ * sprite in the game is at most one tile tall and centred on a row, so a
+ * collision query only needs the sprites of the rows it overlaps. Sprites
+ * move their own entry when their y-coordinate changes rows.
+ *
+ * Rows are kept in a fixed ring of buckets, so the index takes the same
+ * memory however tall the level is. Rows a multiple of BUCKETS apart share a
+ * bucket, which only streamed levels taller than that ever load at once, and
+ * callers test true bounds anyway.
+ *
+ * Also counts candidate pairs handed out against true hits since the last
+ * reset, to measure how much the broadphase saves.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class LaneIndex<T extends Sprite> {
+	/** number of row buckets, a power of two */
+	public static final int BUCKETS = 128;
+	private final ArrayList<ArrayList<T>> rows = new ArrayList<>(BUCKETS);
+	private final ArrayList<T> empty = new ArrayList<>(0);
+
+	private long candidatePairs = 0;
+	private long hits = 0;
+	// counts changes to the buckets, so callers can tell when cached rows are stale
+	private int version = 0;
+
+	/** Create an empty index. */
+	public LaneIndex() {
+		for (int i = 0; i < BUCKETS; i++) {
+			rows.add(new ArrayList<T>());
+		}
+	}
+
+	/**
+	 * Finds the row a given y-coordinate is centred on. Sprites partly above
+	 * the screen are kept with row 0.
+	 *
+	 * @param y The y-coordinate, in pixels.
+	 * @return The row index.
+	 */
+	public static int rowOf(float y) {
+		return Math.max(0, Math.round(y / World.TILE_SIZE));
+	}
+
+	/**
+	 * Finds the first row whose sprites may reach down to a given top edge.
+	 *
+	 * @param top The top edge, in pixels.
+	 * @return The first row index.
+	 */
+	public static int minRow(float top) {
+		return (int) Math.ceil((top - World.TILE_SIZE / 2) / World.TILE_SIZE);
+	}
+
+	/**
+	 * Finds the last row whose sprites may reach up to a given bottom edge.
+	 *
+	 * @param bottom The bottom edge, in pixels.
+	 * @return The last row index.
+	 */
+	public static int maxRow(float bottom) {
+		return (int) Math.floor((bottom + World.TILE_SIZE / 2) / World.TILE_SIZE);
+	}
+
+	/**
+	 * Adds a sprite to the bucket of its current row.
+	 *
+	 * @param sprite The sprite to add.
+	 */
+	public void add(T sprite) {
+		bucket(rowOf(sprite.getY())).add(sprite);
+		sprite.setLaneIndex(this);
+		version++;
+	}
+
+	/**
+	 * Removes a sprite from the index.
+	 *
+	 * @param sprite The sprite to remove.
+	 */
+	public void remove(T sprite) {
+		bucket(rowOf(sprite.getY())).remove(sprite);
+		sprite.setLaneIndex(null);
+		version++;
+	}
+
+	/**
+	 * Moves a sprite between rows. Called by the sprite when its y-coordinate
+	 * changes.
+	 *
+	 * @param sprite  The sprite which moved.
+	 * @param fromRow The row it was previously on.
+	 * @param toRow   The row it is now on.
+	 */
+	@SuppressWarnings("unchecked")
+	public void move(Sprite sprite, int fromRow, int toRow) {
+		if (fromRow != toRow) {
+			bucket(fromRow).remove(sprite);
+			bucket(toRow).add((T) sprite);
+			version++;
+		}
+	}
+
+	/** Removes all sprites from the index. */
+	public void clear() {
+		for (ArrayList<T> row : rows) {
+			for (T sprite : row) {
+				sprite.setLaneIndex(null);
+			}
+			row.clear();
+		}
+		version++;
+	}
+
+	/**
+	 * Accesses a count of the changes made to the index, which differs from
+	 * any earlier count once a sprite is added, removed or moves rows.
+	 *
+	 * @return the version of the index
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Accesses the sprites on a row. The list must not be modified.
+	 *
+	 * @param row The row index.
+	 * @return the sprites on the row, and on any row sharing its bucket, in the
+	 *         order they were added
+	 */
+	public ArrayList<T> getRow(int row) {
+		if (row < 0) {
+			return empty;
+		}
+		return bucket(row);
+	}
+
+	/**
+	 * Records that a number of candidate pairs were tested.
+	 *
+	 * @param n The number of candidates tested.
+	 */
+	public void countCandidates(int n) {
+		candidatePairs += n;
+	}
+
+	/** Records that a candidate pair truly collided. */
+	public void countHit() {
+		hits++;
+	}
+
+	/**
+	 * Accesses the number of candidate pairs tested since the last reset.
+	 *
+	 * @return the number of candidate pairs
+	 */
+	public long getCandidatePairs() {
+		return candidatePairs;
+	}
+
+	/**
+	 * Accesses the number of colliding pairs found since the last reset.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/** Resets the candidate and hit counts, e.g. at the start of a tick. */
+	public void resetCounters() {
+		candidatePairs = 0;
+		hits = 0;
+	}
+
+	private ArrayList<T> bucket(int row) {
+		return rows.get(row & (BUCKETS - 1));
+	}
+}
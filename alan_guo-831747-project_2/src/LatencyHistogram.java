@@ -0,0 +1,118 @@
+/**
+ * Histogram of durations in nanoseconds, with log-linear buckets so every
+ * value is kept to within about 6% precision in a fixed array. Recording
+ * never allocates.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class LatencyHistogram {
+	// values below LINEAR_LIMIT get a bucket each; above it, each power of two is split in SUB_BUCKETS
+	private static final int LINEAR_LIMIT = 32;
+	private static final int SUB_BUCKETS = 16;
+	private static final int SUB_BUCKET_BITS = 4;
+	// the largest value kept apart, about 18 minutes; larger ones share the last bucket
+	private static final int MAX_MAGNITUDE = 40;
+	private static final int N_BUCKETS = LINEAR_LIMIT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final long[] counts = new long[N_BUCKETS];
+	private long total = 0;
+	private long sum = 0;
+	private long max = 0;
+
+	/**
+	 * Records one duration.
+	 *
+	 * @param nanos The duration, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts[bucketOf(nanos)]++;
+		total++;
+		sum += nanos;
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+
+	/**
+	 * Finds the duration which a given percentage of recordings are at or below.
+	 *
+	 * @param percentile The percentage, from 0 to 100.
+	 * @return the duration, in nanoseconds, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < N_BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				return Math.min(highestValueOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Accesses the longest duration recorded.
+	 *
+	 * @return the maximum, in nanoseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Accesses the mean duration recorded.
+	 *
+	 * @return the mean, in nanoseconds, or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		return total == 0 ? 0 : (double) sum / total;
+	}
+
+	/**
+	 * Accesses the number of durations recorded.
+	 *
+	 * @return the number of recordings
+	 */
+	public long getCount() {
+		return total;
+	}
+
+	/** Forgets every recording. */
+	public void reset() {
+		for (int i = 0; i < N_BUCKETS; i++) {
+			counts[i] = 0;
+		}
+		total = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	private static int bucketOf(long value) {
+		if (value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		if (magnitude >= MAX_MAGNITUDE) {
+			return N_BUCKETS - 1;
+		}
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int mantissa = (int) (value >>> shift);
+		return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (mantissa - SUB_BUCKETS);
+	}
+
+	private static long highestValueOf(int bucket) {
+		if (bucket < LINEAR_LIMIT) {
+			return bucket;
+		}
+		int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+		long mantissa = SUB_BUCKETS + (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+		return ((mantissa + 1) << shift) - 1;
+	}
+}
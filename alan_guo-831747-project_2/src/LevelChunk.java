@@ -0,0 +1,77 @@
+import java.util.ArrayList;
+
+/**
+ * A band of rows of a level, loaded while it is near the camera. Holds the
+ * sprites streamed in for the band, so they can be released together, and the
+ * band's baked background.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class LevelChunk {
+	/** number of rows of tiles in a chunk, one screen's worth */
+	public static final int ROWS = App.SCREEN_HEIGHT / World.TILE_SIZE;
+	/** height of a chunk, in pixels */
+	public static final int HEIGHT = ROWS * World.TILE_SIZE;
+
+	private int index = -1;
+	private final ArrayList<Sprite> sprites = new ArrayList<>();
+	private final StaticLayer background = new StaticLayer();
+
+	/**
+	 * Sets which band of the level the chunk holds. Chunks are reused, so this
+	 * is called each time the chunk is loaded.
+	 *
+	 * @param index The index of the band, counting from the top of the level.
+	 */
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	/**
+	 * Accesses which band of the level the chunk holds.
+	 *
+	 * @return the index of the band, counting from the top of the level
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Finds the y-coordinate of the top of a chunk. Sprites are centred on rows,
+	 * so a chunk starts half a tile above its first row.
+	 *
+	 * @param index The index of the band.
+	 * @return the y-coordinate, in pixels
+	 */
+	public static int top(int index) {
+		return index * HEIGHT - World.TILE_SIZE / 2;
+	}
+
+	/**
+	 * Finds which chunk holds a y-coordinate.
+	 *
+	 * @param y The y-coordinate, in pixels.
+	 * @return the index of the band
+	 */
+	public static int indexOf(float y) {
+		return Math.max(0, (int) Math.floor((y + World.TILE_SIZE / 2) / HEIGHT));
+	}
+
+	/**
+	 * Accesses the sprites streamed in for the chunk.
+	 *
+	 * @return the sprites of the chunk, logs included
+	 */
+	public ArrayList<Sprite> getSprites() {
+		return sprites;
+	}
+
+	/**
+	 * Accesses the baked background of the chunk.
+	 *
+	 * @return the background, unbuilt in headless mode
+	 */
+	public StaticLayer getBackground() {
+		return background;
+	}
+}
@@ -0,0 +1,223 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Validates a CSV level file and compiles it into the packed form read by
+ * BinaryLevel. The CSV stays the source format; World streams the compiled
+ * form, mapping the one beside the source when it is at least as new, and
+ * otherwise compiling a copy in memory.
+ *
+ * Usage: LevelCompiler source.lvl [compiled.blvl]
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class LevelCompiler {
+	// index format of the .lvl files, as read by World
+	private static final int TYPE_INDEX = 0;
+	private static final int X_INDEX = 1;
+	private static final int Y_INDEX = 2;
+	private static final int DIR_RIGHT_INDEX = 3;
+	private static final int MIN_COLUMNS = 3;
+	private static final int MAX_COLUMNS = 4;
+	// type indices are stored in one byte
+	private static final int MAX_TYPES = 256;
+	// index of the y-coordinate in a parsed record
+	private static final int Y_RECORD = 3;
+
+	// compiled forms of level files with no up-to-date compiled file beside them, by source file
+	private static final ConcurrentHashMap<String, CompiledCopy> compiledCopies = new ConcurrentHashMap<>();
+	// held while a level file's copy is compiled, so loads of other levels need not wait for it
+	private static final ConcurrentHashMap<String, Object> copyLocks = new ConcurrentHashMap<>();
+
+	/**
+	 * Compiles a level file given on the command line.
+	 *
+	 * @param args The source level file, and optionally where to write it.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: LevelCompiler source.lvl [compiled" + BinaryLevel.EXTENSION + "]");
+			System.exit(1);
+		}
+		String target = args.length > 1 ? args[1] : BinaryLevel.compiledPath(args[0]);
+		try {
+			int records = compile(args[0], target);
+			System.out.println("Compiled " + records + " sprites into " + target);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Validates a CSV level file and writes its compiled form.
+	 *
+	 * @param sourcePath The location of the CSV level file.
+	 * @param targetPath Where to write the compiled level.
+	 * @return The number of sprites compiled.
+	 * @throws IOException If the source cannot be read, is invalid, or the target cannot be written.
+	 */
+	public static int compile(String sourcePath, String targetPath) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(targetPath)))) {
+			return compile(sourcePath, out);
+		}
+	}
+
+	// validates a CSV level file and writes its compiled form to a stream
+	private static int compile(String sourcePath, DataOutputStream out) throws IOException {
+		ArrayList<String> types = new ArrayList<>();
+		HashMap<String, Integer> typeIndices = new HashMap<>();
+		ArrayList<int[]> records = new ArrayList<>();
+
+		try (BufferedReader br = new BufferedReader(new FileReader(sourcePath))) {
+			String text;
+			int line = 0;
+			while ((text = br.readLine()) != null) {
+				line++;
+				if (text.trim().isEmpty()) {
+					continue;
+				}
+				String[] columns = text.split(",");
+				if (columns.length < MIN_COLUMNS || columns.length > MAX_COLUMNS) {
+					throw invalid(sourcePath, line, "expected type,x,y[,dirRight] but found \"" + text + "\"");
+				}
+
+				String type = columns[TYPE_INDEX];
+				if (!World.isSpriteType(type)) {
+					throw invalid(sourcePath, line, "unknown sprite type \"" + type + "\"");
+				}
+				Integer typeIndex = typeIndices.get(type);
+				if (typeIndex == null) {
+					if (types.size() == MAX_TYPES) {
+						throw invalid(sourcePath, line, "too many sprite types");
+					}
+					typeIndex = types.size();
+					typeIndices.put(type, typeIndex);
+					types.add(type);
+				}
+
+				int flags = BinaryLevel.FLAG_DIR_RIGHT;
+				if (columns.length > DIR_RIGHT_INDEX) {
+					String dir = columns[DIR_RIGHT_INDEX];
+					if (!dir.equalsIgnoreCase("true") && !dir.equalsIgnoreCase("false")) {
+						throw invalid(sourcePath, line, "direction must be true or false, not \"" + dir + "\"");
+					}
+					flags = Boolean.parseBoolean(dir) ? BinaryLevel.FLAG_DIR_RIGHT : 0;
+				}
+
+				records.add(new int[] { typeIndex, flags, parseCoordinate(sourcePath, line, columns[X_INDEX]),
+						parseCoordinate(sourcePath, line, columns[Y_INDEX]) });
+			}
+		}
+
+		// rows are streamed in by binary search, so records are sorted by row, keeping file order within one
+		records.sort(Comparator.comparingInt(record -> record[Y_RECORD]));
+
+		write(out, types, records);
+		return records.size();
+	}
+
+	/**
+	 * Writes a compiled level, in the format read by BinaryLevel.
+	 *
+	 * @param out     The stream to write to.
+	 * @param types   The type names, in the order of their indices.
+	 * @param records The records, each a type index, flags, x and y, sorted by y.
+	 * @throws IOException If the level could not be written.
+	 */
+	public static void write(DataOutputStream out, ArrayList<String> types, ArrayList<int[]> records)
+			throws IOException {
+		out.writeInt(BinaryLevel.MAGIC);
+		out.writeShort(BinaryLevel.VERSION);
+		out.writeShort(types.size());
+		out.writeInt(records.size());
+		for (String type : types) {
+			byte[] name = type.getBytes(StandardCharsets.UTF_8);
+			out.writeShort(name.length);
+			out.write(name);
+		}
+		for (int[] record : records) {
+			out.writeByte(record[0]);
+			out.writeByte(record[1]);
+			out.writeInt(record[2]);
+			out.writeInt(record[Y_RECORD]);
+		}
+	}
+
+	/**
+	 * Opens an up-to-date compiled form of a level file. A compiled file
+	 * beside the source is mapped if it is at least as new, of the current
+	 * version and intact; otherwise the source is compiled into memory, once for as long
+	 * as the source is unchanged. A copy replaced by a newer one is freed once
+	 * no world still plays it.
+	 *
+	 * @param sourcePath The location of the CSV level file, or of a compiled level.
+	 * @return The compiled level.
+	 * @throws IOException If the source cannot be read or is invalid.
+	 */
+	public static BinaryLevel open(String sourcePath) throws IOException {
+		if (sourcePath.endsWith(BinaryLevel.EXTENSION)) {
+			return BinaryLevel.open(sourcePath);
+		}
+		File source = new File(sourcePath);
+		File beside = new File(BinaryLevel.compiledPath(sourcePath));
+		if (beside.exists() && beside.lastModified() >= source.lastModified()) {
+			try {
+				return BinaryLevel.open(beside.getPath());
+			} catch (IOException e) {
+				// compiled by an older version, or damaged, so compile it again below
+			}
+		}
+
+		synchronized (copyLocks.computeIfAbsent(sourcePath, path -> new Object())) {
+			long modified = source.lastModified();
+			CompiledCopy copy = compiledCopies.get(sourcePath);
+			if (copy == null || copy.modified != modified) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				try (DataOutputStream out = new DataOutputStream(bytes)) {
+					compile(sourcePath, out);
+				}
+				copy = new CompiledCopy(BinaryLevel.wrap(ByteBuffer.wrap(bytes.toByteArray())), modified);
+				compiledCopies.put(sourcePath, copy);
+			}
+			return copy.level;
+		}
+	}
+
+	private static int parseCoordinate(String path, int line, String text) throws IOException {
+		try {
+			return Integer.parseInt(text);
+		} catch (NumberFormatException e) {
+			throw invalid(path, line, "coordinate must be an integer, not \"" + text + "\"");
+		}
+	}
+
+	private static IOException invalid(String path, int line, String message) {
+		return new IOException(path + ":" + line + ": " + message);
+	}
+
+	/*
+	 * A level compiled into memory, and when its source was last modified.
+	 */
+	private static class CompiledCopy {
+		private final BinaryLevel level;
+		private final long modified;
+
+		private CompiledCopy(BinaryLevel level, long modified) {
+			this.level = level;
+			this.modified = modified;
+		}
+	}
+}
@@ -0,0 +1,330 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Generates levels of any size from lane templates: river lanes of logs and
+ * turtles over water, road lanes of vehicles, and rows of trees with gaps,
+ * split up by grass. The lanes use every vehicle, log and turtle of the
+ * ArchetypeRegistry, so a kind added to its data file appears in them too. The holes are at the top as in the hand-written levels,
+ * and the player starts on the bottom row. The same settings and seed always
+ * give the same level.
+ *
+ * A generated level can be written as a CSV level file, or handed straight
+ * to a World with generate(), without going through a file.
+ *
+ * Usage: LevelGenerator target [entities] [seed] [density] [columns]
+ * If the target is a directory, a corpus of stress levels of each of
+ * CORPUS_SIZES entities is written into it instead.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class LevelGenerator {
+	/** numbers of entities in the levels of the stress corpus */
+	public static final int[] CORPUS_SIZES = new int[] { 1000, 10000, 100000 };
+	/** default fraction of each lane covered by its sprites */
+	public static final float DEFAULT_DENSITY = 0.3f;
+	/** default number of tiles across a row, enough to cover the screen */
+	public static final int DEFAULT_COLUMNS = App.SCREEN_WIDTH / World.TILE_SIZE + 1;
+	private static final int DEFAULT_ENTITIES = 10000;
+	private static final long DEFAULT_SEED = 831747;
+	// a tree row's gap is two tiles wide, so a row needs at least two
+	private static final int MIN_COLUMNS = 2;
+	private static final String USAGE = "Usage: LevelGenerator target [entities] [seed] [density] [columns]\n"
+			+ "  entities: the least number of sprites, at least 0\n"
+			+ "  density:  the fraction of each lane covered, from 0 to 1\n"
+			+ "  columns:  the number of tiles across a row, at least " + MIN_COLUMNS;
+
+	private static final String WATER = "water";
+	private static final String GRASS = "grass";
+	private static final String TREE = "tree";
+
+	// rows above the lanes: a solid row of trees, then trees around the holes
+	private static final int TOP_ROWS = 2;
+	// the holes are in the gaps left by every other pair of columns
+	private static final int HOLE_PERIOD = 4;
+	private static final int HOLE_TREES = 2;
+	// bounds on the number of lanes in a river or road section
+	private static final int MIN_LANES = 2;
+	private static final int MAX_LANES = 6;
+	// one in TREE_ROW_CHANCE sections is a row of trees, with a gap one in TREE_GAP_CHANCE tiles
+	private static final int TREE_ROW_CHANCE = 4;
+	private static final int TREE_GAP_CHANCE = 3;
+	// index of the y-coordinate in a record
+	private static final int Y_RECORD = 3;
+
+	private final int entities;
+	private final int columns;
+	private final float density;
+	private final long seed;
+	// the archetypes of road and river lanes, in the order of the data file
+	private final ArrayList<Archetype> roadTypes = new ArrayList<>();
+	private final ArrayList<Archetype> riverTypes = new ArrayList<>();
+
+	private final ArrayList<String> types = new ArrayList<>();
+	private final HashMap<String, Integer> typeIndices = new HashMap<>();
+	private final ArrayList<int[]> records = new ArrayList<>();
+
+	/**
+	 * Generates a level the size of the screen, or taller if need be to hold
+	 * the given number of entities.
+	 *
+	 * @param entities The least number of sprites in the level, tiles included.
+	 * @param columns  The number of tiles across a row.
+	 * @param density  The fraction of each lane covered by its sprites, from 0 to 1.
+	 * @param seed     The seed the layout is chosen with.
+	 * @throws IllegalArgumentException If entities is negative, columns is
+	 *                                  less than 2, or density is not from 0 to 1.
+	 * @throws IllegalStateException    If the ArchetypeRegistry has no vehicle,
+	 *                                  or no log or turtle.
+	 */
+	public LevelGenerator(int entities, int columns, float density, long seed) {
+		validate(entities, columns, density);
+		this.entities = entities;
+		this.columns = columns;
+		this.density = density;
+		this.seed = seed;
+		for (Archetype archetype : ArchetypeRegistry.getLevelTypes()) {
+			if (archetype.getKind() == Archetype.VEHICLE) {
+				roadTypes.add(archetype);
+			} else if (archetype.getKind() != Archetype.TILE) {
+				riverTypes.add(archetype);
+			}
+		}
+		if (roadTypes.isEmpty() || riverTypes.isEmpty()) {
+			throw new IllegalStateException("Levels need a vehicle, and a log or turtle, for their lanes");
+		}
+		build();
+	}
+
+	/**
+	 * Generates a level given on the command line, or the stress corpus.
+	 *
+	 * @param args The target file or directory, and optionally the number of
+	 *             entities, the seed, the lane density and the number of columns.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 5) {
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		int entities = DEFAULT_ENTITIES;
+		long seed = DEFAULT_SEED;
+		float density = DEFAULT_DENSITY;
+		int columns = DEFAULT_COLUMNS;
+		try {
+			entities = args.length > 1 ? Integer.parseInt(args[1]) : entities;
+			seed = args.length > 2 ? Long.parseLong(args[2]) : seed;
+			density = args.length > 3 ? Float.parseFloat(args[3]) : density;
+			columns = args.length > 4 ? Integer.parseInt(args[4]) : columns;
+			validate(entities, columns, density);
+		} catch (IllegalArgumentException e) {
+			// a NumberFormatException is one too
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+
+		try {
+			File target = new File(args[0]);
+			if (target.isDirectory()) {
+				for (int size : CORPUS_SIZES) {
+					File file = new File(target, "stress-" + size + ".lvl");
+					LevelGenerator generator = new LevelGenerator(size, columns, density, seed);
+					generator.write(file.getPath());
+					System.out.println(file.getPath() + ": " + generator.size() + " sprites in " + generator.rows()
+							+ " rows");
+				}
+			} else {
+				LevelGenerator generator = new LevelGenerator(entities, columns, density, seed);
+				generator.write(target.getPath());
+				System.out.println(target.getPath() + ": " + generator.size() + " sprites in " + generator.rows()
+						+ " rows");
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	// rejects settings no level can be generated with
+	private static void validate(int entities, int columns, float density) {
+		if (entities < 0) {
+			throw new IllegalArgumentException("entities must be at least 0, not " + entities);
+		}
+		if (columns < MIN_COLUMNS) {
+			throw new IllegalArgumentException("columns must be at least " + MIN_COLUMNS + ", not " + columns);
+		}
+		// written so NaN fails too
+		if (!(density >= 0 && density <= 1)) {
+			throw new IllegalArgumentException("density must be from 0 to 1, not " + density);
+		}
+	}
+
+	/**
+	 * Accesses the number of sprites in the level.
+	 *
+	 * @return the number of records, tiles included
+	 */
+	public int size() {
+		return records.size();
+	}
+
+	/**
+	 * Accesses the number of rows in the level.
+	 *
+	 * @return the number of rows, the player's included
+	 */
+	public int rows() {
+		return LaneIndex.rowOf(records.get(records.size() - 1)[Y_RECORD]) + 1;
+	}
+
+	/**
+	 * Builds the level in its compiled form in memory, ready to be played by
+	 * a World.
+	 *
+	 * @return The compiled level.
+	 */
+	public BinaryLevel generate() {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(size() * BinaryLevel.RECORD_BYTES + 1024);
+			try (DataOutputStream out = new DataOutputStream(bytes)) {
+				LevelCompiler.write(out, types, records);
+			}
+			return BinaryLevel.wrap(ByteBuffer.wrap(bytes.toByteArray()));
+		} catch (IOException e) {
+			// cannot happen when writing to memory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes the level to a file, in CSV form, or in compiled form if the file
+	 * name ends in BinaryLevel.EXTENSION.
+	 *
+	 * @param path Where to write the level.
+	 * @throws IOException If the file could not be written.
+	 */
+	public void write(String path) throws IOException {
+		if (path.endsWith(BinaryLevel.EXTENSION)) {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+				LevelCompiler.write(out, types, records);
+			}
+			return;
+		}
+		try (PrintWriter out = new PrintWriter(path)) {
+			for (int[] record : records) {
+				out.print(types.get(record[0]) + "," + record[2] + "," + record[Y_RECORD]);
+				// tiles have no direction, only lane sprites do
+				if (isLaneType(types.get(record[0]))) {
+					out.print("," + ((record[1] & BinaryLevel.FLAG_DIR_RIGHT) != 0));
+				}
+				out.println();
+			}
+		}
+	}
+
+	/*
+	 * Lays out the level from the top down: the rows around the holes, then
+	 * sections of lanes split up by grass until there are enough sprites, then
+	 * the grass the player starts on.
+	 */
+	private void build() {
+		Random rand = new Random(seed);
+		int row = 0;
+		for (int column = 0; column < columns; column++) {
+			addTile(TREE, column, row);
+		}
+		row++;
+		for (int column = 0; column < columns; column++) {
+			if (column % HOLE_PERIOD < HOLE_TREES) {
+				addTile(TREE, column, row);
+			}
+		}
+		row++;
+
+		// the player's row is at least as low as in the hand-written levels
+		int startRow = App.SCREEN_HEIGHT / World.TILE_SIZE - 1;
+		boolean river = rand.nextBoolean();
+		while (row < startRow || records.size() + columns < entities) {
+			if (row > TOP_ROWS && rand.nextInt(TREE_ROW_CHANCE) == 0) {
+				addTreeRow(rand, row++);
+			} else {
+				int lanes = MIN_LANES + rand.nextInt(MAX_LANES - MIN_LANES + 1);
+				boolean dirRight = rand.nextBoolean();
+				for (int i = 0; i < lanes; i++) {
+					addLane(rand, river, dirRight, row++);
+					dirRight = !dirRight;
+				}
+				river = !river;
+			}
+			for (int column = 0; column < columns; column++) {
+				addTile(GRASS, column, row);
+			}
+			row++;
+		}
+
+		// the player starts on the last row
+		for (int column = 0; column < columns; column++) {
+			addTile(GRASS, column, row);
+		}
+	}
+
+	// a lane of evenly spaced sprites of one type, over water if it is a river lane
+	private void addLane(Random rand, boolean river, boolean dirRight, int row) {
+		ArrayList<Archetype> laneTypes = river ? riverTypes : roadTypes;
+		Archetype type = laneTypes.get(rand.nextInt(laneTypes.size()));
+		if (river) {
+			for (int column = 0; column < columns; column++) {
+				addTile(WATER, column, row);
+			}
+		}
+
+		int count = Math.max(1, (int) (density * App.SCREEN_WIDTH / type.getWidth()));
+		int spacing = App.SCREEN_WIDTH / count;
+		int offset = rand.nextInt(spacing);
+		for (int i = 0; i < count; i++) {
+			add(type.getName(), offset + i * spacing, row * World.TILE_SIZE, dirRight);
+		}
+	}
+
+	/*
+	 * A row of trees, with at least one gap the player can pass through. The
+	 * player hops a whole tile at a time from a start between tiles, so a gap
+	 * is only sure to be passable if it is two tiles wide, as around the holes.
+	 */
+	private void addTreeRow(Random rand, int row) {
+		int gap = rand.nextInt(columns - 1);
+		for (int column = 0; column < columns; column++) {
+			if (column != gap && column != gap + 1 && rand.nextInt(TREE_GAP_CHANCE) != 0) {
+				addTile(TREE, column, row);
+			}
+		}
+	}
+
+	private void addTile(String type, int column, int row) {
+		add(type, column * World.TILE_SIZE, row * World.TILE_SIZE, true);
+	}
+
+	private void add(String type, int x, int y, boolean dirRight) {
+		Integer typeIndex = typeIndices.get(type);
+		if (typeIndex == null) {
+			typeIndex = types.size();
+			typeIndices.put(type, typeIndex);
+			types.add(type);
+		}
+		records.add(new int[] { typeIndex, dirRight ? BinaryLevel.FLAG_DIR_RIGHT : 0, x, y });
+	}
+
+	private static boolean isLaneType(String type) {
+		return ArchetypeRegistry.get(type).getKind() != Archetype.TILE;
+	}
+}
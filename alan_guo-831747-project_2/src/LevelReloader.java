@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches the level files of a World, and hands the world an edited level
+ * soon after it is saved, so a level designer sees changes without
+ * restarting the game. The slow work, compiling the edited file and opening
+ * the result, is done on a thread of the reloader's own. The game thread
+ * then only calls apply(), which swaps in the new level through
+ * World.reloadLevel(), touching only the sprites which changed.
+ *
+ * A file which does not compile, such as one saved half way through an
+ * edit, is reported and otherwise ignored, and the game plays on with the
+ * last good version.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class LevelReloader implements Runnable {
+	// editors often write a file in several steps, so a file is read once it has been quiet this long
+	private static final long QUIET_MILLIS = 100;
+
+	private final WatchService watcher;
+	// the level files watched, and those changed since they were last compiled
+	private final HashSet<Path> watched = new HashSet<>();
+	private final HashSet<Path> changed = new HashSet<>();
+	private final Thread thread;
+
+	// the newest compiled edit of each file, by absolute path, waiting for the game thread to apply it
+	private final ConcurrentHashMap<String, BinaryLevel> pending = new ConcurrentHashMap<>();
+	private volatile long reloads = 0;
+	private volatile long lastTouched = 0;
+
+	/**
+	 * Starts watching the level files a world plays.
+	 *
+	 * @param world The world whose level files to watch.
+	 * @throws IOException If the folders of the files cannot be watched.
+	 */
+	public LevelReloader(World world) throws IOException {
+		watcher = FileSystems.getDefault().newWatchService();
+		HashSet<Path> folders = new HashSet<>();
+		for (String levelPath : world.getLevelPaths()) {
+			if (levelPath.equals(World.IN_MEMORY_LEVEL)) {
+				continue;
+			}
+			Path path = Paths.get(levelPath).toAbsolutePath().normalize();
+			watched.add(path);
+			if (folders.add(path.getParent())) {
+				path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY,
+						StandardWatchEventKinds.ENTRY_CREATE);
+			}
+		}
+		thread = new Thread(this, "LevelReloader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits for level files to change, and compiles them once they are quiet.
+	 */
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				// wait for a change, then for the files to stop changing
+				WatchKey key = changed.isEmpty() ? watcher.take() : watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+				if (key == null) {
+					compileChanged();
+					continue;
+				}
+				Path folder = (Path) key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						changed.addAll(watched);
+						continue;
+					}
+					Path path = folder.resolve((Path) event.context()).toAbsolutePath().normalize();
+					if (watched.contains(path)) {
+						changed.add(path);
+					}
+				}
+				key.reset();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// closed
+		}
+	}
+
+	/**
+	 * Hands a world the newest edit of the level it is playing, if there is
+	 * one. Called on the thread which updates the world, between ticks.
+	 *
+	 * @param world The world to bring up to date.
+	 * @return True if the world was changed.
+	 */
+	public boolean apply(World world) {
+		if (pending.isEmpty()) {
+			return false;
+		}
+		String playing = world.getLevelPaths()[Math.min(world.getLevel(), world.getLevelPaths().length - 1)];
+		BinaryLevel edited = pending.remove(Paths.get(playing).toAbsolutePath().normalize().toString());
+		if (edited == null) {
+			return false;
+		}
+		lastTouched = world.reloadLevel(edited);
+		reloads++;
+		return true;
+	}
+
+	/** Stops watching the level files. */
+	public void close() {
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		thread.interrupt();
+	}
+
+	/**
+	 * Accesses the number of edits applied to the world.
+	 *
+	 * @return the number of reloads
+	 */
+	public long getReloads() {
+		return reloads;
+	}
+
+	/**
+	 * Accesses the number of sprites the last reload added or removed.
+	 *
+	 * @return the number of sprites touched
+	 */
+	public long getLastTouched() {
+		return lastTouched;
+	}
+
+	// compiles each changed file, keeping the newest good one for the game thread
+	private void compileChanged() {
+		for (Path path : changed) {
+			try {
+				BinaryLevel edited = LevelCompiler.open(path.toString());
+				pending.put(path.toString(), edited);
+				System.out.println("Reloaded " + path.getFileName() + ": " + edited.size() + " sprites");
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+		changed.clear();
+	}
+}
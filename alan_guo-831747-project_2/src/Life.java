@@ -6,7 +6,7 @@
  * by Alan Guo, University of Melbourne
  */
 public class Life extends Sprite {
-	private static final String ASSET_PATH = "assets/lives.png";
+	private static final String ARCHETYPE = "life";
 	private static final float X_BASE_LOC = 24;
 	private static final float Y_BASE_LOC = 744;
 	private static final float GAP_SIZE = 32;
@@ -17,7 +17,7 @@ public class Life extends Sprite {
 	 * @param n The number of lives.
 	 */
 	public Life(int n) {
-		super(ASSET_PATH, X_BASE_LOC + n * GAP_SIZE, Y_BASE_LOC);
+		super(ArchetypeRegistry.get(ARCHETYPE), X_BASE_LOC + n * GAP_SIZE, Y_BASE_LOC);
 	}
 
 }
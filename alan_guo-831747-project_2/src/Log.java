@@ -1,22 +1,22 @@
 
 /**
- * A rideable log, which travels at constant speed and direction.
+ * A rideable log, which travels at constant speed and direction. Every kind of
+ * log, such as the long log, is a Log of its own archetype.
  * 
  * by Alan Guo, University of Melbourne
  */
 public class Log extends LogType {
-	private static final String ASSET_PATH = "assets/log.png";
-	private static final float SPEED = 0.1f;
 
 	/**
-	 * Create a log based on initial location and direction.
+	 * Create a log based on its archetype, initial location and direction.
 	 * 
-	 * @param x        The x-coordinate of the sprite.
-	 * @param y        The y-coordinate of the sprite.
-	 * @param dirRight True if sprite is moving right.
+	 * @param archetype The archetype of the log, such as "log" or "longLog".
+	 * @param x         The x-coordinate of the sprite.
+	 * @param y         The y-coordinate of the sprite.
+	 * @param dirRight  True if sprite is moving right.
 	 */
-	public Log(float x, float y, boolean dirRight) {
-		super(ASSET_PATH, x, y, dirRight, SPEED);
+	public Log(Archetype archetype, float x, float y, boolean dirRight) {
+		super(archetype, x, y, dirRight);
 	}
 
 }
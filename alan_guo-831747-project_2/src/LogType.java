@@ -6,15 +6,14 @@
  */
 public abstract class LogType extends RideableSprite {
 
-	/** Create a rideable sprite based on image file, location, direction and speed.
-	 * @param imgSrc The location of image file to load.
+	/** Create a rideable sprite based on its archetype, location and direction.
+	 * @param archetype The archetype of the sprite, describing how it moves.
 	 * @param x The x-coordinate of the sprite.
 	 * @param y The y-coordinate of the sprite.
 	 * @param dirRight True if sprite is moving right.
-	 * @param speed The speed in pixels per millisecond.
 	 */
-	public LogType(String imgSrc, float x, float y, boolean dirRight, float speed) {
-		super(imgSrc, x, y, dirRight, speed);
+	public LogType(Archetype archetype, float x, float y, boolean dirRight) {
+		super(archetype, x, y, dirRight);
 	}
 	
 
@@ -1,69 +1,194 @@
-import org.newdawn.slick.Input;
-
 /**
  * Class for sprites which move based off speed and left/right direction.
  * Handles initialisation and reappearance when object moves off screen.
- * 
+ *
+ * The horizontal state of a moving sprite lives in a slot of an EntityStore
+ * group, of which this object is a view. Until attached to a store, each
+ * sprite owns a group of its own.
+ *
  * based on Sample Project by Eleanor McMurtry, University of Melbourne
  * modified by Alan Guo, University of Melbourne
  */
 public abstract class MovingSprite extends Sprite {
-	private boolean dirRight;
-	private float speed;
-
-	// returns the beginning off-screen position
-	private final float getInitialX() {
-		return dirRight ? -super.getWidth() / 2 : App.SCREEN_WIDTH + super.getWidth() / 2;
-	}
+	private EntityStore.Group group;
+	private int slot;
+	// true once the sprite's group is shared with other sprites in a store
+	private boolean attached = false;
 
 	/**
-	 * Create a moving sprite based on image file, location, direction, speed and
-	 * tags.
-	 * 
-	 * @param imgSrc   The location of image file to load.
-	 * @param x        The x-coordinate of the sprite.
-	 * @param y        The y-coordinate of the sprite.
-	 * @param dirRight True if sprite is moving right.
-	 * @param speed    The speed in pixels per millisecond.
-	 * @param tags     The tags of the sprite.
+	 * Create a moving sprite based on its archetype, location and direction.
+	 * It moves at its archetype's speed.
+	 *
+	 * @param archetype The archetype of the sprite, describing how it moves.
+	 * @param x         The x-coordinate of the sprite.
+	 * @param y         The y-coordinate of the sprite.
+	 * @param dirRight  True if sprite is moving right.
 	 */
-	public MovingSprite(String imgSrc, float x, float y, boolean dirRight, float speed, String[] tags) {
-		super(imgSrc, x, y, tags);
+	public MovingSprite(Archetype archetype, float x, float y, boolean dirRight) {
+		super(archetype, x, y);
 
-		this.dirRight = dirRight;
-		this.speed = speed;
+		group = new EntityStore.Group(archetype, 1);
+		slot = group.add(this, x, dirRight, 0);
 	}
-	
+
 	/**
 	 * Accesses the speed of the moving sprite.
 	 * @return	the speed of the moving sprite
-	 */	
+	 */
 	public final float getSpeed() {
-		return speed;
+		return group.speed;
 	}
 	/**
 	 * Accesses the horizontal direction of the moving sprite.
 	 * @return	the horizontal direction of the moving sprite
-	 */	
+	 */
 	public final boolean getDir() {
-		return dirRight;
+		group.sync(slot);
+		return group.dirRight[slot];
 	}
 	/**
 	 * Sets the horizontal direction of the moving sprite.
 	 * @param newDir The target horizontal direction
 	 */
 	public final void setDir(boolean newDir) {
-		this.dirRight = newDir;
+		group.sync(slot);
+		group.rebase(slot, group.x[slot], newDir, group.timer[slot]);
 	}
-	
+
 	@Override
-	public void update(Input input, int delta) {
-		move(speed * delta * (dirRight ? 1 : -1), 0);
+	public final float getVelocityX() {
+		group.sync(slot);
+		return group.speed * (group.dirRight[slot] ? 1 : -1);
+	}
 
-		// check if the vehicle has moved off the screen
-		if (getX() > App.SCREEN_WIDTH + super.getWidth() / 2 || getX() < -super.getWidth() / 2
-				|| getY() > App.SCREEN_HEIGHT + super.getWidth() / 2 || getY() < -super.getWidth() / 2) {
-			setX(getInitialX());
+	/**
+	 * Accesses the looping timer of the moving sprite, for archetypes which
+	 * run one.
+	 * @return	the time into the current loop, in milliseconds
+	 */
+	protected final float getTimer() {
+		group.sync(slot);
+		return group.timer[slot];
+	}
+
+	/**
+	 * Accesses the time of the clock the sprite moves by, which is its
+	 * EntityStore's clock once attached.
+	 * @return	the time, in milliseconds
+	 */
+	public final long getTime() {
+		return group.time;
+	}
+
+	/**
+	 * Finds where the sprite will be at a time of its clock, without moving it.
+	 * Motion is in closed form, so this costs the same for any time.
+	 * @param time The time, in milliseconds, as given by getTime().
+	 * @return	the x-coordinate of the sprite at that time
+	 */
+	public final float getXAt(long time) {
+		return (float) group.positionAt(slot, time);
+	}
+
+	/**
+	 * Finds the horizontal velocity of the sprite at a time of its clock.
+	 * @param time The time, in milliseconds, as given by getTime().
+	 * @return	the velocity in pixels per millisecond, negative when moving left
+	 */
+	public final float getVelocityXAt(long time) {
+		return group.speed * (group.dirRightAt(slot, time) ? 1 : -1);
+	}
+
+	/**
+	 * Finds the looping timer of the sprite at a time of its clock.
+	 * @param time The time, in milliseconds, as given by getTime().
+	 * @return	the time into the loop, in milliseconds
+	 */
+	protected final float getTimerAt(long time) {
+		return group.timerAt(slot, time);
+	}
+
+	@Override
+	public final float getX() {
+		group.sync(slot);
+		return group.x[slot];
+	}
+
+	@Override
+	public final void setX(float x) {
+		group.sync(slot);
+		group.rebase(slot, x, group.dirRight[slot], group.timer[slot]);
+	}
+
+	@Override
+	protected final float getRenderX() {
+		return group.renderX(slot);
+	}
+
+	@Override
+	public float timeOfImpact(Sprite other) {
+		// riding depends on being on the sprite when the update ends, not on passing it
+		if (hasTag(CollisionLayer.RIDEABLE)) {
+			return collides(other) ? 1 : NO_CONTACT;
+		}
+		// lane sprites only move sideways, so the rows must overlap for the whole update
+		float top = getTop();
+		float otherTop = other.getTop();
+		if (otherTop > top + getBoxHeight() || otherTop + other.getBoxHeight() < top) {
+			return NO_CONTACT;
+		}
+		float otherLeft = other.getLeft();
+		return group.sweep(slot, getBoxWidth() / 2, otherLeft, otherLeft + other.getBoxWidth());
+	}
+
+	/*
+	 * Moves the sprite's state into a slot of another group. Called by the EntityStore.
+	 */
+	final void moveTo(EntityStore.Group target, boolean attached) {
+		EntityStore.Group source = group;
+		int sourceSlot = slot;
+		source.sync(sourceSlot);
+		slot = target.add(this, source.x[sourceSlot], source.dirRight[sourceSlot], source.timer[sourceSlot]);
+		target.spawnX[slot] = source.spawnX[sourceSlot];
+		target.spawnDirRight[slot] = source.spawnDirRight[sourceSlot];
+		group = target;
+		this.attached = attached;
+		source.remove(sourceSlot);
+	}
+
+	/*
+	 * Gives up the sprite's slot without keeping its state anywhere, so the
+	 * sprite must not be used again. Called by the EntityStore.
+	 */
+	final void leave() {
+		group.remove(slot);
+		group = null;
+		attached = false;
+	}
+
+	/*
+	 * Takes the sprite's current state to be its state at another time of its
+	 * group's clock. Called by the EntityStore.
+	 */
+	final void startAt(long time) {
+		group.restart(slot, time);
+	}
+
+	/*
+	 * Updates the slot of the sprite after the group was compacted.
+	 */
+	final void setSlot(int slot) {
+		this.slot = slot;
+	}
+
+	/**
+	 * Moves the sprite since the last frame. Sprites attached to an
+	 * EntityStore are moved by the store instead, so this does nothing for them.
+	 */
+	@Override
+	public void update(InputSource input, int delta) {
+		if (!attached) {
+			group.advance(delta);
 		}
 	}
 }
@@ -0,0 +1,178 @@
+import java.nio.ByteBuffer;
+import org.newdawn.slick.Input;
+
+/**
+ * The messages passed between a GameServer and its GameClients over UDP, and
+ * the delta compression of the world states the server sends.
+ *
+ * Every message starts with its type. A client says HELLO, and the server
+ * answers a HELLO from an address it does not know with a CHALLENGE holding a
+ * cookie made from the address. The client says HELLO again with the cookie,
+ * and only then is it given a player and a WELCOME. An address which cannot
+ * receive cannot join, so a forged source address gets nothing back but a
+ * CHALLENGE no bigger than the HELLO it forged. The client then sends an
+ * INPUT every tick, holding the keys pressed in that
+ * tick and the few before it, so a lost datagram loses no presses. Each INPUT
+ * also acknowledges the latest snapshot the client has. Once it has had an
+ * INPUT, the server sends the client a SNAPSHOT every tick: the world state, as written by World.writeState(),
+ * encoded against the state of the acknowledged tick. Most of the state does
+ * not change from tick to tick, and the lanes move in closed form from a
+ * single clock, so a snapshot is mostly the players, plus a correction to
+ * the lanes' phase.
+ *
+ * An encoded state is the bytes of the state XORed with those of the base
+ * state, or with zeros if there is none, as runs: a count of unchanged bytes,
+ * a count of changed bytes, then the changed bytes, each count as a varint.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public final class NetProtocol {
+	/** client to server: asks to join, carrying the cookie of a CHALLENGE or 0, padded to HELLO_BYTES */
+	public static final byte HELLO = 1;
+	/** server to client: the player index, the seed and the level path, empty for the game's own levels */
+	public static final byte WELCOME = 2;
+	/** client to server: the input sequence number, REDUNDANCY key masks, newest first, and the acknowledged tick */
+	public static final byte INPUT = 3;
+	/** server to client: the tick, the base tick or NO_BASE, the player count, the state size and the encoded state */
+	public static final byte SNAPSHOT = 4;
+	/** client to server: leaves the game */
+	public static final byte BYE = 5;
+	/** server to client: the cookie to say HELLO with, proving the client receives at its address */
+	public static final byte CHALLENGE = 6;
+
+	/** base tick of a snapshot encoded against nothing */
+	public static final long NO_BASE = -1;
+	/** key masks carried by each INPUT, so up to REDUNDANCY - 1 lost datagrams in a row lose no presses */
+	public static final int REDUNDANCY = 4;
+	/** size of a HELLO, at least that of a CHALLENGE, so the server never answers with more than it is sent */
+	public static final int HELLO_BYTES = 64;
+	/** cookie of a HELLO which has had no CHALLENGE */
+	public static final long NO_COOKIE = 0;
+	/** size of a CHALLENGE, in bytes */
+	public static final int CHALLENGE_BYTES = 1 + Long.BYTES;
+	/** largest datagram either side sends or expects */
+	public static final int MAX_DATAGRAM = 65507;
+
+	// the keys a player moves with, one bit each in a key mask
+	private static final int[] KEYS = new int[] { Input.KEY_UP, Input.KEY_DOWN, Input.KEY_LEFT, Input.KEY_RIGHT };
+	private static final int VARINT_BITS = 7;
+	private static final int VARINT_MORE = 0x80;
+	private static final int VARINT_MASK = 0x7F;
+
+	private NetProtocol() {
+	}
+
+	/**
+	 * Finds the keys pressed on an input source this tick, as a mask.
+	 *
+	 * @param input The source of key presses.
+	 * @return the mask of movement keys pressed
+	 */
+	public static int toMask(InputSource input) {
+		int mask = 0;
+		for (int i = 0; i < KEYS.length; i++) {
+			if (input.isKeyPressed(KEYS[i])) {
+				mask |= 1 << i;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Check if a key is pressed in a mask.
+	 *
+	 * @param mask The mask of movement keys pressed.
+	 * @param key  The key code to check.
+	 * @return True if the key is a movement key in the mask.
+	 */
+	public static boolean isPressed(int mask, int key) {
+		for (int i = 0; i < KEYS.length; i++) {
+			if (KEYS[i] == key) {
+				return (mask & 1 << i) != 0;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Encodes a state against a base state of the same size.
+	 *
+	 * @param base   The base state, or null to encode the state whole.
+	 * @param state  The state to encode.
+	 * @param length The size of the states, in bytes.
+	 * @param out    The buffer to write the encoding to.
+	 */
+	public static void encode(byte[] base, byte[] state, int length, ByteBuffer out) {
+		int i = 0;
+		while (i < length) {
+			int same = i;
+			while (same < length && state[same] == (base == null ? 0 : base[same])) {
+				same++;
+			}
+			int changed = same;
+			while (changed < length && state[changed] != (base == null ? 0 : base[changed])) {
+				changed++;
+			}
+			putVarint(out, same - i);
+			putVarint(out, changed - same);
+			for (int j = same; j < changed; j++) {
+				out.put((byte) (state[j] ^ (base == null ? 0 : base[j])));
+			}
+			i = changed;
+		}
+	}
+
+	/**
+	 * Decodes a state encoded against a base state.
+	 *
+	 * @param base   The base state the encoding was made against, or null.
+	 * @param in     The buffer holding the encoding.
+	 * @param state  The array to decode the state into.
+	 * @param length The size of the state, in bytes.
+	 * @return True if the encoding was whole and fit the size.
+	 */
+	public static boolean decode(byte[] base, ByteBuffer in, byte[] state, int length) {
+		int i = 0;
+		while (i < length) {
+			if (!in.hasRemaining()) {
+				return false;
+			}
+			int same = getVarint(in);
+			int changed = getVarint(in);
+			if (same < 0 || changed < 0 || i + same + changed > length || in.remaining() < changed) {
+				return false;
+			}
+			for (int j = 0; j < same; j++, i++) {
+				state[i] = base == null ? 0 : base[i];
+			}
+			for (int j = 0; j < changed; j++, i++) {
+				state[i] = (byte) (in.get() ^ (base == null ? 0 : base[i]));
+			}
+		}
+		return true;
+	}
+
+	private static void putVarint(ByteBuffer out, int value) {
+		while ((value & ~VARINT_MASK) != 0) {
+			out.put((byte) ((value & VARINT_MASK) | VARINT_MORE));
+			value >>>= VARINT_BITS;
+		}
+		out.put((byte) value);
+	}
+
+	// reads a varint, or returns -1 if it runs off the end of the buffer or overflows
+	private static int getVarint(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += VARINT_BITS) {
+			if (!in.hasRemaining()) {
+				return -1;
+			}
+			int b = in.get();
+			value |= (b & VARINT_MASK) << shift;
+			if ((b & VARINT_MORE) == 0) {
+				return value;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,158 @@
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * On-disk store of decoded images, so the game decodes each PNG once rather
+ * than on every start. Each image is kept in a file named for a hash of the
+ * PNG's bytes, so an edited image is decoded afresh and stale entries are
+ * simply never read again. Cached pixels are memory-mapped rather than read,
+ * and are copied straight from the mapping into the texture atlas.
+ *
+ * A cache file holds, in big-endian order: int MAGIC, int width, int height,
+ * then one int per pixel, packed as ARGB, row by row from the top left.
+ * Safe to use from several threads at once.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class PixelCache {
+	/** marks the start of a cache file */
+	public static final int MAGIC = 0x52474241;
+	/** where the cache is kept unless -DpixelCache names another folder, in the user's own home */
+	public static final String DEFAULT_DIRECTORY = System.getProperty("user.home") + File.separator
+			+ ".shadow-leap" + File.separator + "pixels";
+	private static final String EXTENSION = ".argb";
+	private static final String HASH_ALGORITHM = "SHA-1";
+	private static final int HEADER_BYTES = 3 * Integer.BYTES;
+	private static final int HEX_MASK = 0xFF;
+
+	// null when caching is off
+	private final File directory;
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * Create a cache kept in a folder, which is made if need be.
+	 *
+	 * @param directory The folder to keep decoded images in, or null to decode every time.
+	 */
+	public PixelCache(String directory) {
+		this.directory = directory == null ? null : new File(directory);
+		// the PNG is decoded from memory, so ImageIO need not buffer it on disk
+		ImageIO.setUseCache(false);
+	}
+
+	/**
+	 * Decodes an image file, or maps its pixels from the cache if they were
+	 * decoded before.
+	 *
+	 * @param file The PNG image file.
+	 * @return the decoded image
+	 * @throws IOException If the file could not be read or is not an image.
+	 */
+	public DecodedImage load(File file) throws IOException {
+		byte[] png = Files.readAllBytes(file.toPath());
+		File cached = directory == null ? null : new File(directory, hash(png) + EXTENSION);
+		if (cached != null && cached.exists()) {
+			DecodedImage image = map(file.getName(), cached);
+			if (image != null) {
+				hits.incrementAndGet();
+				return image;
+			}
+		}
+		misses.incrementAndGet();
+
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+		if (decoded == null) {
+			throw new IOException("Not an image: " + file);
+		}
+		int width = decoded.getWidth();
+		int height = decoded.getHeight();
+		int[] pixels = decoded.getRGB(0, 0, width, height, null, 0, width);
+		if (cached != null) {
+			store(cached, width, height, pixels);
+		}
+		return new DecodedImage(file.getName(), width, height, IntBuffer.wrap(pixels));
+	}
+
+	/**
+	 * Accesses the number of images mapped from the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Accesses the number of images decoded, as they were not in the cache.
+	 *
+	 * @return the number of cache misses
+	 */
+	public int getMisses() {
+		return misses.get();
+	}
+
+	// maps a cache file, or returns null if it is not a whole cache file
+	private static DecodedImage map(String name, File cached) throws IOException {
+		try (FileChannel channel = FileChannel.open(cached.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int magic = buffer.getInt();
+			int width = buffer.getInt();
+			int height = buffer.getInt();
+			if (magic != MAGIC || width <= 0 || height <= 0
+					|| channel.size() != HEADER_BYTES + (long) width * height * Integer.BYTES) {
+				return null;
+			}
+			return new DecodedImage(name, width, height, buffer.asIntBuffer());
+		}
+	}
+
+	/*
+	 * Writes a cache file beside its final location, then moves it into
+	 * place, so a game starting at the same time never maps half a file. The
+	 * cache only saves time, so failing to write it is reported and ignored.
+	 */
+	private void store(File cached, int width, int height, int[] pixels) {
+		try {
+			Files.createDirectories(directory.toPath());
+			Path partial = Files.createTempFile(directory.toPath(), "pixels-", ".part");
+			ByteBuffer bytes = ByteBuffer.allocate(HEADER_BYTES + pixels.length * Integer.BYTES);
+			bytes.putInt(MAGIC).putInt(width).putInt(height);
+			bytes.asIntBuffer().put(pixels);
+			Files.write(partial, bytes.array());
+			Files.move(partial, cached.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static String hash(byte[] bytes) {
+		try {
+			StringBuilder hex = new StringBuilder();
+			for (byte b : MessageDigest.getInstance(HASH_ALGORITHM).digest(bytes)) {
+				hex.append(String.format("%02x", b & HEX_MASK));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import org.newdawn.slick.Input;
 import utilities.BoundingBox;
@@ -13,21 +14,40 @@ public class Player extends Sprite {
 
 	/** Initial x-coordinate where the player should begin and return to, in pixels */
 	public static final float X_INIT = 512;
-	/** Initial y-coordinate where the player should begin and return to, in pixels */
+	/** Initial y-coordinate where the player should begin and return to in a level one screen tall, in pixels */
 	public static final float Y_INIT = 720;
-	private static final String ASSET_PATH = "assets/frog.png";
+	private static final String ARCHETYPE = "frog";
 	private static final float FUZZ = 0.05f*World.TILE_SIZE;
+	/** size of the state written by writeState(), in bytes */
+	public static final int STATE_BYTES = 21;
 	
 	// the speed the Player object moves when being carried or pushed
 	private float pushSpeedX = 0;
 	// checks whether the Player object is riding another sprite
 	private boolean isRiding = false;
+	// position before the latest update, and how far rendering is towards the next
+	private float prevX = X_INIT;
+	private float renderAlpha = 1;
+	// height of the world the player moves in, and where it starts from
+	private float worldHeight = App.SCREEN_HEIGHT;
+	private float startY = Y_INIT;
 
 	private static final int N_LIVES_INIT = 3;
 	// contains the Life sprites which represent the number of lives the Player object has remaining.
+	// lost lives stay in the list to be reused, so only the first nLives are live.
 	private ArrayList<Life> lives = new ArrayList<>();
+	private int nLives = 0;
+	// BoundingBox object which represents the player after moving, reused every update
+	private BoundingBox tempBounds;
 	// check if the Player object has lost a life
 	private boolean deathFlag = false;
+	// true once the Player object has lost a life with none remaining
+	private boolean dead = false;
+	private int livesLost = 0;
+	// false while no one plays the player, so it is left out of the game
+	private boolean active = true;
+	// where the player's deaths are published, if anywhere
+	private EventBus events;
 
 	/**
 	 * Create player based on its location, and its lives.
@@ -36,16 +56,19 @@ public class Player extends Sprite {
 	 * @param y The y-coordinate of the player.
 	 */
 	public Player(float x, float y) {
-		super(ASSET_PATH, x, y);
+		super(ArchetypeRegistry.get(ARCHETYPE), x, y);
 
 		// Initialises Life objects the player has.
 		for (int i = 0; i < N_LIVES_INIT; i++) {
-			lives.add(new Life(i));
+			extraLife();
 		}
+		tempBounds = new BoundingBox(x, y, getWidth(), getHeight());
 	}
 
 	@Override
-	public void update(Input input, int delta, ArrayList<Sprite> sprites) {
+	public void update(InputSource input, int delta, ArrayList<Sprite> sprites) {
+		prevX = getX();
+
 		// calculate the change in position when a key is pressed
 		int dx = 0, dy = 0;
 		if (input.isKeyPressed(Input.KEY_LEFT)) {
@@ -66,21 +89,23 @@ public class Player extends Sprite {
 			dx = 0;
 			pushSpeedX = 0;
 		}
-		if (getY() + dy - World.TILE_SIZE / 2 < 0 || getY() + dy + World.TILE_SIZE / 2 > App.SCREEN_HEIGHT) {
+		if (getY() + dy - World.TILE_SIZE / 2 < 0 || getY() + dy + World.TILE_SIZE / 2 > worldHeight) {
 			dy = 0;
 		}
 
 		// BoundingBox object which represents the player after moving
-		BoundingBox tempBounds = new BoundingBox(getX() + dx, getY() + dy, getWidth(), getHeight());
-		for (Sprite sprite : sprites) {
+		tempBounds.setX(getX() + dx);
+		tempBounds.setY(getY() + dy);
+		for (int i = 0; i < sprites.size(); i++) {
+			Sprite sprite = sprites.get(i);
 			// prevents movement if it results in intersecting a solid object
-			if (sprite.hasTag(SOLID) && sprite.collides(tempBounds)) {
+			if (sprite.hasTag(CollisionLayer.SOLID) && sprite.collides(tempBounds)) {
 				dx = 0;
 				dy = 0;
 			}
 			// update pushing factor if sprite is in contact with a pushing sprite
-			if (collides(sprite) && sprite.hasTag(PUSHING)) {
-				pushSpeedX = ((MovingSprite) sprite).getSpeed() * (((MovingSprite) sprite).getDir() ? 1 : -1);
+			if (collides(sprite) && sprite.hasTag(CollisionLayer.PUSHING)) {
+				pushSpeedX = sprite.getVelocityX();
 			}
 
 		}
@@ -104,28 +129,81 @@ public class Player extends Sprite {
 		}
 
 		// update the state of the lives
-		for (Life life : lives) {
-			life.update(input, delta);
+		for (int i = 0; i < nLives; i++) {
+			lives.get(i).update(input, delta);
 		}
 	}
 
+	/**
+	 * Sets how far rendering is between the last two updates, so the player is
+	 * drawn smoothly while being carried or pushed.
+	 * 
+	 * @param alpha The fraction of a tick since the last update, from 0 to 1.
+	 */
+	public void setRenderAlpha(float alpha) {
+		renderAlpha = alpha;
+	}
+
 	@Override
-	public void render() {
-		super.render();
-		// renders Life objects in ArrayList
-		for (Life life : lives) {
-			life.render();
+	protected float getRenderX() {
+		// hops and respawns move a whole tile or more, and are drawn where they land
+		float dx = getX() - prevX;
+		if (Math.abs(dx) >= World.TILE_SIZE) {
+			return getX();
+		}
+		return prevX + dx * renderAlpha;
+	}
+
+	/**
+	 * Renders the Life objects, which stay in place on the screen however the
+	 * world scrolls.
+	 * 
+	 * @param batch The batch to draw with, in screen coordinates.
+	 */
+	public void renderLives(SpriteBatch batch) {
+		for (int i = 0; i < nLives; i++) {
+			lives.get(i).render(batch, SpriteBatch.HUD);
 		}
 	}
 
+	/**
+	 * Sets the bus the player publishes its deaths on.
+	 * 
+	 * @param events The event bus, or null to publish nothing.
+	 */
+	public void setEvents(EventBus events) {
+		this.events = events;
+	}
+
+	/**
+	 * Sets the height of the world the player moves in. The player starts, and
+	 * returns after losing a life, as far from the bottom of the world as
+	 * Y_INIT is from the bottom of the screen.
+	 * 
+	 * @param height The height of the world, in pixels.
+	 */
+	public void setWorldHeight(float height) {
+		worldHeight = height;
+		startY = height - (App.SCREEN_HEIGHT - Y_INIT);
+	}
+
+	/** Returns the player to its starting position, e.g. upon reaching a hole. */
+	public void respawn() {
+		setX(X_INIT);
+		setY(startY);
+	}
+
 	@Override
 	public void onCollision(Sprite other) {
+		// the response to every combination of layers is precomputed
+		int response = CollisionLayer.responseTo(other.getTags());
+
 		/*
 		 * if in contact with a rideable object, update movement, and ensures player is
 		 * safe from hazards
 		 */
-		if (other instanceof RideableSprite && ((RideableSprite) other).isFloating()) {
-			pushSpeedX = ((MovingSprite) other).getSpeed() * (((MovingSprite) other).getDir() ? 1 : -1);
+		if ((response & CollisionLayer.RIDE) != 0) {
+			pushSpeedX = other.getVelocityX();
 			isRiding = true;
 			deathFlag = false;
 		}
@@ -134,33 +212,146 @@ public class Player extends Sprite {
 		 * if in contact with a hazard object, and is not riding a rideable object,
 		 * player loses a life
 		 */
-		if (other.hasTag(Sprite.HAZARD)) {
-			if (!isRiding) {
-				deathFlag = true;
-			}
+		if ((response & CollisionLayer.KILL) != 0 && !isRiding) {
+			deathFlag = true;
 		}
 	}
 
 	/**
 	 * Player loses a life, and returns to initial position. If no more remaining
-	 * lives, the game exits.
+	 * lives, the player is dead and the game is over.
 	 */
 	public void playerDeath() {
-		// exit if the no more lives remaining
-		if (lives.size() == 0) {
-			System.exit(0);
+		livesLost++;
+		if (events != null) {
+			events.publish(EventBus.DEATH, getX(), getY(), Math.max(0, nLives - 1));
+		}
+		// the game is over if no more lives remaining
+		if (nLives == 0) {
+			dead = true;
 		}
 		// re-initialise the position of the player
-		this.setX(X_INIT);
-		this.setY(Y_INIT);
+		respawn();
 		// remove a life and the player is alive again
-		lives.remove(lives.size() - 1);
+		if (nLives > 0) {
+			nLives--;
+		}
+		deathFlag = false;
+	}
+
+	/**
+	 * Check if the player has lost a life with none remaining.
+	 * 
+	 * @return True if the player is dead.
+	 */
+	public boolean isDead() {
+		return dead;
+	}
+
+	/**
+	 * Accesses the number of lives the player has remaining.
+	 * 
+	 * @return the number of lives
+	 */
+	public int getLives() {
+		return nLives;
+	}
+
+	/**
+	 * Accesses the number of lives lost since the player was created or reset.
+	 * 
+	 * @return the number of lives lost
+	 */
+	public int getLivesLost() {
+		return livesLost;
+	}
+
+	/**
+	 * Check if someone plays the player. An inactive player neither moves,
+	 * collides nor is drawn, and does not keep the game going.
+	 * 
+	 * @return True if the player is in the game.
+	 */
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Puts the player in or out of the game, as when a client joins or leaves
+	 * a GameServer. The player is otherwise left as it is.
+	 * 
+	 * @param active True if someone plays the player.
+	 */
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	/**
+	 * Writes the position, lives and movement state of the player.
+	 * 
+	 * @param out The buffer to write STATE_BYTES bytes to.
+	 */
+	public void writeState(ByteBuffer out) {
+		out.putFloat(getX());
+		out.putFloat(getY());
+		out.putFloat(pushSpeedX);
+		out.putInt(nLives);
+		out.putInt(livesLost);
+		out.put((byte) ((dead ? 1 : 0) | (deathFlag ? 2 : 0) | (isRiding ? 4 : 0) | (active ? 0 : 8)));
+	}
+
+	/**
+	 * Restores the state of the player written by writeState().
+	 * 
+	 * @param in The buffer to read STATE_BYTES bytes from.
+	 */
+	public void readState(ByteBuffer in) {
+		setX(in.getFloat());
+		setY(in.getFloat());
+		prevX = getX();
+		pushSpeedX = in.getFloat();
+		nLives = in.getInt();
+		// lost lives are kept for reuse, so only a count above any before makes new ones
+		while (lives.size() < nLives) {
+			lives.add(new Life(lives.size()));
+		}
+		livesLost = in.getInt();
+		int flags = in.get();
+		dead = (flags & 1) != 0;
+		deathFlag = (flags & 2) != 0;
+		isRiding = (flags & 4) != 0;
+		active = (flags & 8) == 0;
+	}
+
+	/** Returns the player to its initial position and number of lives, for a new game. */
+	public void reset() {
+		respawn();
+		prevX = X_INIT;
+		pushSpeedX = 0;
+		isRiding = false;
 		deathFlag = false;
+		dead = false;
+		livesLost = 0;
+		nLives = 0;
+		for (int i = 0; i < N_LIVES_INIT; i++) {
+			extraLife();
+		}
+	}
+
+	@Override
+	public void release() {
+		super.release();
+		for (Life life : lives) {
+			life.release();
+		}
 	}
 
-	/** Player gains a life. */
+	/** Player gains a life, reusing a previously lost Life sprite if there is one. */
 	public void extraLife() {
-		lives.add(new Life(lives.size()));
+		if (nLives == lives.size()) {
+			lives.add(new Life(nLives));
+		}
+		nLives++;
 	}
 
 }
@@ -0,0 +1,90 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Replays an input log written by InputRecorder with no window, as fast as the
+ * CPU allows, checking the World state hash at every checkpoint. Exits with
+ * status 1 at the first checkpoint which does not match.
+ *
+ * Usage: ReplayRunner log
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class ReplayRunner {
+	private static final double NANO_TO_SEC = 1e-9;
+
+	/**
+	 * Replays a log given on the command line.
+	 *
+	 * @param args The input log to replay.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: ReplayRunner log");
+			System.exit(1);
+		}
+		AssetRegistry.setHeadless(true);
+		try {
+			if (!replay(args[0])) {
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Replays an input log, printing how fast it ran and where it diverged.
+	 *
+	 * @param path The input log to replay.
+	 * @return True if every checkpoint matched.
+	 * @throws IOException If the log could not be read.
+	 */
+	public static boolean replay(String path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+			if (in.readInt() != InputRecorder.MAGIC || in.readShort() != InputRecorder.VERSION) {
+				throw new IOException(path + ": not an input log of version " + InputRecorder.VERSION);
+			}
+			long seed = in.readLong();
+			int checkpointInterval = InputRecorder.readVarint(in);
+			String[] levelPaths = new String[InputRecorder.readVarint(in)];
+			for (int i = 0; i < levelPaths.length; i++) {
+				levelPaths[i] = in.readUTF();
+			}
+
+			World world = new World(levelPaths, seed);
+			KeyState keys = new KeyState();
+			long ticks = 0;
+			long checkpoints = 0;
+			long start = System.nanoTime();
+
+			int tick;
+			while ((tick = InputRecorder.readVarint(in)) >= 0) {
+				for (int i = 0; i < InputRecorder.RECORDED_KEYS.length; i++) {
+					keys.setPressed(InputRecorder.RECORDED_KEYS[i], (tick & 1 << i) != 0);
+				}
+				world.update(keys, tick >>> InputRecorder.KEY_BITS);
+				ticks++;
+
+				if (ticks % checkpointInterval == 0) {
+					long expected = in.readLong();
+					long actual = world.stateHash();
+					if (actual != expected) {
+						System.out.printf("%s: diverged at tick %d: expected state %016x, got %016x%n", path, ticks,
+								expected, actual);
+						return false;
+					}
+					checkpoints++;
+				}
+			}
+			double seconds = (System.nanoTime() - start) * NANO_TO_SEC;
+
+			System.out.printf("%s: %d ticks, %d checkpoints matched in %.3f s: %.0f ticks/s%n", path, ticks,
+					checkpoints, seconds, ticks / seconds);
+			return true;
+		}
+	}
+}
@@ -6,16 +6,15 @@
  */
 public abstract class RideableSprite extends MovingSprite {
 	/**
-	 * Create a rideable sprite based on image file, location, direction and speed.
+	 * Create a rideable sprite based on its archetype, location and direction.
 	 * 
-	 * @param imgSrc   The location of image file to load.
-	 * @param x        The x-coordinate of the sprite.
-	 * @param y        The y-coordinate of the sprite.
-	 * @param dirRight True if sprite is moving right.
-	 * @param speed    The speed in pixels per millisecond.
+	 * @param archetype The archetype of the sprite, describing how it moves.
+	 * @param x         The x-coordinate of the sprite.
+	 * @param y         The y-coordinate of the sprite.
+	 * @param dirRight  True if sprite is moving right.
 	 */
-	public RideableSprite(String imgSrc, float x, float y, boolean dirRight, float speed) {
-		super(imgSrc, x, y, dirRight, speed, new String[] { Sprite.RIDEABLE });
+	public RideableSprite(Archetype archetype, float x, float y, boolean dirRight) {
+		super(archetype, x, y, dirRight);
 	}
 
 	/**
@@ -24,6 +23,16 @@ public abstract class RideableSprite extends MovingSprite {
 	 * @return True if sprite is floating.
 	 */
 	public boolean isFloating() {
+		return isFloatingAt(getTime());
+	}
+
+	/**
+	 * Check if the sprite will be floating at a time of its clock.
+	 * 
+	 * @param time The time, in milliseconds, as given by getTime().
+	 * @return True if sprite is floating at that time.
+	 */
+	public boolean isFloatingAt(long time) {
 		return true;
 	}
 
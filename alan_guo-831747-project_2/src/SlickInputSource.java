@@ -0,0 +1,24 @@
+import org.newdawn.slick.Input;
+
+/**
+ * An InputSource reading the keyboard through Slick's Input object.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class SlickInputSource implements InputSource {
+	private final Input input;
+
+	/**
+	 * Create an input source based on a Slick Input object.
+	 *
+	 * @param input The object responsible for all input.
+	 */
+	public SlickInputSource(Input input) {
+		this.input = input;
+	}
+
+	@Override
+	public boolean isKeyPressed(int key) {
+		return input.isKeyPressed(key);
+	}
+}
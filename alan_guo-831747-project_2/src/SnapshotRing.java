@@ -0,0 +1,326 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps the recent history of a world as a ring of snapshots, so the game can
+ * be rewound, one tick or many at a time. A snapshot is taken after every
+ * update into preallocated buffers. Most snapshots are stored as the bytes
+ * which changed since the one before, as runs of XOR differences. Every
+ * keyframe interval, and whenever that would not be smaller, a full snapshot
+ * is stored instead, so restoring any snapshot replays at most one interval
+ * of differences.
+ *
+ * The history only covers the level being played, and starts over whenever
+ * a new level is loaded.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class SnapshotRing {
+	/** default number of snapshots between full snapshots */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 30;
+	// zero bytes shorter than this are kept inside a run of differences
+	private static final int MIN_ZERO_RUN = 3;
+	private static final int VARINT_BITS = 7;
+	private static final int VARINT_MORE = 0x80;
+	// bytes of history stored per snapshot of the full size, on average
+	private static final float ARENA_PER_SNAPSHOT = 0.6f;
+
+	private final World world;
+	private final int capacity;
+	private final int keyframeInterval;
+
+	// where each stored snapshot is held in the arena, indexed by ring slot
+	private final int[] offsets;
+	private final int[] lengths;
+	private final boolean[] keyframes;
+	private int oldest = 0;
+	private int count = 0;
+	private int sinceKeyframe = 0;
+	private byte[] arena = new byte[0];
+	private int writePos = 0;
+
+	// the level and state size the history was taken with
+	private int level = -1;
+	private int stateSize = -1;
+	// the latest state, the one before it, and room to encode differences
+	private byte[] current = new byte[0];
+	private byte[] previous = new byte[0];
+	private byte[] encoded = new byte[0];
+	private ByteBuffer currentBuffer;
+	private ByteBuffer previousBuffer;
+
+	/**
+	 * Create a ring of snapshots of a world.
+	 *
+	 * @param world            The world to take snapshots of.
+	 * @param capacity         The number of snapshots kept.
+	 * @param keyframeInterval The number of snapshots between full snapshots.
+	 */
+	public SnapshotRing(World world, int capacity, int keyframeInterval) {
+		this.world = world;
+		this.capacity = capacity;
+		this.keyframeInterval = keyframeInterval;
+		offsets = new int[capacity];
+		lengths = new int[capacity];
+		keyframes = new boolean[capacity];
+	}
+
+	/**
+	 * Takes a snapshot of the world, evicting the oldest ones to make room.
+	 * Allocates nothing unless a level of a new size has been loaded.
+	 */
+	public void capture() {
+		if (world.getLevel() != level || world.getStateSize() != stateSize) {
+			resize(world.getLevel(), world.getStateSize());
+		}
+		currentBuffer.clear();
+		world.writeState(currentBuffer);
+
+		boolean keyframe = count == 0 || sinceKeyframe >= keyframeInterval - 1;
+		int length = keyframe ? -1 : encode();
+		if (length < 0) {
+			// a full snapshot, copied as it is
+			keyframe = true;
+			length = stateSize;
+		}
+
+		if (count == capacity) {
+			evictOldest();
+		}
+		int offset = reserve(length);
+		if (count == 0 && !keyframe) {
+			// making room evicted the snapshot the differences were taken against
+			writePos = offset;
+			keyframe = true;
+			length = stateSize;
+			offset = reserve(length);
+		}
+		System.arraycopy(keyframe ? current : encoded, 0, arena, offset, length);
+		int slot = (oldest + count) % capacity;
+		offsets[slot] = offset;
+		lengths[slot] = length;
+		keyframes[slot] = keyframe;
+		count++;
+		sinceKeyframe = keyframe ? 0 : sinceKeyframe + 1;
+
+		// the latest state becomes the base of the next snapshot's differences
+		byte[] swap = previous;
+		previous = current;
+		current = swap;
+		ByteBuffer swapBuffer = previousBuffer;
+		previousBuffer = currentBuffer;
+		currentBuffer = swapBuffer;
+	}
+
+	/**
+	 * Restores the world to an earlier snapshot, and forgets every snapshot
+	 * after it, so the history carries on from there.
+	 *
+	 * @param ticksBack How many snapshots back from the latest to restore,
+	 *                  where 0 is the latest.
+	 * @return False if there is no snapshot that far back on this level.
+	 */
+	public boolean restore(int ticksBack) {
+		if (ticksBack < 0 || ticksBack >= count || world.getLevel() != level) {
+			return false;
+		}
+		int target = count - 1 - ticksBack;
+		// find the last full snapshot at or before the target, then add up the differences
+		int first = target;
+		while (!keyframes[slot(first)]) {
+			first--;
+		}
+		System.arraycopy(arena, offsets[slot(first)], previous, 0, stateSize);
+		for (int i = first + 1; i <= target; i++) {
+			decode(offsets[slot(i)], lengths[slot(i)]);
+		}
+
+		previousBuffer.clear();
+		world.readState(previousBuffer);
+
+		count = target + 1;
+		sinceKeyframe = target - first;
+		writePos = offsets[slot(target)] + lengths[slot(target)];
+		return true;
+	}
+
+	/**
+	 * Accesses the number of snapshots held.
+	 *
+	 * @return the number of snapshots which can be restored
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Accesses the memory used for stored snapshots.
+	 *
+	 * @return the size of the snapshots held, in bytes
+	 */
+	public long getStoredBytes() {
+		long bytes = 0;
+		for (int i = 0; i < count; i++) {
+			bytes += lengths[slot(i)];
+		}
+		return bytes;
+	}
+
+	/**
+	 * Accesses the size of one full snapshot of the current level.
+	 *
+	 * @return the size of a full snapshot, in bytes
+	 */
+	public int getStateSize() {
+		return stateSize;
+	}
+
+	/** Forgets every snapshot. */
+	public void clear() {
+		oldest = 0;
+		count = 0;
+		sinceKeyframe = 0;
+		writePos = 0;
+	}
+
+	// the ring slot of the i-th oldest snapshot
+	private int slot(int i) {
+		return (oldest + i) % capacity;
+	}
+
+	/*
+	 * Starts a new history for a level, growing the buffers if its state is
+	 * larger than any before.
+	 */
+	private void resize(int level, int stateSize) {
+		this.level = level;
+		this.stateSize = stateSize;
+		if (current.length < stateSize) {
+			current = new byte[stateSize];
+			previous = new byte[stateSize];
+			encoded = new byte[stateSize];
+			// room for the keyframes, and for the differences at the average ratio
+			int keyframeBytes = (capacity / keyframeInterval + 2) * stateSize;
+			arena = new byte[keyframeBytes + (int) (capacity * stateSize * ARENA_PER_SNAPSHOT)];
+		}
+		currentBuffer = ByteBuffer.wrap(current, 0, stateSize);
+		previousBuffer = ByteBuffer.wrap(previous, 0, stateSize);
+		clear();
+	}
+
+	/*
+	 * Finds room in the arena for a snapshot, evicting the oldest snapshots in
+	 * the way, and returns its offset.
+	 */
+	private int reserve(int length) {
+		int start = writePos;
+		int wrapFrom = arena.length;
+		if (start + length > arena.length) {
+			// the tail of the arena is too short, so it is given up along with whatever is held there
+			wrapFrom = start;
+			start = 0;
+		}
+		while (count > 0) {
+			int offset = offsets[oldest];
+			int end = offset + lengths[oldest];
+			if (!(offset < start + length && start < end) && end <= wrapFrom) {
+				break;
+			}
+			evictOldest();
+		}
+		writePos = start + length;
+		return start;
+	}
+
+	/*
+	 * Drops the oldest snapshot, and any differences which relied on it.
+	 */
+	private void evictOldest() {
+		do {
+			oldest = (oldest + 1) % capacity;
+			count--;
+		} while (count > 0 && !keyframes[oldest]);
+		if (count == 0) {
+			sinceKeyframe = 0;
+		}
+	}
+
+	/*
+	 * Encodes the differences between the current and previous states as runs
+	 * of (varint zeros skipped, varint length, XOR bytes). Returns the encoded
+	 * length, or -1 if it would be no smaller than a full snapshot.
+	 */
+	private int encode() {
+		int out = 0;
+		int i = 0;
+		while (i < stateSize) {
+			int zeros = 0;
+			while (i < stateSize && current[i] == previous[i]) {
+				zeros++;
+				i++;
+			}
+			if (i == stateSize) {
+				break;
+			}
+			// the run ends at the first stretch of MIN_ZERO_RUN unchanged bytes
+			int start = i;
+			int same = 0;
+			while (i < stateSize && same < MIN_ZERO_RUN) {
+				same = current[i] == previous[i] ? same + 1 : 0;
+				i++;
+			}
+			int end = i - same;
+			i = end;
+			int length = end - start;
+
+			if (out + 10 + length >= stateSize) {
+				return -1;
+			}
+			out = putVarint(encoded, out, zeros);
+			out = putVarint(encoded, out, length);
+			for (int j = start; j < end; j++) {
+				encoded[out++] = (byte) (current[j] ^ previous[j]);
+			}
+		}
+		return out;
+	}
+
+	/*
+	 * Applies encoded differences, held in the arena, to the previous state.
+	 */
+	private void decode(int offset, int length) {
+		int end = offset + length;
+		int pos = offset;
+		int i = 0;
+		while (pos < end) {
+			int zeros = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = arena[pos++];
+				zeros |= (b & (VARINT_MORE - 1)) << shift;
+				shift += VARINT_BITS;
+			} while ((b & VARINT_MORE) != 0);
+			int run = 0;
+			shift = 0;
+			do {
+				b = arena[pos++];
+				run |= (b & (VARINT_MORE - 1)) << shift;
+				shift += VARINT_BITS;
+			} while ((b & VARINT_MORE) != 0);
+
+			i += zeros;
+			for (int j = 0; j < run; j++) {
+				previous[i++] ^= arena[pos++];
+			}
+		}
+	}
+
+	private static int putVarint(byte[] out, int pos, int value) {
+		while ((value & ~(VARINT_MORE - 1)) != 0) {
+			out[pos++] = (byte) (value & (VARINT_MORE - 1) | VARINT_MORE);
+			value >>>= VARINT_BITS;
+		}
+		out[pos++] = (byte) value;
+		return pos;
+	}
+}
@@ -1,72 +1,51 @@
 
 import utilities.BoundingBox;
 import java.util.ArrayList;
+import org.newdawn.slick.Graphics;
 import org.newdawn.slick.Image;
-import org.newdawn.slick.Input;
 import org.newdawn.slick.SlickException;
 
 /**
  * Basic class of which all game objects are based on. Handles sprite update,
- * rendering, movement, and collision mechanics.
+ * rendering, movement, and collision mechanics. What every sprite of a kind
+ * shares, such as its image file, size and tags, is held once by its
+ * Archetype, and the image itself by the AssetRegistry.
  * 
  * based on Sample Project by Eleanor McMurtry, University of Melbourne
  * modified by Alan Guo, University of Melbourne
  */
 public abstract class Sprite {
+	/** returned by timeOfImpact() when two sprites did not touch */
+	public static final float NO_CONTACT = -1;
 
-	/** tag for hazard object, which causes death upon contact */
-	public final static String HAZARD = "hazard";
-	/** tag for rideable object, which Player objects can ride on */
-	public final static String RIDEABLE = "rideable";
-	/** tag for pushing object, which pushes Player objects */
-	public final static String PUSHING = "pushing";
-	/** tag for solid object, which Player objects cannot move into */
-	public final static String SOLID = "solid";
-
-	private BoundingBox bounds;
-	private Image image;
+	// the description shared by every sprite of its kind
+	private final Archetype archetype;
 	private float x;
 	private float y;
 
-	private String[] tags;
+	// broadphase index the sprite is kept in, if any
+	private LaneIndex<?> laneIndex = null;
+	// true once the sprite's image was given back to the AssetRegistry
+	private boolean released = false;
 
 	/**
-	 * Create a sprite based on image file, and its location.
+	 * Create a sprite based on its archetype, and its location.
 	 * 
-	 * @param imageSrc The location of image file to load.
-	 * @param x        The x-coordinate of the sprite.
-	 * @param y        The y-coordinate of the sprite.
+	 * @param archetype The archetype of the sprite, giving its image and tags.
+	 * @param x         The x-coordinate of the sprite.
+	 * @param y         The y-coordinate of the sprite.
 	 */
-	public Sprite(String imageSrc, float x, float y) {
-		setupSprite(imageSrc, x, y);
-	}
-
-	/**
-	 * Create a sprite based on image file, location, and tags.
-	 * 
-	 * @param imageSrc The location of image file to load.
-	 * @param x        The x-coordinate of the sprite.
-	 * @param y        The y-coordinate of the sprite.
-	 * @param tags     The tags of the sprite.
-	 */
-	public Sprite(String imageSrc, float x, float y, String[] tags) {
-		setupSprite(imageSrc, x, y);
-		this.tags = tags;
-	}
-
-	private void setupSprite(String imageSrc, float x, float y) {
+	public Sprite(Archetype archetype, float x, float y) {
+		this.archetype = archetype;
+		// held until release(), so the registry keeps the image resident for the sprite
 		try {
-			image = new Image(imageSrc);
+			AssetRegistry.acquire(archetype.getImageSrc());
 		} catch (SlickException e) {
 			e.printStackTrace();
 		}
 
 		this.x = x;
 		this.y = y;
-
-		bounds = new BoundingBox(image, (int) x, (int) y);
-
-		tags = new String[0];
 	}
 
 	/**
@@ -74,9 +53,8 @@ public abstract class Sprite {
 	 * 
 	 * @param x the target x position
 	 */
-	public final void setX(float x) {
+	public void setX(float x) {
 		this.x = x;
-		bounds.setX((int) x);
 	}
 
 	/**
@@ -85,8 +63,21 @@ public abstract class Sprite {
 	 * @param y the target y position
 	 */
 	public final void setY(float y) {
+		// keep the broadphase bucket up to date if the sprite changes rows
+		if (laneIndex != null) {
+			laneIndex.move(this, LaneIndex.rowOf(this.y), LaneIndex.rowOf(y));
+		}
 		this.y = y;
-		bounds.setY((int) y);
+	}
+
+	/**
+	 * Sets the broadphase index the sprite is kept in, so it can be notified
+	 * when the sprite changes rows.
+	 * 
+	 * @param laneIndex The index holding the sprite, or null if none.
+	 */
+	public final void setLaneIndex(LaneIndex<?> laneIndex) {
+		this.laneIndex = laneIndex;
 	}
 
 	/**
@@ -94,7 +85,7 @@ public abstract class Sprite {
 	 * 
 	 * @return the x position of the sprite
 	 */
-	public final float getX() {
+	public float getX() {
 		return x;
 	}
 
@@ -113,7 +104,7 @@ public abstract class Sprite {
 	 * @return the image width of the sprite
 	 */
 	public final float getWidth() {
-		return image.getWidth();
+		return archetype.getWidth();
 	}
 
 	/**
@@ -122,39 +113,77 @@ public abstract class Sprite {
 	 * @return the image height of the sprite
 	 */
 	public final float getHeight() {
-		return image.getHeight();
+		return archetype.getHeight();
 	}
 
 	/**
-	 * Moves the sprite by the change in pixels in x and y direction.
+	 * Accesses the archetype of the sprite.
 	 * 
-	 * @param dx Change in pixels in the x direction.
-	 * @param dy Change in pixels in the y direction.
+	 * @return the archetype shared by every sprite of its kind
 	 */
-	public final void move(float dx, float dy) {
-		setX(x + dx);
-		setY(y + dy);
+	public final Archetype getArchetype() {
+		return archetype;
+	}
+
+	/**
+	 * Accesses the x position to draw the sprite at. Moving sprites draw
+	 * between their positions of the last two updates.
+	 * 
+	 * @return the x position to render at
+	 */
+	protected float getRenderX() {
+		return getX();
+	}
+
+	/**
+	 * Accesses the left edge of the bounding box of the sprite, at its current
+	 * location. The box is centred on the whole pixel the sprite is in, and is
+	 * worked out on use rather than kept, as every sprite of an archetype
+	 * shares its size.
+	 * 
+	 * @return the x-coordinate of the left edge
+	 */
+	public final float getLeft() {
+		return (int) getX() - archetype.getBoxWidth() / 2;
+	}
+
+	/**
+	 * Accesses the top edge of the bounding box of the sprite, at its current
+	 * location.
+	 * 
+	 * @return the y-coordinate of the top edge
+	 */
+	public final float getTop() {
+		return (int) y - archetype.getBoxHeight() / 2;
+	}
+
+	/**
+	 * Accesses the width of the bounding box of the sprite.
+	 * 
+	 * @return the width, a little smaller than the image
+	 */
+	public final float getBoxWidth() {
+		return archetype.getBoxWidth();
 	}
 
 	/**
-	 * Check if a tile of a given location is on-screen.
+	 * Accesses the height of the bounding box of the sprite.
 	 * 
-	 * @param x The x-coordinate of the given location.
-	 * @param y The y-coordinate of the given location.
-	 * @return True if tile is on-screen.
+	 * @return the height, a little smaller than the image
 	 */
-	public final boolean onScreen(float x, float y) {
-		return !(x + World.TILE_SIZE / 2 > App.SCREEN_WIDTH || x - World.TILE_SIZE / 2 < 0
-				|| y + World.TILE_SIZE / 2 > App.SCREEN_HEIGHT || y - World.TILE_SIZE / 2 < 0);
+	public final float getBoxHeight() {
+		return archetype.getBoxHeight();
 	}
 
 	/**
-	 * Check if the sprite is on-screen.
+	 * Moves the sprite by the change in pixels in x and y direction.
 	 * 
-	 * @return True if sprite is on-screen.
+	 * @param dx Change in pixels in the x direction.
+	 * @param dy Change in pixels in the y direction.
 	 */
-	public final boolean onScreen() {
-		return onScreen(getX(), getY());
+	public final void move(float dx, float dy) {
+		setX(getX() + dx);
+		setY(y + dy);
 	}
 
 	/**
@@ -164,7 +193,13 @@ public abstract class Sprite {
 	 * @return True if the sprite collides with the other sprite.
 	 */
 	public final boolean collides(Sprite other) {
-		return bounds.intersects(other.bounds);
+		float left = getLeft();
+		float top = getTop();
+		float otherLeft = other.getLeft();
+		float otherTop = other.getTop();
+		// the same test as BoundingBox.intersects(), without a box per sprite
+		return !(otherLeft > left + getBoxWidth() || otherLeft + other.getBoxWidth() < left
+				|| otherTop > top + getBoxHeight() || otherTop + other.getBoxHeight() < top);
 	}
 
 	/**
@@ -174,26 +209,42 @@ public abstract class Sprite {
 	 * @return True if the sprite collides with the BoundingBox.
 	 */
 	public final boolean collides(BoundingBox other) {
-		return bounds.intersects(other);
+		float left = getLeft();
+		float top = getTop();
+		return !(other.getLeft() > left + getBoxWidth() || other.getRight() < left
+				|| other.getTop() > top + getBoxHeight() || other.getBottom() < top);
+	}
+
+	/**
+	 * Finds when during the last update the sprite first touched another
+	 * sprite, which is taken to stay still over the update. A sprite which
+	 * does not move touches it for the whole update or not at all.
+	 * 
+	 * @param other The other Sprite object to check for collision.
+	 * @return The fraction of the update, from 0 to 1, at which they first
+	 *         touched, or NO_CONTACT if they did not.
+	 */
+	public float timeOfImpact(Sprite other) {
+		return collides(other) ? 0 : NO_CONTACT;
 	}
 
 	/**
 	 * Update the sprite since the last frame.
 	 * 
-	 * @param input The Input object responsible for key inputs.
+	 * @param input The InputSource responsible for key inputs.
 	 * @param delta Time passed since last frame (milliseconds).
 	 */
-	public void update(Input input, int delta) {
+	public void update(InputSource input, int delta) {
 	}
 
 	/**
 	 * Update the sprite since the last frame.
 	 * 
-	 * @param input   The Input object responsible for key inputs.
+	 * @param input   The InputSource responsible for key inputs.
 	 * @param delta   Time passed since last frame (milliseconds).
 	 * @param sprites An ArrayList of sprites to be interacted with.
 	 */
-	public void update(Input input, int delta, ArrayList<Sprite> sprites) {
+	public void update(InputSource input, int delta, ArrayList<Sprite> sprites) {
 	}
 
 	/**
@@ -204,23 +255,108 @@ public abstract class Sprite {
 	public void onCollision(Sprite other) {
 	}
 
+	/**
+	 * Gives the sprite's image back to the AssetRegistry. Called when the sprite
+	 * is removed from the game.
+	 */
+	public void release() {
+		if (!released) {
+			AssetRegistry.release(archetype.getImageSrc());
+			released = true;
+		}
+	}
+
+	/**
+	 * Check if the sprite's image was given back, so it is out of the game.
+	 * 
+	 * @return True if release() was called.
+	 */
+	public final boolean isReleased() {
+		return released;
+	}
+
 	/** Renders the image of the sprite at its central location. */
 	public void render() {
-		image.drawCentered(x, y);
+		Image image = AssetRegistry.get(archetype.getImageSrc());
+		if (image != null && isVisible()) {
+			image.drawCentered(getRenderX(), y);
+		}
 	}
 
 	/**
-	 * Check if sprite has a given tag.
+	 * Adds the image of the sprite at its central location to a batch, to be
+	 * drawn when the batch is flushed.
 	 * 
-	 * @param tag The string to check for.
-	 * @return True if sprite has the tag.
+	 * @param batch The batch to draw with.
+	 * @param layer The layer of the batch to draw in, such as SpriteBatch.LANES.
 	 */
-	public boolean hasTag(String tag) {
-		for (String test : tags) {
-			if (tag.equals(test)) {
-				return true;
-			}
+	public void render(SpriteBatch batch, int layer) {
+		if (isVisible()) {
+			batch.add(AssetRegistry.get(archetype.getImageSrc()), getRenderX(), y, layer);
 		}
-		return false;
+	}
+
+	/**
+	 * Check if the sprite is drawn, which may change over time, such as for a
+	 * diving turtle.
+	 * 
+	 * @return True if the sprite is drawn.
+	 */
+	protected boolean isVisible() {
+		return true;
+	}
+
+	/**
+	 * Renders the image of the sprite at its central location onto a given
+	 * graphics context, such as an offscreen image.
+	 * 
+	 * @param g The graphics context to draw onto.
+	 */
+	public void render(Graphics g) {
+		Image image = AssetRegistry.get(archetype.getImageSrc());
+		if (image != null) {
+			g.drawImage(image, getRenderX() - getWidth() / 2, y - getHeight() / 2);
+		}
+	}
+
+	/**
+	 * Check if the sprite never moves nor changes, so it can be drawn once into
+	 * the StaticLayer of its level.
+	 * 
+	 * @return True if the sprite is stationary.
+	 */
+	public boolean isStatic() {
+		return archetype.getKind() == Archetype.TILE;
+	}
+
+	/**
+	 * Accesses the CollisionLayer mask of the sprite, which may change over
+	 * time, such as for a diving turtle.
+	 * 
+	 * @return the layers the sprite currently belongs to
+	 */
+	public int getTags() {
+		return archetype.getTags();
+	}
+
+	/**
+	 * Check if sprite was created with a given tag. Reads its archetype's mask
+	 * directly, ignoring overrides of getTags().
+	 * 
+	 * @param tag The CollisionLayer bit to check for.
+	 * @return True if sprite has the tag.
+	 */
+	public final boolean hasTag(int tag) {
+		return (archetype.getTags() & tag) != 0;
+	}
+
+	/**
+	 * Accesses the horizontal velocity the sprite carries or pushes the player
+	 * with.
+	 * 
+	 * @return the velocity in pixels per millisecond, positive to the right
+	 */
+	public float getVelocityX() {
+		return 0;
 	}
 }
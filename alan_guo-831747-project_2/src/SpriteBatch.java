@@ -0,0 +1,113 @@
+import java.util.Arrays;
+import org.newdawn.slick.Image;
+
+/**
+ * Collects the images to draw in a frame, then draws them in layer order
+ * with as few texture changes as possible. Images cut from the sheet, such as
+ * the regions of a TextureAtlas, are drawn inside one bind of its texture;
+ * any other image ends the run, is drawn on its own, and the run resumes.
+ *
+ * Within a layer, images are drawn in the order they were added. The arrays
+ * grow as needed and are kept between frames, so drawing allocates nothing
+ * once the batch has grown to the size of a frame.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class SpriteBatch {
+	/** layer of the stationary tiles, when they are not baked into the background */
+	public static final int TILES = 0;
+	/** layer of the vehicles, logs and turtles moving along the lanes */
+	public static final int LANES = 1;
+	/** layer of the player, and the things that ride with it, above the lanes */
+	public static final int ACTORS = 2;
+	/** layer of the heads-up display, above everything */
+	public static final int HUD = 3;
+	private static final int N_LAYERS = 4;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private Image sheet;
+	private Image[][] images = new Image[N_LAYERS][INITIAL_CAPACITY];
+	private float[][] xs = new float[N_LAYERS][INITIAL_CAPACITY];
+	private float[][] ys = new float[N_LAYERS][INITIAL_CAPACITY];
+	private final int[] counts = new int[N_LAYERS];
+	// texture binds made by the last flush
+	private int binds = 0;
+
+	/**
+	 * Sets the image whose texture is kept bound while drawing. Images which
+	 * share its texture are drawn without changing texture.
+	 *
+	 * @param sheet The shared image, such as the page of a TextureAtlas, or null.
+	 */
+	public void setSheet(Image sheet) {
+		this.sheet = sheet;
+	}
+
+	/**
+	 * Adds an image to be drawn centred on a point.
+	 *
+	 * @param image The image, or null to draw nothing.
+	 * @param x     The x-coordinate of the centre of the image.
+	 * @param y     The y-coordinate of the centre of the image.
+	 * @param layer The layer to draw the image in, such as LANES.
+	 */
+	public void add(Image image, float x, float y, int layer) {
+		if (image == null) {
+			return;
+		}
+		int i = counts[layer];
+		if (i == images[layer].length) {
+			images[layer] = Arrays.copyOf(images[layer], i * 2);
+			xs[layer] = Arrays.copyOf(xs[layer], i * 2);
+			ys[layer] = Arrays.copyOf(ys[layer], i * 2);
+		}
+		images[layer][i] = image;
+		xs[layer][i] = x - image.getWidth() / 2f;
+		ys[layer][i] = y - image.getHeight() / 2f;
+		counts[layer] = i + 1;
+	}
+
+	/**
+	 * Draws every image added since the last flush, lowest layer first, then
+	 * empties the batch.
+	 */
+	public void flush() {
+		binds = 0;
+		boolean inUse = false;
+		for (int layer = 0; layer < N_LAYERS; layer++) {
+			for (int i = 0; i < counts[layer]; i++) {
+				Image image = images[layer][i];
+				if (sheet != null && image.getTexture() == sheet.getTexture()) {
+					if (!inUse) {
+						sheet.startUse();
+						inUse = true;
+						binds++;
+					}
+					image.drawEmbedded(xs[layer][i], ys[layer][i], image.getWidth(), image.getHeight());
+				} else {
+					if (inUse) {
+						sheet.endUse();
+						inUse = false;
+					}
+					image.draw(xs[layer][i], ys[layer][i]);
+					binds++;
+				}
+				images[layer][i] = null;
+			}
+			counts[layer] = 0;
+		}
+		if (inUse) {
+			sheet.endUse();
+		}
+	}
+
+	/**
+	 * Accesses the number of texture binds the last flush could have needed,
+	 * counting one per run of sheet images and one per other image.
+	 *
+	 * @return the number of binds
+	 */
+	public int getBinds() {
+		return binds;
+	}
+}
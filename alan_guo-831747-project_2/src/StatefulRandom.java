@@ -0,0 +1,55 @@
+import java.util.Random;
+
+/**
+ * A Random whose internal state can be saved and restored, so a snapshot of
+ * the game also captures its random events. Uses the same generator as
+ * java.util.Random, so a seed gives the same numbers as it always has.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class StatefulRandom extends Random {
+	private static final long serialVersionUID = 1L;
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long state;
+
+	/**
+	 * Create a generator based on a seed.
+	 *
+	 * @param seed The initial seed.
+	 */
+	public StatefulRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+	/**
+	 * Accesses the internal state of the generator.
+	 *
+	 * @return the state, which setState() restores
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Restores the internal state of the generator.
+	 *
+	 * @param state A state returned by getState().
+	 */
+	public void setState(long state) {
+		this.state = state & MASK;
+	}
+}
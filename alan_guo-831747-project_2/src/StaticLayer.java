@@ -0,0 +1,75 @@
+import java.util.ArrayList;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+
+/**
+ * An offscreen image holding every stationary sprite of a band of a level,
+ * one screen tall. Built once when the band loads, so a frame draws one
+ * background image instead of one image per tile.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class StaticLayer {
+	private Image layer = null;
+	// y-coordinate of the top of the layer, in the world
+	private float top = 0;
+
+	/**
+	 * Rasterise the stationary sprites into the layer, replacing its previous
+	 * contents. If offscreen images are not supported, the layer is left
+	 * unbuilt and the sprites should be rendered individually.
+	 *
+	 * @param sprites The sprites of the band, of which the stationary ones are drawn.
+	 * @param top     The y-coordinate of the top of the band, in the world.
+	 */
+	public void build(ArrayList<Sprite> sprites, float top) {
+		destroy();
+		this.top = top;
+		try {
+			layer = new Image(App.SCREEN_WIDTH, App.SCREEN_HEIGHT);
+			Graphics g = layer.getGraphics();
+			g.clear();
+			g.translate(0, -top);
+			for (Sprite sprite : sprites) {
+				if (sprite.isStatic()) {
+					sprite.render(g);
+				}
+			}
+			g.resetTransform();
+			g.flush();
+		} catch (SlickException e) {
+			e.printStackTrace();
+			destroy();
+		}
+	}
+
+	/**
+	 * Check if the layer has been built, in which case stationary sprites must
+	 * not be rendered individually.
+	 *
+	 * @return True if the layer is built.
+	 */
+	public boolean isBuilt() {
+		return layer != null;
+	}
+
+	/** Renders the layer over its band of the world. */
+	public void render() {
+		if (layer != null) {
+			layer.draw(0, top);
+		}
+	}
+
+	/** Frees the layer's image. */
+	public void destroy() {
+		if (layer != null) {
+			try {
+				layer.destroy();
+			} catch (SlickException e) {
+				e.printStackTrace();
+			}
+			layer = null;
+		}
+	}
+}
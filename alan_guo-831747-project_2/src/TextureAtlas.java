@@ -0,0 +1,234 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.ImageBuffer;
+
+/**
+ * Every image of a folder packed into one texture at startup, so sprites of
+ * all types can be drawn by a SpriteBatch without changing texture. Images
+ * are placed on shelves, tallest first, with a transparent border so they do
+ * not bleed into each other when filtered.
+ *
+ * Packing is split in two so startup can overlap it with opening the
+ * window: layout() places the decoded images and copies their pixels into
+ * the page in memory, on any thread, and upload() then makes the page a
+ * texture in one go, on the thread which owns the display.
+ *
+ * by Alan Guo, University of Melbourne
+ */
+public class TextureAtlas {
+	/** file extension of the images packed */
+	public static final String IMAGE_EXTENSION = ".png";
+	// transparent pixels around each image
+	private static final int PADDING = 2;
+	// the page starts this wide and doubles until the images fit, up to the largest size drivers support
+	private static final int MIN_PAGE_SIZE = 256;
+	private static final int MAX_PAGE_SIZE = 4096;
+	private static final int ALPHA_SHIFT = 24;
+	private static final int RED_SHIFT = 16;
+	private static final int GREEN_SHIFT = 8;
+	private static final int CHANNEL_MASK = 0xFF;
+
+	private final Image page;
+	// the region of the page holding each image, by image file location
+	private final HashMap<String, Image> regions = new HashMap<>();
+
+	/**
+	 * The images of a folder placed on a page held in memory, ready to be
+	 * uploaded as a texture.
+	 */
+	public static final class Layout {
+		private final String directory;
+		private final ImageBuffer buffer;
+		private final DecodedImage[] images;
+		private final int[][] places;
+
+		private Layout(String directory, ImageBuffer buffer, DecodedImage[] images, int[][] places) {
+			this.directory = directory;
+			this.buffer = buffer;
+			this.images = images;
+			this.places = places;
+		}
+
+		/**
+		 * Accesses the page, before it is uploaded.
+		 *
+		 * @return the pixels of the page
+		 */
+		public ImageBuffer getBuffer() {
+			return buffer;
+		}
+
+		/**
+		 * Finds where an image was placed on the page.
+		 *
+		 * @param name The file name of the image, without its folder.
+		 * @return the x and y of its top left pixel, or null if it is not on the page
+		 */
+		public int[] getPlace(String name) {
+			for (int i = 0; i < images.length; i++) {
+				if (images[i].getName().equals(name)) {
+					return places[i].clone();
+				}
+			}
+			return null;
+		}
+	}
+
+	private TextureAtlas(Image page) {
+		this.page = page;
+	}
+
+	/**
+	 * Packs every PNG image of a folder into one atlas, decoding them on the
+	 * calling thread.
+	 *
+	 * @param directory The folder holding the images.
+	 * @return The atlas, with a region for each image, keyed as directory/name.
+	 * @throws IOException If an image could not be read, or the images do not fit in one page.
+	 */
+	public static TextureAtlas pack(String directory) throws IOException {
+		PixelCache cache = new PixelCache(null);
+		ArrayList<DecodedImage> images = new ArrayList<>();
+		for (File file : listImages(directory)) {
+			images.add(cache.load(file));
+		}
+		return upload(layout(directory, images));
+	}
+
+	/**
+	 * Finds the images of a folder to pack.
+	 *
+	 * @param directory The folder holding the images.
+	 * @return the PNG files of the folder
+	 * @throws IOException If the folder cannot be listed.
+	 */
+	public static File[] listImages(String directory) throws IOException {
+		File[] files = new File(directory).listFiles((dir, name) -> name.endsWith(IMAGE_EXTENSION));
+		if (files == null) {
+			throw new IOException("Not a folder: " + directory);
+		}
+		return files;
+	}
+
+	/**
+	 * Places decoded images on a page and copies their pixels into it, in
+	 * memory. Needs no display, so may run on any thread.
+	 *
+	 * @param directory The folder the images were read from.
+	 * @param decoded   The images, decoded.
+	 * @return the page, ready for upload()
+	 * @throws IOException If the images do not fit in one page.
+	 */
+	public static Layout layout(String directory, List<DecodedImage> decoded) throws IOException {
+		// packing the tallest first keeps the shelves full
+		final DecodedImage[] images = decoded.toArray(new DecodedImage[decoded.size()]);
+		Integer[] order = new Integer[images.length];
+		for (int i = 0; i < images.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> images[b].getHeight() != images[a].getHeight()
+				? images[b].getHeight() - images[a].getHeight() : images[a].getName().compareTo(images[b].getName()));
+
+		int size = MIN_PAGE_SIZE;
+		int[][] places;
+		while ((places = place(images, order, size)) == null) {
+			size *= 2;
+			if (size > MAX_PAGE_SIZE) {
+				throw new IOException("Images of " + directory + " do not fit in one atlas");
+			}
+		}
+
+		ImageBuffer buffer = new ImageBuffer(size, size);
+		for (int i = 0; i < images.length; i++) {
+			copy(images[i], buffer, places[i][0], places[i][1]);
+		}
+		return new Layout(directory, buffer, images, places);
+	}
+
+	/**
+	 * Makes a laid out page a texture, and cuts a region from it for each
+	 * image. Must run on the thread which owns the display.
+	 *
+	 * @param layout The page, from layout().
+	 * @return The atlas, with a region for each image, keyed as directory/name.
+	 */
+	public static TextureAtlas upload(Layout layout) {
+		TextureAtlas atlas = new TextureAtlas(layout.buffer.getImage());
+		for (int i = 0; i < layout.images.length; i++) {
+			DecodedImage image = layout.images[i];
+			atlas.regions.put(layout.directory + "/" + image.getName(), atlas.page.getSubImage(layout.places[i][0],
+					layout.places[i][1], image.getWidth(), image.getHeight()));
+		}
+		return atlas;
+	}
+
+	/**
+	 * Accesses the region of the atlas holding an image.
+	 *
+	 * @param imageSrc The location of the image file.
+	 * @return the region, sharing the atlas's texture, or null if the image is not in the atlas
+	 */
+	public Image getRegion(String imageSrc) {
+		return regions.get(imageSrc);
+	}
+
+	/**
+	 * Accesses the page all the regions are cut from.
+	 *
+	 * @return the image holding every packed image
+	 */
+	public Image getPage() {
+		return page;
+	}
+
+	/**
+	 * Accesses the names of the images in the atlas.
+	 *
+	 * @return the locations of the packed image files
+	 */
+	public ArrayList<String> getImageSources() {
+		return new ArrayList<>(regions.keySet());
+	}
+
+	/*
+	 * Finds where each image goes on a square page, filling shelves left to
+	 * right. Returns null if the images do not fit.
+	 */
+	private static int[][] place(DecodedImage[] images, Integer[] order, int size) {
+		int[][] places = new int[images.length][];
+		int x = 0;
+		int shelfTop = 0;
+		int shelfHeight = 0;
+		for (int i : order) {
+			int width = images[i].getWidth() + 2 * PADDING;
+			int height = images[i].getHeight() + 2 * PADDING;
+			if (x + width > size) {
+				x = 0;
+				shelfTop += shelfHeight;
+				shelfHeight = 0;
+			}
+			if (width > size || shelfTop + height > size) {
+				return null;
+			}
+			places[i] = new int[] { x + PADDING, shelfTop + PADDING };
+			x += width;
+			shelfHeight = Math.max(shelfHeight, height);
+		}
+		return places;
+	}
+
+	private static void copy(DecodedImage image, ImageBuffer buffer, int left, int top) {
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				int argb = image.getARGB(x, y);
+				buffer.setRGBA(left + x, top + y, (argb >> RED_SHIFT) & CHANNEL_MASK,
+						(argb >> GREEN_SHIFT) & CHANNEL_MASK, argb & CHANNEL_MASK, (argb >>> ALPHA_SHIFT) & CHANNEL_MASK);
+			}
+		}
+	}
+}
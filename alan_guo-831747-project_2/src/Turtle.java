@@ -1,5 +1,3 @@
-import org.newdawn.slick.Input;
-
 /**
  * A rideable turtle, which travels at constant speed and direction. Dives
  * underwater and becomes unrideable and is not rendered for a certain time.
@@ -7,46 +5,38 @@ import org.newdawn.slick.Input;
  * by Alan Guo, University of Melbourne
  */
 public class Turtle extends RideableSprite {
-	private static final String ASSET_PATH = "assets/turtles.png";
-	private static final float SPEED = 0.085f;
-	private static final float TIME_LOOP = (7+2)*World.SEC_TO_MILLISEC;
-	private static final float TIME_UNDERWATER = 7*World.SEC_TO_MILLISEC;
-	private float timer = 0;
 
 	/**
-	 * Create a turtle based on initial location and direction.
+	 * Create a turtle based on its archetype, initial location and direction.
+	 * The looping dive timer is kept and advanced by the archetype's movement.
 	 * 
-	 * @param x        The x-coordinate of the sprite.
-	 * @param y        The y-coordinate of the sprite.
-	 * @param dirRight True if sprite is moving right.
+	 * @param archetype The archetype of the turtle, giving its dive loop.
+	 * @param x         The x-coordinate of the sprite.
+	 * @param y         The y-coordinate of the sprite.
+	 * @param dirRight  True if sprite is moving right.
 	 */
-	public Turtle(float x, float y, boolean dirRight) {
-		super(ASSET_PATH, x, y, dirRight, SPEED);
+	public Turtle(Archetype archetype, float x, float y, boolean dirRight) {
+		super(archetype, x, y, dirRight);
 	}
 
 	@Override
-	public void update(Input input, int delta) {
-		// update looping timer since last frame
-		timer += delta;
-		timer %= TIME_LOOP;
-
-		super.update(input, delta);
+	public boolean isFloatingAt(long time) {
+		// If sufficient time has passed in the loop, the turtle will be not floating
+		return getTimerAt(time) <= getArchetype().getTimeFloating();
 	}
 
 	@Override
-	public boolean isFloating() {
-		// If sufficient time has passed, the turtle will be not floating
-		if (timer > TIME_UNDERWATER) {
-			return false;
+	public int getTags() {
+		// a diving turtle cannot be ridden
+		if (!isFloating()) {
+			return super.getTags() & ~CollisionLayer.RIDEABLE;
 		}
-		return super.isFloating();
+		return super.getTags();
 	}
 
 	@Override
-	public void render() {
-		if (isFloating()) {
-			super.render();
-		}
+	protected boolean isVisible() {
+		return isFloating();
 	}
 
 }
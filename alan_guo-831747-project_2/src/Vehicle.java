@@ -0,0 +1,23 @@
+
+/**
+ * A vehicle, which travels along its lane at constant speed, either wrapping
+ * around the screen or reversing direction at set boundaries. Buses, racecars,
+ * bulldozers and bikes are all vehicles, differing only in their archetype.
+ * 
+ * by Alan Guo, University of Melbourne
+ */
+public class Vehicle extends MovingSprite {
+
+	/**
+	 * Creates a vehicle via its archetype, initial position and direction of
+	 * traversal.
+	 * 
+	 * @param archetype The archetype of the vehicle, such as "bus".
+	 * @param x         The initial x-coordinate of the vehicle.
+	 * @param y         The initial y-coordinate of the vehicle.
+	 * @param dirRight  True if moving right.
+	 */
+	public Vehicle(Archetype archetype, float x, float y, boolean dirRight) {
+		super(archetype, x, y, dirRight);
+	}
+}
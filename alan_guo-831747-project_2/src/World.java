@@ -1,11 +1,15 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.IOException;
 import utilities.BoundingBox;
-import java.util.Random;
 import org.newdawn.slick.Graphics;
-import org.newdawn.slick.Input;
 
 /**
  * Initialises, updates and renders the sprites of Shadow Leap from level files.
@@ -20,9 +24,14 @@ public class World {
 	/** tile width and height, in pixels */
 	public static final int TILE_SIZE = 48;
 
-	private static final int N_LEVELS = 2;
 	private static final String[] LEVEL_PATHS = new String[] { "assets/levels/0.lvl", "assets/levels/1.lvl" };
-	private static int currentLevel = 0;
+	// the levels of this game, played in order
+	private final String[] levelPaths;
+	// levels given in memory instead of by file, or null
+	private final BinaryLevel[] levels;
+	/** name recorded for a level given in memory */
+	public static final String IN_MEMORY_LEVEL = "(in memory)";
+	private int currentLevel = 0;
 
 	// index format of the .lvl files to load sprites from
 	private static final int TYPE_INDEX = 0;
@@ -30,22 +39,42 @@ public class World {
 	private static final int Y_INDEX = 2;
 	private static final int DIR_RIGHT_INDEX = 3;
 
-	// tile tags to be used in levelBuilder() method.
-	private static final String WATER_TILE = "water";
-	private static final String GRASS_TILE = "grass";
-	private static final String TREE_TILE = "tree";
-	private static final String BUS_TILE = "bus";
-	private static final String BULLDOZER_TILE = "bulldozer";
-	private static final String RACECAR_TILE = "racecar";
-	private static final String BIKE_TILE = "bike";
-	private static final String TURTLE_TILE = "turtle";
-	private static final String LOG_TILE = "log";
-	private static final String LONG_LOG_TILE = "longLog";
-
 	// sprites contains all sprites except logs and longlogs, player, and extra life.
 	private ArrayList<Sprite> sprites = new ArrayList<>();
 	private ArrayList<LogType> logs = new ArrayList<>();
+	// broadphase indexes of the above, bucketed by row
+	private LaneIndex<Sprite> spriteIndex = new LaneIndex<>();
+	private LaneIndex<LogType> logIndex = new LaneIndex<>();
+	// state of all moving sprites and logs, moved together each frame
+	private EntityStore lanes = new EntityStore();
+	// sprites near the player, for its movement checks
+	private ArrayList<Sprite> nearby = new ArrayList<>();
+	// sprites the player touched during the update, in order of the time they first touched
+	private ArrayList<Sprite> contacts = new ArrayList<>();
+	// draws the sprites each frame, kept so its arrays are reused
+	private SpriteBatch batch = new SpriteBatch();
+	// gameplay events, for consumers outside the tick
+	private final EventBus events = new EventBus();
+	// counts the times every lane was moved back to its start, by a new level or game
+	private int restarts = 0;
+	private float[] contactTimes = new float[16];
+	// the player the camera follows, and every player racing on the lanes, the first included
 	private Player frog;
+	private ArrayList<Player> players = new ArrayList<>();
+	// holds the input of a single player game, so both update() methods share one tick
+	private final InputSource[] soloInput = new InputSource[1];
+	// the level being played, streamed in a chunk at a time around the camera
+	private BinaryLevel level = null;
+	private int levelHeight = App.SCREEN_HEIGHT;
+	// y-coordinate of the top of the screen, in the world
+	private float cameraY = 0;
+	// chunks loaded around the camera, and unloaded ones kept for reuse
+	private ArrayList<LevelChunk> chunks = new ArrayList<>();
+	private ArrayList<LevelChunk> chunkPool = new ArrayList<>();
+	// the chunk sprites are being built for, or null if not streaming
+	private LevelChunk loadingChunk = null;
+	// per-phase timings, off unless started with -Dprofile=true or toggled in game
+	private FrameProfiler profiler = new FrameProfiler(Boolean.getBoolean("profile"));
 
 	/** Conversion from seconds to milliseconds. */
 	public static final int SEC_TO_MILLISEC = 1000;
@@ -53,7 +82,12 @@ public class World {
 	// timer for spawning ExtraLife object.
 	private int timer = 0;
 	private int extraLifeSpawnTime;
+	// the ExtraLife object is created on first spawn, then reused while inactive
 	private ExtraLife extraLife = null;
+	private boolean extraLifeActive = false;
+	// shared random number generator, seeded so a game can be reproduced
+	private final StatefulRandom rand;
+	private long seed;
 
 	private static final Integer[] HOLE_LOC_X = new Integer[] { (96 + 144) / 2, (288 + 336) / 2, (480 + 528) / 2,
 																(672 + 720) / 2, (864 + 912) / 2 };
@@ -61,25 +95,104 @@ public class World {
 	private static final int HOLE_WIDTH = 2 * TILE_SIZE;
 	private static final int HOLE_HEIGHT = TILE_SIZE;
 	private static final int N_HOLES = HOLE_LOC_X.length;
+	// size of the world's own part of the state written by writeState(), in bytes
+	private static final int STATE_BYTES = 34;
 	// Array to check if a hole has been filled
-	private static Boolean[] holesFilled = new Boolean[N_HOLES];
+	private boolean[] holesFilled = new boolean[N_HOLES];
 	// Array of BoundingBox objects for the player to reach
 	private BoundingBox[] holes = new BoundingBox[N_HOLES];
+	// the frog shown in each hole once filled, created once and reused every level
+	private FillHoleFrog[] filledFrogs = new FillHoleFrog[N_HOLES];
+
+	// the game ends when the player runs out of lives or completes every level
+	private boolean gameOver = false;
+	private boolean won = false;
+	// outcome of the game so far
+	private long ticks = 0;
+	private int holesFilledTotal = 0;
 
 	/**
 	 * Initialises World object by building sprites of the first level, the holes to
 	 * be filled, player object, and a spawn time for ExtraLife object.
 	 */
 	public World() {
+		this(LEVEL_PATHS, System.nanoTime());
+	}
+
+	/**
+	 * Initialises World object by building sprites of the first level, the holes to
+	 * be filled, player object, and a spawn time for ExtraLife object.
+	 * 
+	 * @param seed The seed for the random events of the game.
+	 */
+	public World(long seed) {
+		this(LEVEL_PATHS, seed);
+	}
+
+	/**
+	 * Initialises World object by building sprites of a given level file, the
+	 * holes to be filled, player object, and a spawn time for ExtraLife object.
+	 * 
+	 * @param levelPath The location of the level file to load.
+	 */
+	public World(String levelPath) {
+		this(new String[] { levelPath }, System.nanoTime());
+	}
+
+	/**
+	 * Initialises World object by building sprites of a given level file, the
+	 * holes to be filled, player object, and a spawn time for ExtraLife object.
+	 * 
+	 * @param levelPath The location of the level file to load.
+	 * @param seed      The seed for the random events of the game.
+	 */
+	public World(String levelPath, long seed) {
+		this(new String[] { levelPath }, seed);
+	}
+
+	/**
+	 * Initialises World object by building sprites of the first of a sequence
+	 * of level files, the holes to be filled, player object, and a spawn time
+	 * for ExtraLife object.
+	 * 
+	 * @param levelPaths The locations of the level files, in the order they are played.
+	 * @param seed       The seed for the random events of the game.
+	 */
+	public World(String[] levelPaths, long seed) {
+		this(levelPaths, null, seed);
+	}
+
+	/**
+	 * Initialises World object by building sprites of a level already in
+	 * memory, such as one made by LevelGenerator, the holes to be filled,
+	 * player object, and a spawn time for ExtraLife object.
+	 * 
+	 * @param level The level to play.
+	 * @param seed  The seed for the random events of the game.
+	 */
+	public World(BinaryLevel level, long seed) {
+		this(new String[] { IN_MEMORY_LEVEL }, new BinaryLevel[] { level }, seed);
+	}
+
+	private World(String[] levelPaths, BinaryLevel[] levels, long seed) {
+		this.levelPaths = levelPaths;
+		this.levels = levels;
+		this.seed = seed;
+		rand = new StatefulRandom(seed);
+
+		// create player, which the camera follows as the level streams in
+		frog = new Player(Player.X_INIT, Player.Y_INIT);
+		frog.setEvents(events);
+		players.add(frog);
 
 		// create tiles based off level file
-		levelLoader(LEVEL_PATHS[currentLevel]);
+		loadLevel(currentLevel);
 
 		// create holes to be filled
 		holesBuilder();
-
-		// create player
-		frog = new Player(Player.X_INIT, Player.Y_INIT);
+		for (int i = 0; i < N_HOLES; i++) {
+			filledFrogs[i] = new FillHoleFrog(HOLE_LOC_X[i], HOLE_LOC_Y);
+		}
 
 		// initialise random spawn time for ExtraLife object
 		setExtraLifeSpawnTime();
@@ -89,115 +202,457 @@ public class World {
 	/**
 	 * Update the game state for a frame.
 	 * 
-	 * @param input The object responsible for all input.
+	 * @param input The source of key presses for the player.
 	 * @param delta Time passed since last frame (milliseconds).
 	 */
-	public void update(Input input, int delta) {
+	public void update(InputSource input, int delta) {
+		soloInput[0] = input;
+		update(soloInput, delta);
+	}
+
+	/**
+	 * Update the game state for a frame, with every player moving at once on
+	 * the same lanes. The game is over once every active player has lost their
+	 * last life, or every level is complete.
+	 * 
+	 * @param inputs The source of key presses for each player, by index.
+	 * @param delta  Time passed since last frame (milliseconds).
+	 */
+	public void update(InputSource[] inputs, int delta) {
+		if (gameOver) {
+			return;
+		}
+		ticks++;
+		events.setTick(ticks);
+		long tickStart = profiler.start();
+		long phaseStart = tickStart;
+		spriteIndex.resetCounters();
+		logIndex.resetCounters();
+
 		// If ExtraLife object yet to spawn, keep updating the timer
-		if (extraLife == null) {
+		if (!extraLifeActive) {
 			if (timer < extraLifeSpawnTime) {
 				timer += delta;
-			} else {
-				// If enough time has elapsed, create extra life object.
-				Random rand = new Random();
-				extraLife = new ExtraLife(logs.get(rand.nextInt(logs.size())));
+			} else if (!logs.isEmpty()) {
+				// If enough time has elapsed, spawn extra life object.
+				LogType log = logs.get(rand.nextInt(logs.size()));
+				if (extraLife == null) {
+					extraLife = new ExtraLife(log);
+				} else {
+					extraLife.reset(log);
+				}
+				extraLifeActive = true;
 				// Reset timer, and a new random spawn time.
 				timer = 0;
 				setExtraLifeSpawnTime();
 			}
 		} else {
 
-			extraLife.update(input, delta);
+			extraLife.update(inputs[0], delta);
 
-			// When player makes contact with ExtraLife object, destroy it and add one to existing lives.
-			if (frog.collides(extraLife)) {
-				extraLife = null;
-				frog.extraLife();
+			// When a player makes contact with ExtraLife object, destroy it and add one to their lives.
+			for (int p = 0; p < players.size() && extraLifeActive; p++) {
+				Player player = players.get(p);
+				if (player.isActive() && !player.isDead() && player.collides(extraLife)) {
+					extraLifeActive = false;
+					player.extraLife();
+					events.publish(EventBus.LIFE_GAINED, extraLife.getX(), extraLife.getY(), player.getLives());
+				}
 			}
 
 			// When sufficient time runs out, ExtraLife object is destroyed.
-			if (extraLife != null && extraLife.toDisappear()) {
-				extraLife = null;
+			if (extraLifeActive && extraLife.toDisappear()) {
+				extraLifeActive = false;
 			}
 		}
 
-		// loop over all sprites to test for intersection with player.
-		for (LogType log : logs) {
-			if (frog.collides(log)) {
-				frog.onCollision(log);
+		for (int p = 0; p < players.size(); p++) {
+			if (players.get(p).isActive() && !players.get(p).isDead()) {
+				collide(players.get(p));
 			}
 		}
 
-		for (Sprite sprite2 : sprites) {
-			if (frog.collides(sprite2)) {
-				frog.onCollision(sprite2);
+		profiler.stop(FrameProfiler.COLLISION, phaseStart);
+		phaseStart = profiler.start();
+
+		// players no one plays are left out, so the game ends once everyone playing is dead
+		boolean allDead = true;
+		boolean anyActive = false;
+		for (int p = 0; p < players.size(); p++) {
+			Player player = players.get(p);
+			if (!player.isActive()) {
+				continue;
+			}
+			anyActive = true;
+			if (!player.isDead()) {
+				move(player, inputs[p], delta);
 			}
+			allDead = allDead && player.isDead();
+		}
+		if (anyActive && allDead) {
+			gameOver = true;
 		}
 
-		frog.update(input, delta, sprites);
+		// follow the player with the camera, streaming chunks in and out
+		streamChunks();
 
-		// loop over all holes to test for intersection with player.
-		for (int i = 0; i < N_HOLES; i++) {
-			if (frog.collides(holes[i])) {
-				// if a hole was not previously filled, return player to starting position and fill the hole.
-				if (!holesFilled[i]) {
-					frog.setX(Player.X_INIT);
-					frog.setY(Player.Y_INIT);
-					sprites.add(new FillHoleFrog(HOLE_LOC_X[i], HOLE_LOC_Y));
-					holesFilled[i] = true;
-				}
-			}
-		}
+		profiler.stop(FrameProfiler.PLAYER, phaseStart);
+		phaseStart = profiler.start();
 
-		for (LogType log : logs) {
-			log.update(input, delta);
-		}
+		// moving sprites and logs are moved by their archetype's loop in the store
+		lanes.update(delta);
 
-		for (Sprite sprite : sprites) {
-			sprite.update(input, delta);
+		for (int i = 0; i < sprites.size(); i++) {
+			sprites.get(i).update(inputs[0], delta);
 		}
-		
+		profiler.stop(FrameProfiler.LANES, phaseStart);
+		phaseStart = profiler.start();
+
 		levelUpdate();
+		profiler.stop(FrameProfiler.LEVEL, phaseStart);
+
+		// consumers see the tick's events once it is over
+		events.dispatch();
+		profiler.stop(FrameProfiler.TICK, tickStart);
 	}
 
 	/**
 	 * Render all sprites on the screen.
 	 * 
-	 * @param g The Slick graphics object, used for drawing.
+	 * @param g     The Slick graphics object, used for drawing.
+	 * @param alpha How far the frame is between the last update and the next,
+	 *              from 0 to 1, used to draw moving sprites in between.
 	 */
-	public void render(Graphics g) {
+	public void render(Graphics g, float alpha) {
+		long renderStart = profiler.start();
+		lanes.setAlpha(alpha);
+		for (int p = 0; p < players.size(); p++) {
+			players.get(p).setRenderAlpha(alpha);
+		}
 
-		for (Sprite sprite : sprites) {
-			sprite.render();
+		// the world is drawn scrolled to the camera
+		g.translate(0, -cameraY);
+		boolean baked = !chunks.isEmpty();
+		for (int i = 0; i < chunks.size(); i++) {
+			StaticLayer background = chunks.get(i).getBackground();
+			background.render();
+			baked = baked && background.isBuilt();
 		}
 
+		// everything else is drawn from the atlas, in as few texture binds as it takes
+		TextureAtlas atlas = AssetRegistry.getAtlas();
+		batch.setSheet(atlas == null ? null : atlas.getPage());
+		for (Sprite sprite : sprites) {
+			if (!baked || !sprite.isStatic()) {
+				sprite.render(batch, sprite.isStatic() ? SpriteBatch.TILES : SpriteBatch.LANES);
+			}
+		}
 		for (LogType log : logs) {
-			log.render();
+			log.render(batch, SpriteBatch.LANES);
 		}
-		frog.render();
-
-		if (extraLife != null) {
-			extraLife.render();
+		for (int p = 0; p < players.size(); p++) {
+			if (players.get(p).isActive() && !players.get(p).isDead()) {
+				players.get(p).render(batch, SpriteBatch.ACTORS);
+			}
+		}
+		if (extraLifeActive) {
+			extraLife.render(batch, SpriteBatch.ACTORS);
 		}
+		batch.flush();
+
+		g.resetTransform();
+		frog.renderLives(batch);
+		batch.flush();
+		profiler.stop(FrameProfiler.RENDER, renderStart);
 	}
 
 	/**
-	 * Loads the sprites for a level, described in a CSV format file.
+	 * Opens a level, described in a CSV format file, and streams in the
+	 * sprites near the player's starting position. The level is read from its
+	 * compiled form made by LevelCompiler, which is made first if need be.
 	 * 
 	 * @param stringName The location of the file to load.
+	 * @throws IllegalStateException If the level cannot be read or is invalid.
 	 */
 	public void levelLoader(String stringName) {
-		try (BufferedReader br = new BufferedReader(new FileReader(stringName))) {
+		BinaryLevel opened;
+		try {
+			opened = LevelCompiler.open(stringName);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not load level " + stringName + ": " + e.getMessage(), e);
+		}
+		levelLoader(opened);
+	}
+
+	/**
+	 * Starts playing a compiled level, streaming in the sprites near the
+	 * player's starting position.
+	 * 
+	 * @param level The level to play.
+	 * @throws IllegalArgumentException If there is no level.
+	 */
+	public void levelLoader(BinaryLevel level) {
+		if (level == null) {
+			throw new IllegalArgumentException("No level to load");
+		}
+		this.level = level;
+		restarts++;
+
+		levelHeight = heightOf(level);
+		for (int p = 0; p < players.size(); p++) {
+			players.get(p).setWorldHeight(levelHeight);
+			players.get(p).respawn();
+		}
+		streamChunks();
+	}
+
+	// loads one of the levels of this game, from memory if it was given that way
+	private void loadLevel(int index) {
+		if (levels != null) {
+			levelLoader(levels[index]);
+		} else {
+			levelLoader(levelPaths[index]);
+		}
+	}
+
+	/*
+	 * Moves the camera to follow the player, then loads the chunks within a
+	 * chunk of the screen, and releases those more than two chunks away.
+	 */
+	private void streamChunks() {
+		cameraY = Math.max(0, Math.min(levelHeight - App.SCREEN_HEIGHT, frog.getY() - App.SCREEN_HEIGHT / 2));
+		if (level == null) {
+			return;
+		}
+		int first = LevelChunk.indexOf(cameraY - LevelChunk.HEIGHT);
+		int last = LevelChunk.indexOf(cameraY + App.SCREEN_HEIGHT + LevelChunk.HEIGHT);
+
+		for (int i = chunks.size() - 1; i >= 0; i--) {
+			int index = chunks.get(i).getIndex();
+			if (index < first - 1 || index > last + 1) {
+				unloadChunk(i);
+			}
+		}
+		for (int index = first; index <= last && LevelChunk.top(index) < levelHeight - TILE_SIZE / 2; index++) {
+			if (!isLoaded(index)) {
+				loadChunk(index);
+			}
+		}
+	}
 
-			String text;
-			// builds sprite from each line
-			while ((text = br.readLine()) != null) {
-				String[] columns = text.split(",");
-				spriteBuilder(columns);
+	private boolean isLoaded(int index) {
+		for (int i = 0; i < chunks.size(); i++) {
+			if (chunks.get(i).getIndex() == index) {
+				return true;
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
 		}
+		return false;
+	}
+
+	// builds the sprites of a chunk straight from the mapped records, found by binary search
+	private void loadChunk(int index) {
+		LevelChunk chunk = chunkPool.isEmpty() ? new LevelChunk() : chunkPool.remove(chunkPool.size() - 1);
+		chunk.setIndex(index);
+		int top = LevelChunk.top(index);
+		// sprites partly above the level belong to its first chunk
+		int from = index == 0 ? 0 : level.firstAtOrBelow(top);
+
+		loadingChunk = chunk;
+		for (int i = from; i < level.size() && level.getY(i) < top + LevelChunk.HEIGHT; i++) {
+			spriteBuilder(level.getType(i), level.getX(i), level.getY(i), level.getDirRight(i));
+		}
+		loadingChunk = null;
+		chunks.add(chunk);
+
+		// rasterise the stationary tiles of the chunk, unless there is no display
+		if (!AssetRegistry.isHeadless()) {
+			chunk.getBackground().build(chunk.getSprites(), top);
+		}
+	}
+
+	// removes the sprites of a chunk from the game, and gives their images back
+	private void unloadChunk(int i) {
+		LevelChunk chunk = chunks.remove(i);
+		ArrayList<Sprite> chunkSprites = chunk.getSprites();
+		for (int j = 0; j < chunkSprites.size(); j++) {
+			releaseSprite(chunkSprites.get(j));
+		}
+		// one pass over each list, rather than a search for every sprite of the chunk
+		removeReleased(sprites);
+		removeReleased(logs);
+		chunkSprites.clear();
+		chunk.getBackground().destroy();
+		chunkPool.add(chunk);
+	}
+
+	// takes a sprite built by spriteBuilder() out of the game, and gives its image back
+	private void removeSprite(Sprite sprite) {
+		if (sprite instanceof LogType) {
+			logs.remove(sprite);
+		} else {
+			sprites.remove(sprite);
+		}
+		releaseSprite(sprite);
+	}
+
+	// takes a sprite out of everything but the sprite lists, and gives its image back
+	private void releaseSprite(Sprite sprite) {
+		if (sprite instanceof LogType) {
+			logIndex.remove((LogType) sprite);
+			// the extra life leaves with the log it rides on, and lets go of it
+			if (extraLife != null && extraLife.getLog() == sprite) {
+				extraLifeActive = false;
+				extraLife.drop();
+			}
+		} else {
+			spriteIndex.remove(sprite);
+		}
+		if (sprite instanceof MovingSprite) {
+			lanes.remove((MovingSprite) sprite);
+		}
+		sprite.release();
+	}
+
+	// drops the released sprites from a list, keeping the others in order
+	private static void removeReleased(ArrayList<? extends Sprite> list) {
+		int kept = 0;
+		for (int i = 0; i < list.size(); i++) {
+			if (!list.get(i).isReleased()) {
+				Collections.swap(list, kept++, i);
+			}
+		}
+		list.subList(kept, list.size()).clear();
+	}
+
+	// the level is as tall as its lowest row, and at least a screen tall
+	private static int heightOf(BinaryLevel level) {
+		int height = App.SCREEN_HEIGHT;
+		if (level != null && level.size() > 0) {
+			int rows = LaneIndex.rowOf(level.getY(level.size() - 1)) + 1;
+			height = Math.max(height, rows * TILE_SIZE);
+		}
+		return height;
+	}
+
+	/**
+	 * Swaps the level being played for an edited version of it, such as one
+	 * saved by a level designer while the game runs. Only the sprites of
+	 * records which changed are added or removed, and only in the chunks
+	 * loaded; the rest of the level streams in from the edited version as
+	 * the camera reaches it. The players, the holes and the lanes' clock are
+	 * left as they are.
+	 * 
+	 * @param edited The new version of the level being played.
+	 * @return the number of sprites added or removed
+	 */
+	public int reloadLevel(BinaryLevel edited) {
+		BinaryLevel previous = level;
+		level = edited;
+		int touched = 0;
+		if (previous == null || edited == null) {
+			while (!chunks.isEmpty()) {
+				touched += chunks.get(chunks.size() - 1).getSprites().size();
+				unloadChunk(chunks.size() - 1);
+			}
+		} else {
+			for (int i = 0; i < chunks.size(); i++) {
+				touched += reloadChunk(chunks.get(i), previous, edited);
+			}
+		}
+
+		// rows may have been added or removed at the bottom, moving the start
+		int height = heightOf(edited);
+		if (height != levelHeight) {
+			levelHeight = height;
+			for (int p = 0; p < players.size(); p++) {
+				players.get(p).setWorldHeight(levelHeight);
+			}
+		}
+		int before = chunks.size();
+		streamChunks();
+		for (int i = before; i < chunks.size(); i++) {
+			touched += chunks.get(i).getSprites().size();
+		}
+		return touched;
+	}
+
+	/*
+	 * Brings a loaded chunk up to date with an edited level. The chunk's
+	 * sprites are in the order of the old level's records, and the records of
+	 * both versions are sorted the same way, so past the records the two have
+	 * in common at either end, the sprites of the old records are matched to
+	 * the new records by their type, position and direction. Sprites left
+	 * unmatched are removed, and records left unmatched are built.
+	 */
+	private int reloadChunk(LevelChunk chunk, BinaryLevel previous, BinaryLevel edited) {
+		int top = LevelChunk.top(chunk.getIndex());
+		int bottom = top + LevelChunk.HEIGHT;
+		int oldFrom = chunk.getIndex() == 0 ? 0 : previous.firstAtOrBelow(top);
+		int oldTo = previous.firstAtOrBelow(bottom);
+		int newFrom = chunk.getIndex() == 0 ? 0 : edited.firstAtOrBelow(top);
+		int newTo = edited.firstAtOrBelow(bottom);
+
+		int head = 0;
+		while (oldFrom + head < oldTo && newFrom + head < newTo
+				&& sameRecord(previous, oldFrom + head, edited, newFrom + head)) {
+			head++;
+		}
+		int tail = 0;
+		while (oldTo - tail > oldFrom + head && newTo - tail > newFrom + head
+				&& sameRecord(previous, oldTo - tail - 1, edited, newTo - tail - 1)) {
+			tail++;
+		}
+		if (oldFrom + head == oldTo && newFrom + head == newTo) {
+			return 0;
+		}
+
+		// the sprites of the changed old records, by record
+		ArrayList<Sprite> chunkSprites = chunk.getSprites();
+		HashMap<String, ArrayDeque<Sprite>> unmatched = new HashMap<>();
+		for (int i = oldFrom + head; i < oldTo - tail; i++) {
+			unmatched.computeIfAbsent(recordKey(previous, i), key -> new ArrayDeque<>())
+					.add(chunkSprites.get(i - oldFrom));
+		}
+		ArrayList<Sprite> suffix = new ArrayList<>(chunkSprites.subList(oldTo - oldFrom - tail, oldTo - oldFrom));
+		chunkSprites.subList(head, chunkSprites.size()).clear();
+
+		int touched = 0;
+		boolean staticChanged = false;
+		loadingChunk = chunk;
+		for (int i = newFrom + head; i < newTo - tail; i++) {
+			ArrayDeque<Sprite> matches = unmatched.get(recordKey(edited, i));
+			if (matches != null && !matches.isEmpty()) {
+				chunkSprites.add(matches.poll());
+			} else {
+				spriteBuilder(edited.getType(i), edited.getX(i), edited.getY(i), edited.getDirRight(i));
+				staticChanged = staticChanged || chunkSprites.get(chunkSprites.size() - 1).isStatic();
+				touched++;
+			}
+		}
+		loadingChunk = null;
+		chunkSprites.addAll(suffix);
+		for (ArrayDeque<Sprite> left : unmatched.values()) {
+			for (Sprite sprite : left) {
+				staticChanged = staticChanged || sprite.isStatic();
+				removeSprite(sprite);
+				touched++;
+			}
+		}
+
+		// the baked background holds the stationary tiles, so it is baked again if they changed
+		if (staticChanged && !AssetRegistry.isHeadless()) {
+			chunk.getBackground().build(chunkSprites, top);
+		}
+		return touched;
+	}
+
+	private static boolean sameRecord(BinaryLevel a, int i, BinaryLevel b, int j) {
+		return a.getX(i) == b.getX(j) && a.getY(i) == b.getY(j) && a.getDirRight(i) == b.getDirRight(j)
+				&& a.getType(i).equals(b.getType(j));
+	}
+
+	private static String recordKey(BinaryLevel level, int i) {
+		return level.getType(i) + "," + level.getX(i) + "," + level.getY(i) + "," + level.getDirRight(i);
 	}
 
 	/**
@@ -213,41 +668,56 @@ public class World {
 		if (item.length > DIR_RIGHT_INDEX) {
 			dirRight = Boolean.parseBoolean(item[DIR_RIGHT_INDEX]);
 		}
+		spriteBuilder(item[TYPE_INDEX], x, y, dirRight);
+	}
 
-		// build the sprite depending on the tile tag, location, and direction of movement
-		switch (item[TYPE_INDEX]) {
-		case WATER_TILE:
-			sprites.add(Tile.createWaterTile(x, y));
-			break;
-		case GRASS_TILE:
-			sprites.add(Tile.createGrassTile(x, y));
-			break;
-		case TREE_TILE:
-			sprites.add(Tile.createTreeTile(x, y));
-			break;
-		case BUS_TILE:
-			sprites.add(new Bus(x, y, dirRight));
-			break;
-		case BULLDOZER_TILE:
-			sprites.add(new Bulldozer(x, y, dirRight));
-			break;
-		case BIKE_TILE:
-			sprites.add(new Bike(x, y, dirRight));
-			break;
-		case RACECAR_TILE:
-			sprites.add(new Racecar(x, y, dirRight));
-			break;
-		case TURTLE_TILE:
-			sprites.add(new Turtle(x, y, dirRight));
-			break;
-		case LOG_TILE:
-			logs.add(new Log(x, y, dirRight));
-			break;
-		case LONG_LOG_TILE:
-			logs.add(new LongLog(x, y, dirRight));
-			break;
+	/**
+	 * Creates a sprite based off its tile tag, location, and direction of movement.
+	 * 
+	 * @param type     The tile tag of the sprite.
+	 * @param x        The x-coordinate of the sprite.
+	 * @param y        The y-coordinate of the sprite.
+	 * @param dirRight True if the sprite moves right (ignored by tiles).
+	 * @throws IllegalArgumentException If the tile tag is unknown, or names a sprite made by the game itself.
+	 */
+	public void spriteBuilder(String type, int x, int y, boolean dirRight) {
+		// every kind of sprite is described by its archetype, read from a data file
+		Sprite built = ArchetypeRegistry.get(type).create(x, y, dirRight);
+		Sprite sprite = null;
+		LogType log = null;
+		// logs are kept apart, as the extra life rides them
+		if (built instanceof LogType) {
+			log = (LogType) built;
+		} else {
+			sprite = built;
+		}
 
+		if (loadingChunk != null) {
+			loadingChunk.getSprites().add(sprite != null ? sprite : log);
 		}
+
+		if (sprite != null) {
+			sprites.add(sprite);
+			spriteIndex.add(sprite);
+			if (sprite instanceof MovingSprite) {
+				lanes.attach((MovingSprite) sprite);
+			}
+		}
+		if (log != null) {
+			logs.add(log);
+			logIndex.add(log);
+			lanes.attach(log);
+		}
+	}
+
+	/**
+	 * Check if a tile tag names a kind of sprite which can appear in a level file.
+	 * 
+	 * @param type The tile tag to check.
+	 * @return True if the tag is known.
+	 */
+	public static boolean isSpriteType(String type) {
+		return ArchetypeRegistry.isLevelType(type);
 	}
 
 	/**
@@ -257,44 +727,635 @@ public class World {
 	 */
 	public void holesBuilder() {
 		for (int i = 0; i < N_HOLES; i++) {
-			holes[i] = new BoundingBox(HOLE_LOC_X[i], HOLE_LOC_Y, HOLE_WIDTH, HOLE_HEIGHT);
+			if (holes[i] == null) {
+				holes[i] = new BoundingBox(HOLE_LOC_X[i], HOLE_LOC_Y, HOLE_WIDTH, HOLE_HEIGHT);
+			}
 			holesFilled[i] = false;
 		}
 	}
 
+	/**
+	 * Restarts the game from the first level, reusing the existing sprites
+	 * where the first level is still loaded.
+	 * 
+	 * @param seed The seed for the random events of the new game.
+	 */
+	public void reset(long seed) {
+		this.seed = seed;
+		rand.setSeed(seed);
+		restarts++;
+		if (currentLevel == 0) {
+			// put every sprite back where the level file placed it
+			for (FillHoleFrog filled : filledFrogs) {
+				if (sprites.remove(filled)) {
+					spriteIndex.remove(filled);
+				}
+			}
+			lanes.reset();
+		} else {
+			clearLevel();
+			currentLevel = 0;
+			loadLevel(currentLevel);
+		}
+		holesBuilder();
+		for (int p = 0; p < players.size(); p++) {
+			players.get(p).reset();
+		}
+		streamChunks();
+
+		timer = 0;
+		extraLifeActive = false;
+		setExtraLifeSpawnTime();
+		gameOver = false;
+		won = false;
+		ticks = 0;
+		holesFilledTotal = 0;
+	}
+
+	/**
+	 * Check if the game has ended, either by the player running out of lives or
+	 * by completing every level.
+	 * 
+	 * @return True if the game is over.
+	 */
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	/**
+	 * Check if the game ended by completing every level.
+	 * 
+	 * @return True if every level was completed.
+	 */
+	public boolean isWon() {
+		return won;
+	}
+
+	/**
+	 * Accesses the number of updates run since the game started.
+	 * 
+	 * @return the number of ticks
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Accesses the number of holes filled since the game started, over all levels.
+	 * 
+	 * @return the number of holes filled
+	 */
+	public int getHolesFilled() {
+		return holesFilledTotal;
+	}
+
+	/**
+	 * Accesses the index of the level being played.
+	 * 
+	 * @return the current level, counting from 0
+	 */
+	public int getLevel() {
+		return currentLevel;
+	}
+
+	/**
+	 * Accesses the number of bands of the level loaded, each drawn with its
+	 * own baked background.
+	 * 
+	 * @return the number of chunks loaded
+	 */
+	public int getLoadedChunks() {
+		return chunks.size();
+	}
+
+	/**
+	 * Accesses the number of levels of the game.
+	 * 
+	 * @return the number of levels, at least 1
+	 */
+	public int getLevelCount() {
+		return levels != null ? levels.length : levelPaths.length;
+	}
+
+	/**
+	 * Accesses the size of the state written by writeState(), which is fixed
+	 * for as long as the same level is loaded with the same players.
+	 * 
+	 * @return the size of the state, in bytes
+	 */
+	public int getStateSize() {
+		return getStateSize(players.size());
+	}
+
+	/**
+	 * Accesses the size of the state written by writeState() for a number of
+	 * players.
+	 * 
+	 * @param players The number of players.
+	 * @return the size of the state, in bytes
+	 */
+	public static int getStateSize(int players) {
+		return STATE_BYTES + players * Player.STATE_BYTES + ExtraLife.STATE_BYTES + EntityStore.STATE_BYTES;
+	}
+
+	/**
+	 * Writes every part of the game state which changes while a level is
+	 * played: timers, random state, holes, the players, the extra life and every
+	 * moving sprite. Allocates nothing, so it can run every update.
+	 * 
+	 * @param out The buffer to write getStateSize() bytes to.
+	 */
+	public void writeState(ByteBuffer out) {
+		out.putInt(currentLevel);
+		out.putLong(ticks);
+		out.putInt(timer);
+		out.putInt(extraLifeSpawnTime);
+		out.putLong(rand.getState());
+		out.putInt(holesFilledTotal);
+		out.put((byte) ((extraLifeActive ? 1 : 0) | (gameOver ? 2 : 0) | (won ? 4 : 0)));
+		int holeMask = 0;
+		for (int i = 0; i < N_HOLES; i++) {
+			holeMask |= holesFilled[i] ? 1 << i : 0;
+		}
+		out.put((byte) holeMask);
+
+		for (int p = 0; p < players.size(); p++) {
+			players.get(p).writeState(out);
+		}
+		lanes.writeState(out);
+		// only an extra life which is out rides a log still in the game
+		if (extraLifeActive) {
+			extraLife.writeState(out);
+		} else {
+			for (int i = 0; i < ExtraLife.STATE_BYTES; i++) {
+				out.put((byte) 0);
+			}
+		}
+	}
+
+	/**
+	 * Restores the game state written by writeState(), which must have been
+	 * written while the same level was loaded with the same players.
+	 * 
+	 * @param in The buffer to read getStateSize() bytes from.
+	 */
+	public void readState(ByteBuffer in) {
+		if (in.getInt() != currentLevel) {
+			throw new IllegalArgumentException("State was written on another level");
+		}
+		ticks = in.getLong();
+		timer = in.getInt();
+		extraLifeSpawnTime = in.getInt();
+		rand.setState(in.getLong());
+		holesFilledTotal = in.getInt();
+		int flags = in.get();
+		extraLifeActive = (flags & 1) != 0;
+		gameOver = (flags & 2) != 0;
+		won = (flags & 4) != 0;
+		int holeMask = in.get();
+		for (int i = 0; i < N_HOLES; i++) {
+			boolean filled = (holeMask & 1 << i) != 0;
+			// the filled hole frogs are sprites, so show or hide them to match
+			if (filled && !holesFilled[i]) {
+				sprites.add(filledFrogs[i]);
+				spriteIndex.add(filledFrogs[i]);
+			} else if (!filled && holesFilled[i]) {
+				sprites.remove(filledFrogs[i]);
+				spriteIndex.remove(filledFrogs[i]);
+			}
+			holesFilled[i] = filled;
+		}
+
+		for (int p = 0; p < players.size(); p++) {
+			players.get(p).readState(in);
+		}
+		lanes.readState(in);
+		// the chunks loaded depend on where the player is
+		streamChunks();
+		if (extraLifeActive && !logs.isEmpty()) {
+			if (extraLife == null) {
+				extraLife = new ExtraLife(logs.get(0));
+			}
+			extraLifeActive = extraLife.readState(in, logIndex);
+		} else {
+			extraLifeActive = false;
+			in.position(in.position() + ExtraLife.STATE_BYTES);
+		}
+	}
+
+	/**
+	 * Accesses the position of the camera, which follows the player through
+	 * levels taller than the screen.
+	 * 
+	 * @return the y-coordinate of the top of the screen, in the world
+	 */
+	public float getCameraY() {
+		return cameraY;
+	}
+
+	/**
+	 * Accesses the bus the gameplay events of the world are published on.
+	 * 
+	 * @return the event bus
+	 */
+	public EventBus getEvents() {
+		return events;
+	}
+
+	/**
+	 * Accesses the time of the clock the lanes move by. Lane sprites can be
+	 * asked where they will be at later times of this clock.
+	 * 
+	 * @return the time, in milliseconds
+	 */
+	public long getLaneTime() {
+		return lanes.getTime();
+	}
+
+	/**
+	 * Accesses the sprites on a row, other than logs. The list must not be
+	 * modified, and may hold sprites of rows sharing its LaneIndex bucket.
+	 * 
+	 * @param row The row index.
+	 * @return the sprites on the row
+	 */
+	public ArrayList<Sprite> getSpritesInRow(int row) {
+		return spriteIndex.getRow(row);
+	}
+
+	/**
+	 * Accesses the logs on a row. The list must not be modified, and may hold
+	 * logs of rows sharing its LaneIndex bucket.
+	 * 
+	 * @param row The row index.
+	 * @return the logs on the row
+	 */
+	public ArrayList<LogType> getLogsInRow(int row) {
+		return logIndex.getRow(row);
+	}
+
+	/**
+	 * Accesses a count of the changes to where sprites are, other than by
+	 * moving along their lanes, so what is known about the rows can be
+	 * cached until it changes.
+	 * 
+	 * @return a number which differs from any earlier one once the rows change
+	 */
+	public int getLayoutVersion() {
+		return restarts + spriteIndex.getVersion() + logIndex.getVersion();
+	}
+
+	/**
+	 * Accesses the number of holes to be filled.
+	 * 
+	 * @return the number of holes
+	 */
+	public int getHoleCount() {
+		return N_HOLES;
+	}
+
+	/**
+	 * Accesses the area of a hole, which the player fills by touching it.
+	 * 
+	 * @param i The index of the hole.
+	 * @return the bounds of the hole
+	 */
+	public BoundingBox getHole(int i) {
+		return holes[i];
+	}
+
+	/**
+	 * Check if a hole has been filled in the current level.
+	 * 
+	 * @param i The index of the hole.
+	 * @return True if the hole is filled.
+	 */
+	public boolean isHoleFilled(int i) {
+		return holesFilled[i];
+	}
+
+	/**
+	 * Accesses the height of the level being played.
+	 * 
+	 * @return the height of the level, in pixels
+	 */
+	public int getLevelHeight() {
+		return levelHeight;
+	}
+
+	/**
+	 * Accesses the number of sprites streamed in, which stays about the same
+	 * however tall the level is.
+	 * 
+	 * @return the number of sprites loaded, logs included
+	 */
+	public int getLoadedSpriteCount() {
+		return sprites.size() + logs.size();
+	}
+
+	/**
+	 * Accesses the seed the random events of the game were generated from.
+	 * 
+	 * @return the seed of the game
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Accesses the level files of the game, in the order they are played.
+	 * 
+	 * @return the locations of the level files
+	 */
+	public String[] getLevelPaths() {
+		return levelPaths.clone();
+	}
+
+	/**
+	 * Computes a hash of the game state: the level, timers, holes, player and
+	 * the position and layers of every sprite. Two games fed the same input
+	 * from the same seed have the same hash after every update.
+	 * 
+	 * @return the hash of the current state
+	 */
+	public long stateHash() {
+		long hash = currentLevel;
+		hash = mix(hash, ticks);
+		hash = mix(hash, timer);
+		hash = mix(hash, extraLifeSpawnTime);
+		hash = mix(hash, gameOver ? 1 : 0);
+		for (int i = 0; i < N_HOLES; i++) {
+			hash = mix(hash, holesFilled[i] ? 1 : 0);
+		}
+		for (int p = 0; p < players.size(); p++) {
+			hash = mix(hash, Float.floatToIntBits(players.get(p).getX()));
+			hash = mix(hash, Float.floatToIntBits(players.get(p).getY()));
+			hash = mix(hash, players.get(p).getLives());
+		}
+		if (extraLifeActive) {
+			hash = mix(hash, Float.floatToIntBits(extraLife.getX()));
+		}
+		for (int i = 0; i < sprites.size(); i++) {
+			Sprite sprite = sprites.get(i);
+			hash = mix(hash, Float.floatToIntBits(sprite.getX()));
+			hash = mix(hash, Float.floatToIntBits(sprite.getY()));
+			hash = mix(hash, sprite.getTags());
+		}
+		for (int i = 0; i < logs.size(); i++) {
+			hash = mix(hash, Float.floatToIntBits(logs.get(i).getX()));
+		}
+		return hash;
+	}
+
+	// folds a value into a hash, so every bit of the value affects the result
+	private static long mix(long hash, long value) {
+		hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+		return hash ^ (hash >>> 32);
+	}
+
+	/**
+	 * Accesses the extra life, while one is out on a log.
+	 * 
+	 * @return the extra life, or null if none is out
+	 */
+	public ExtraLife getExtraLife() {
+		return extraLifeActive ? extraLife : null;
+	}
+
+	/**
+	 * Accesses the player of the game.
+	 * 
+	 * @return the player
+	 */
+	public Player getPlayer() {
+		return frog;
+	}
+
+	/**
+	 * Accesses one of the players racing on the lanes.
+	 * 
+	 * @param i The index of the player, 0 being the one the camera follows.
+	 * @return the player
+	 */
+	public Player getPlayer(int i) {
+		return players.get(i);
+	}
+
+	/**
+	 * Accesses the number of players racing on the lanes.
+	 * 
+	 * @return the number of players, at least 1
+	 */
+	public int getPlayerCount() {
+		return players.size();
+	}
+
+	/**
+	 * Adds a player to race on the same lanes, starting where the first did.
+	 * The camera keeps following the first player, so the lanes are only
+	 * streamed in around them.
+	 * 
+	 * @return the index of the new player, for update(InputSource[], int)
+	 */
+	public int addPlayer() {
+		Player player = new Player(Player.X_INIT, Player.Y_INIT);
+		player.setEvents(events);
+		player.setWorldHeight(levelHeight);
+		player.respawn();
+		players.add(player);
+		return players.size() - 1;
+	}
+
+	/**
+	 * Starts one of the levels of the game with the holes empty, as when the
+	 * previous level is complete.
+	 * 
+	 * @param index The index of the level.
+	 */
+	public void startLevel(int index) {
+		clearLevel();
+		currentLevel = index;
+		loadLevel(currentLevel);
+		holesBuilder();
+	}
+
 	/**
 	 * Generate and set a random spawn time for the ExtraLife object.
 	 */
 	public void setExtraLifeSpawnTime() {
-		Random rand = new Random();
 		extraLifeSpawnTime = SEC_TO_MILLISEC * (SPAWN_INTERVAL[0] + rand.nextInt(SPAWN_INTERVAL[1] - SPAWN_INTERVAL[0]));
 	}
 	
 	/**
-	 * Check if the level needs updating. If all levels completed, exit the fame.
+	 * Accesses the profiler timing the phases of each update and render.
+	 * 
+	 * @return the profiler of the world
+	 */
+	public FrameProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Accesses the number of candidate pairs the broadphase handed out for
+	 * collision tests during the last update.
+	 * 
+	 * @return the number of candidate pairs
+	 */
+	public long getCandidatePairs() {
+		return spriteIndex.getCandidatePairs() + logIndex.getCandidatePairs();
+	}
+
+	/**
+	 * Accesses the number of candidate pairs which truly collided with the
+	 * player during the last update.
+	 * 
+	 * @return the number of hits
+	 */
+	public long getCollisionHits() {
+		return spriteIndex.getHits() + logIndex.getHits();
+	}
+
+	/*
+	 * Inserts a contact in order of the time it happened, after any contacts
+	 * at the same time.
+	 */
+	private void addContact(Sprite sprite, float time) {
+		if (contacts.size() == contactTimes.length) {
+			contactTimes = Arrays.copyOf(contactTimes, contactTimes.length * 2);
+		}
+		int i = contacts.size();
+		contacts.add(sprite);
+		while (i > 0 && contactTimes[i - 1] > time) {
+			contacts.set(i, contacts.get(i - 1));
+			contactTimes[i] = contactTimes[i - 1];
+			i--;
+		}
+		contacts.set(i, sprite);
+		contactTimes[i] = time;
+	}
+
+	/*
+	 * Finds the sprites on a player's rows which touched them while moving
+	 * since the last update, so fast sprites and long updates cannot pass
+	 * through them, and has the player respond in the order they touched.
+	 */
+	private void collide(Player player) {
+		int minRow = LaneIndex.minRow(player.getY() - player.getHeight() / 2);
+		int maxRow = LaneIndex.maxRow(player.getY() + player.getHeight() / 2);
+		contacts.clear();
+		for (int row = minRow; row <= maxRow; row++) {
+			ArrayList<LogType> lane = logIndex.getRow(row);
+			logIndex.countCandidates(lane.size());
+			for (int i = 0; i < lane.size(); i++) {
+				LogType log = lane.get(i);
+				float contact = log.timeOfImpact(player);
+				if (contact != Sprite.NO_CONTACT) {
+					logIndex.countHit();
+					addContact(log, contact);
+				}
+			}
+		}
+
+		for (int row = minRow; row <= maxRow; row++) {
+			ArrayList<Sprite> lane = spriteIndex.getRow(row);
+			spriteIndex.countCandidates(lane.size());
+			for (int i = 0; i < lane.size(); i++) {
+				Sprite sprite2 = lane.get(i);
+				float contact = sprite2.timeOfImpact(player);
+				if (contact != Sprite.NO_CONTACT) {
+					spriteIndex.countHit();
+					addContact(sprite2, contact);
+				}
+			}
+		}
+
+		// the player responds to contacts in the order they happened
+		for (int i = 0; i < contacts.size(); i++) {
+			Sprite other = contacts.get(i);
+			player.onCollision(other);
+			events.publish(EventBus.COLLISION, other.getX(), other.getY(), other.getTags());
+		}
+	}
+
+	// moves a player by their input, then fills any hole they reached
+	private void move(Player player, InputSource input, int delta) {
+		int minRow = LaneIndex.minRow(player.getY() - player.getHeight() / 2);
+		int maxRow = LaneIndex.maxRow(player.getY() + player.getHeight() / 2);
+		// the player can only move one row at a time, so only neighbouring rows matter
+		nearby.clear();
+		for (int row = minRow - 1; row <= maxRow + 1; row++) {
+			ArrayList<Sprite> lane = spriteIndex.getRow(row);
+			for (int i = 0; i < lane.size(); i++) {
+				nearby.add(lane.get(i));
+			}
+		}
+		spriteIndex.countCandidates(nearby.size());
+		player.update(input, delta, nearby);
+
+		// loop over all holes to test for intersection with player.
+		for (int i = 0; i < N_HOLES; i++) {
+			if (player.collides(holes[i])) {
+				// if a hole was not previously filled, return player to starting position and fill the hole.
+				if (!holesFilled[i]) {
+					events.publish(EventBus.HOLE_FILLED, HOLE_LOC_X[i], HOLE_LOC_Y, i);
+					player.respawn();
+					sprites.add(filledFrogs[i]);
+					spriteIndex.add(filledFrogs[i]);
+					holesFilled[i] = true;
+					holesFilledTotal++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if the level needs updating. If all levels completed, the game is over.
 	 */
 	public void levelUpdate() {
 		// checks if the level is complete, i.e. all holes are filled.
 		boolean levelComplete = true;
-		for (Boolean b : holesFilled) {
+		for (boolean b : holesFilled) {
 			levelComplete = levelComplete && b;
 		}
 
 		// if level is complete, clear all sprites except the player, and load new level.
 		if (levelComplete) {
-			extraLife = null;
-			sprites.clear();
-			logs.clear();
+			events.publish(EventBus.LEVEL_COMPLETE, frog.getX(), frog.getY(), currentLevel);
+			clearLevel();
 
 			currentLevel += 1;
-			// if levels are all complete, exit the game.
-			if (currentLevel >= N_LEVELS) {
-				System.exit(0);
+			// if levels are all complete, the game is won.
+			if (currentLevel >= levelPaths.length) {
+				gameOver = true;
+				won = true;
+				return;
 			}
 
-			levelLoader(LEVEL_PATHS[currentLevel]);
+			loadLevel(currentLevel);
 			holesBuilder();
 
+			// images shared with the new level were re-acquired, so only unused ones are evicted
+			AssetRegistry.trim();
+
+		}
+	}
+
+	// clears all sprites of the current level except the player
+	private void clearLevel() {
+		// give the images of the old level back, so unused ones can be evicted
+		while (!chunks.isEmpty()) {
+			unloadChunk(chunks.size() - 1);
+		}
+		extraLifeActive = false;
+		if (extraLife != null) {
+			extraLife.drop();
 		}
+		// only the filled hole frogs are left, and they are kept for the next level
+		sprites.clear();
+		logs.clear();
+		spriteIndex.clear();
+		logIndex.clear();
+		lanes.clear();
+		level = null;
 	}
-}
\ No newline at end of file
+}